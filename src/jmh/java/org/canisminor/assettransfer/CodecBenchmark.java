@@ -0,0 +1,169 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.Genson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Genson serialize/deserialize of every @DataType class, with the reflective Genson the
+ * contract used to build and with the precompiled converters from EntityConverters.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CodecBenchmark {
+    @Param({"precompiled", "reflective"})
+    public String converters;
+
+    private Genson genson;
+
+    private Department department;
+    private DataAsset dataAsset;
+    private DBAsset dbAsset;
+    private VideoAsset videoAsset;
+    private DataAssetOrder dataAssetOrder;
+    private DBAssetOrder dbAssetOrder;
+    private VideoAssetOrder videoAssetOrder;
+    private AttributeApplication attributeApplication;
+    private AttributeItem attributeItem;
+
+    private String departmentJSON;
+    private String dataAssetJSON;
+    private String dbAssetJSON;
+    private String videoAssetJSON;
+    private String dataAssetOrderJSON;
+    private String dbAssetOrderJSON;
+    private String videoAssetOrderJSON;
+    private String attributeApplicationJSON;
+    private String attributeItemJSON;
+
+    @Setup
+    public void setUp() {
+        genson = "reflective".equals(converters) ? new Genson() : EntityConverters.newGenson();
+
+        String ownerId = Fixtures.departmentId(0);
+        department = Fixtures.department(0);
+        dataAsset = Fixtures.dataAsset(0, ownerId);
+        dbAsset = Fixtures.dbAsset(0, ownerId);
+        videoAsset = Fixtures.videoAsset(0, ownerId);
+        dataAssetOrder = Fixtures.dataAssetOrder(0, ownerId);
+        dbAssetOrder = Fixtures.dbAssetOrder(0, ownerId);
+        videoAssetOrder = Fixtures.videoAssetOrder(0, ownerId);
+        attributeApplication = Fixtures.attributeApplication(0, ownerId);
+        attributeItem = Fixtures.attributeItem(0);
+
+        departmentJSON = genson.serialize(department);
+        dataAssetJSON = genson.serialize(dataAsset);
+        dbAssetJSON = genson.serialize(dbAsset);
+        videoAssetJSON = genson.serialize(videoAsset);
+        dataAssetOrderJSON = genson.serialize(dataAssetOrder);
+        dbAssetOrderJSON = genson.serialize(dbAssetOrder);
+        videoAssetOrderJSON = genson.serialize(videoAssetOrder);
+        attributeApplicationJSON = genson.serialize(attributeApplication);
+        attributeItemJSON = genson.serialize(attributeItem);
+    }
+
+    @Benchmark
+    public String serializeDepartment() {
+        return genson.serialize(department);
+    }
+
+    @Benchmark
+    public Department deserializeDepartment() {
+        return genson.deserialize(departmentJSON, Department.class);
+    }
+
+    @Benchmark
+    public String serializeDataAsset() {
+        return genson.serialize(dataAsset);
+    }
+
+    @Benchmark
+    public DataAsset deserializeDataAsset() {
+        return genson.deserialize(dataAssetJSON, DataAsset.class);
+    }
+
+    @Benchmark
+    public String serializeDBAsset() {
+        return genson.serialize(dbAsset);
+    }
+
+    @Benchmark
+    public DBAsset deserializeDBAsset() {
+        return genson.deserialize(dbAssetJSON, DBAsset.class);
+    }
+
+    @Benchmark
+    public String serializeVideoAsset() {
+        return genson.serialize(videoAsset);
+    }
+
+    @Benchmark
+    public VideoAsset deserializeVideoAsset() {
+        return genson.deserialize(videoAssetJSON, VideoAsset.class);
+    }
+
+    @Benchmark
+    public String serializeDataAssetOrder() {
+        return genson.serialize(dataAssetOrder);
+    }
+
+    @Benchmark
+    public DataAssetOrder deserializeDataAssetOrder() {
+        return genson.deserialize(dataAssetOrderJSON, DataAssetOrder.class);
+    }
+
+    @Benchmark
+    public String serializeDBAssetOrder() {
+        return genson.serialize(dbAssetOrder);
+    }
+
+    @Benchmark
+    public DBAssetOrder deserializeDBAssetOrder() {
+        return genson.deserialize(dbAssetOrderJSON, DBAssetOrder.class);
+    }
+
+    @Benchmark
+    public String serializeVideoAssetOrder() {
+        return genson.serialize(videoAssetOrder);
+    }
+
+    @Benchmark
+    public VideoAssetOrder deserializeVideoAssetOrder() {
+        return genson.deserialize(videoAssetOrderJSON, VideoAssetOrder.class);
+    }
+
+    @Benchmark
+    public String serializeAttributeApplication() {
+        return genson.serialize(attributeApplication);
+    }
+
+    @Benchmark
+    public AttributeApplication deserializeAttributeApplication() {
+        return genson.deserialize(attributeApplicationJSON, AttributeApplication.class);
+    }
+
+    @Benchmark
+    public String serializeAttributeItem() {
+        return genson.serialize(attributeItem);
+    }
+
+    @Benchmark
+    public AttributeItem deserializeAttributeItem() {
+        return genson.deserialize(attributeItemJSON, AttributeItem.class);
+    }
+}
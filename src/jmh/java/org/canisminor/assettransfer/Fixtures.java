@@ -0,0 +1,82 @@
+package org.canisminor.assettransfer;
+
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Entities with realistic field sizes for the benchmarks. Ciphertexts are random base64 of
+ * the length the off-chain services produce, e.g. an AES-encrypted IPFS CID list for cid and
+ * an RSA-2048 encrypted AES key for aesKey.
+ */
+final class Fixtures {
+    static final int CID_LENGTH = 1024;
+    static final int AES_KEY_LENGTH = 344;
+    static final int URL_LENGTH = 256;
+    static final int CREDENTIAL_LENGTH = 44;
+
+    static final String ATTRIBUTE = "role:hospital region:east level:3";
+    static final String POLICY = "role:hospital AND region:east";
+    static final String[] LOCATIONS = {"Beijing", "Shanghai", "Guangzhou", "Shenzhen", "Hangzhou", "Chengdu", "Wuhan", "Xian"};
+    static final String[] FIELDS = {"medical", "finance", "traffic", "energy", "education", "security"};
+
+    private Fixtures() {
+    }
+
+    static String ciphertext(final int length, final long seed) {
+        byte[] bytes = new byte[length * 3 / 4];
+        new Random(seed).nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes).substring(0, length);
+    }
+
+    static String departmentId(final int n) {
+        return "Department" + n;
+    }
+
+    static Department department(final int n) {
+        return new Department(departmentId(n), "Department " + n, ATTRIBUTE);
+    }
+
+    static DataAsset dataAsset(final int n, final String ownerId) {
+        return new DataAsset("DataAsset" + n, "Data asset " + n, ownerId, POLICY, location(n), field(n),
+                ciphertext(CID_LENGTH, n), ciphertext(AES_KEY_LENGTH, -n), 1);
+    }
+
+    static DBAsset dbAsset(final int n, final String ownerId) {
+        return new DBAsset("DBAsset" + n, "DB asset " + n, ownerId, POLICY, location(n), field(n),
+                ciphertext(URL_LENGTH, n), ciphertext(CREDENTIAL_LENGTH, n + 1), ciphertext(CREDENTIAL_LENGTH, n + 2),
+                ciphertext(AES_KEY_LENGTH, -n), 1);
+    }
+
+    static VideoAsset videoAsset(final int n, final String ownerId) {
+        return new VideoAsset("VideoAsset" + n, "Video asset " + n, ownerId, POLICY, location(n), field(n),
+                ciphertext(URL_LENGTH, n), ciphertext(AES_KEY_LENGTH, -n), 1);
+    }
+
+    static DataAssetOrder dataAssetOrder(final int n, final String applicantId) {
+        return new DataAssetOrder("DataAssetOrder" + n, "DataAsset" + n, applicantId, 0);
+    }
+
+    static DBAssetOrder dbAssetOrder(final int n, final String applicantId) {
+        return new DBAssetOrder("DBAssetOrder" + n, "DBAsset" + n, applicantId, "SELECT id, name, diagnosis FROM patient WHERE admitted > '2024-01-01'");
+    }
+
+    static VideoAssetOrder videoAssetOrder(final int n, final String applicantId) {
+        return new VideoAssetOrder("VideoAssetOrder" + n, "VideoAsset" + n, applicantId, 0);
+    }
+
+    static AttributeApplication attributeApplication(final int n, final String departmentId) {
+        return new AttributeApplication("AttributeApplication" + n, departmentId, "role:hospital", 0);
+    }
+
+    static AttributeItem attributeItem(final int n) {
+        return new AttributeItem("AttributeItem" + n, "key" + n + ":value" + n);
+    }
+
+    static String location(final int n) {
+        return LOCATIONS[n % LOCATIONS.length];
+    }
+
+    static String field(final int n) {
+        return FIELDS[n % FIELDS.length];
+    }
+}
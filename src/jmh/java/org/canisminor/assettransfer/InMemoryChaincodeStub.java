@@ -0,0 +1,435 @@
+package org.canisminor.assettransfer;
+
+import com.google.protobuf.ByteString;
+import org.hyperledger.fabric.protos.msp.SerializedIdentity;
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.protos.peer.QueryResponseMetadata;
+import org.hyperledger.fabric.protos.peer.SignedProposal;
+import org.hyperledger.fabric.shim.Chaincode.Response;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ChaincodeStub simulating one transaction against an {@link InMemoryLedger}, so AssetTransfer
+ * can run without a peer. As on an endorsing peer, reads see committed state only and are
+ * recorded with their versions, and writes are collected until the ledger commits them.
+ * Rich queries evaluate the Mango subset of {@link MangoSelector} by scanning the ledger.
+ * Private data and chaincode-to-chaincode calls are not supported.
+ */
+public class InMemoryChaincodeStub implements ChaincodeStub {
+    static final String MSP_ID = "Org1MSP";
+
+    // Self-signed client certificate; Context parses the creator into a ClientIdentity
+    private static final String CERTIFICATE =
+            "-----BEGIN CERTIFICATE-----\n" +
+            "MIIB8DCCAZegAwIBAgIUI9tDncKCnloJJ7dz33ThhlG3ZxYwCgYIKoZIzj0EAwIw\n" +
+            "TTELMAkGA1UEBhMCVVMxGTAXBgNVBAoMEG9yZzEuZXhhbXBsZS5jb20xDzANBgNV\n" +
+            "BAsMBmNsaWVudDESMBAGA1UEAwwJYmVuY2htYXJrMCAXDTI2MTAxNzA0MDM0M1oY\n" +
+            "DzIxMjYwOTIzMDQwMzQzWjBNMQswCQYDVQQGEwJVUzEZMBcGA1UECgwQb3JnMS5l\n" +
+            "eGFtcGxlLmNvbTEPMA0GA1UECwwGY2xpZW50MRIwEAYDVQQDDAliZW5jaG1hcmsw\n" +
+            "WTATBgcqhkjOPQIBBggqhkjOPQMBBwNCAAQHXlfHpV5mcE0MQubabEU2ZXsWhWLq\n" +
+            "fQcErzmieaoyXroLWR/y46s8FnLYsg35QTmiLcUi1T7K/kAkGzghCUx5o1MwUTAd\n" +
+            "BgNVHQ4EFgQU4QEEVsV3/0NXGhX5prEsRlOn0qIwHwYDVR0jBBgwFoAU4QEEVsV3\n" +
+            "/0NXGhX5prEsRlOn0qIwDwYDVR0TAQH/BAUwAwEB/zAKBggqhkjOPQQDAgNHADBE\n" +
+            "AiBLXupHvh2lASbPahHB2TNA5DpnIXpVcKuROj1ngjfTrgIgKeW1WpPbsu4MmXfv\n" +
+            "JSW6VwZS9L8ejC6to6aDBRUcfkA=\n" +
+            "-----END CERTIFICATE-----\n";
+
+    private static final byte[] CREATOR = SerializedIdentity.newBuilder()
+            .setMspid(MSP_ID)
+            .setIdBytes(ByteString.copyFromUtf8(CERTIFICATE))
+            .build()
+            .toByteArray();
+
+    // Range start used by the peer when none is given: skips the composite-key namespace
+    private static final String UNSPECIFIED_START_KEY = "\u0001";
+    private static final String MAX_UNICODE_RUNE = "\udbff\udfff";
+
+    private final InMemoryLedger ledger;
+    private final String txId;
+    private final Instant txTimestamp;
+    // 读集：首次读取时的版本
+    private final Map<String, Long> readSet = new LinkedHashMap<>();
+    private final List<InMemoryLedger.RangeRead> rangeReads = new ArrayList<>();
+    // 写集：null 表示删除
+    private final Map<String, byte[]> writes = new LinkedHashMap<>();
+    private boolean paginatedQueries;
+    private ChaincodeEvent event;
+
+    InMemoryChaincodeStub(final InMemoryLedger ledger, final String txId, final Instant txTimestamp) {
+        this.ledger = ledger;
+        this.txId = txId;
+        this.txTimestamp = txTimestamp;
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        InMemoryLedger.Versioned value = ledger.read(key);
+        readSet.putIfAbsent(key, value == null ? InMemoryLedger.ABSENT : value.version);
+        return value == null ? new byte[0] : value.value.clone();
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        if (key == null || key.isEmpty()) {
+            throw new IllegalArgumentException("key must not be empty");
+        }
+        checkWriteAllowed();
+        writes.put(key, value.clone());
+    }
+
+    @Override
+    public void delState(final String key) {
+        checkWriteAllowed();
+        writes.put(key, null);
+    }
+
+    public Map<String, Long> getReadSet() {
+        return Collections.unmodifiableMap(readSet);
+    }
+
+    public Map<String, byte[]> getWrites() {
+        return Collections.unmodifiableMap(writes);
+    }
+
+    List<InMemoryLedger.RangeRead> getRangeReads() {
+        return Collections.unmodifiableList(rangeReads);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        return range(startKey, endKey, Integer.MAX_VALUE, "");
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey, final String endKey, final int pageSize, final String bookmark) {
+        checkPaginationAllowed();
+        return range(startKey, endKey, pageSize, bookmark);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+        return range(compositeKey, compositeKey + MAX_UNICODE_RUNE, Integer.MAX_VALUE, "");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType, final String... attributes) {
+        return getStateByPartialCompositeKey(createCompositeKey(objectType, attributes));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final CompositeKey compositeKey) {
+        return getStateByPartialCompositeKey(compositeKey.toString());
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(final CompositeKey compositeKey, final int pageSize, final String bookmark) {
+        checkPaginationAllowed();
+        String prefix = compositeKey.toString();
+        return range(prefix, prefix + MAX_UNICODE_RUNE, pageSize, bookmark);
+    }
+
+    @Override
+    public CompositeKey createCompositeKey(final String objectType, final String... attributes) {
+        return new CompositeKey(objectType, attributes);
+    }
+
+    @Override
+    public CompositeKey splitCompositeKey(final String compositeKey) {
+        return CompositeKey.parseCompositeKey(compositeKey);
+    }
+
+    @Override
+    public void setEvent(final String name, final byte[] payload) {
+        event = ChaincodeEvent.newBuilder()
+                .setEventName(name)
+                .setTxId(txId)
+                .setPayload(ByteString.copyFrom(payload))
+                .build();
+    }
+
+    @Override
+    public ChaincodeEvent getEvent() {
+        return event;
+    }
+
+    @Override
+    public String getTxId() {
+        return txId;
+    }
+
+    @Override
+    public Instant getTxTimestamp() {
+        return txTimestamp;
+    }
+
+    @Override
+    public byte[] getCreator() {
+        return CREATOR.clone();
+    }
+
+    @Override
+    public String getMspId() {
+        return MSP_ID;
+    }
+
+    @Override
+    public String getChannelId() {
+        return "mychannel";
+    }
+
+    @Override
+    public Map<String, byte[]> getTransient() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public List<byte[]> getArgs() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public List<String> getStringArgs() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public String getFunction() {
+        return null;
+    }
+
+    @Override
+    public List<String> getParameters() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public SignedProposal getSignedProposal() {
+        return null;
+    }
+
+    @Override
+    public byte[] getBinding() {
+        return new byte[0];
+    }
+
+    @Override
+    public byte[] getStateValidationParameter(final String key) {
+        return null;
+    }
+
+    @Override
+    public void setStateValidationParameter(final String key, final byte[] value) {
+        throw unsupported("state-based endorsement");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(final String query) {
+        MangoSelector selector = MangoSelector.parse(query);
+        return richQuery(selector, selector.limit(), "");
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query, final int pageSize, final String bookmark) {
+        checkPaginationAllowed();
+        return richQuery(MangoSelector.parse(query), pageSize, bookmark);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyModification> getHistoryForKey(final String key) {
+        return new Results<>(ledger.history(key), "");
+    }
+
+    @Override
+    public Response invokeChaincode(final String chaincodeName, final List<byte[]> args, final String channel) {
+        throw unsupported("chaincode-to-chaincode calls");
+    }
+
+    @Override
+    public byte[] getPrivateData(final String collection, final String key) {
+        throw unsupported("private data");
+    }
+
+    @Override
+    public byte[] getPrivateDataHash(final String collection, final String key) {
+        throw unsupported("private data");
+    }
+
+    @Override
+    public byte[] getPrivateDataValidationParameter(final String collection, final String key) {
+        throw unsupported("private data");
+    }
+
+    @Override
+    public void putPrivateData(final String collection, final String key, final byte[] value) {
+        throw unsupported("private data");
+    }
+
+    @Override
+    public void setPrivateDataValidationParameter(final String collection, final String key, final byte[] value) {
+        throw unsupported("private data");
+    }
+
+    @Override
+    public void delPrivateData(final String collection, final String key) {
+        throw unsupported("private data");
+    }
+
+    @Override
+    public void purgePrivateData(final String collection, final String key) {
+        throw unsupported("private data");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByRange(final String collection, final String startKey, final String endKey) {
+        throw unsupported("private data");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final String compositeKey) {
+        throw unsupported("private data");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final CompositeKey compositeKey) {
+        throw unsupported("private data");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataByPartialCompositeKey(final String collection, final String objectType, final String... attributes) {
+        throw unsupported("private data");
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getPrivateDataQueryResult(final String collection, final String query) {
+        throw unsupported("private data");
+    }
+
+    // The bookmark is the first key of the next page, or "" once the range is exhausted
+    private Results<KeyValue> range(final String startKey, final String endKey, final int pageSize, final String bookmark) {
+        String from = startKey == null || startKey.isEmpty() ? UNSPECIFIED_START_KEY : startKey;
+        if (bookmark != null && !bookmark.isEmpty() && bookmark.compareTo(from) > 0) {
+            from = bookmark;
+        }
+        String to = endKey == null || endKey.isEmpty() ? null : endKey;
+        int limit = pageSize == Integer.MAX_VALUE ? pageSize : pageSize + 1;
+        List<Map.Entry<String, InMemoryLedger.Versioned>> entries = ledger.scan(from, to, limit);
+
+        int count = Math.min(entries.size(), pageSize);
+        List<KeyValue> page = new ArrayList<>(count);
+        Map<String, Long> versions = new LinkedHashMap<>();
+        for (Map.Entry<String, InMemoryLedger.Versioned> entry : entries.subList(0, count)) {
+            page.add(new Entry(entry.getKey(), entry.getValue().value.clone()));
+            versions.put(entry.getKey(), entry.getValue().version);
+        }
+        String nextBookmark = entries.size() > count ? entries.get(count).getKey() : "";
+        if (nextBookmark.isEmpty()) {
+            rangeReads.add(new InMemoryLedger.RangeRead(from, to, null, versions));
+        } else if (count > 0) {
+            rangeReads.add(new InMemoryLedger.RangeRead(from, to, entries.get(count - 1).getKey(), versions));
+        }
+        return new Results<>(page, nextBookmark);
+    }
+
+    // Scans every simple key like a CouchDB query without an index. As on the peer, rich query reads
+    // are not recorded, since they are never re-executed at validation.
+    private Results<KeyValue> richQuery(final MangoSelector selector, final int pageSize, final String bookmark) {
+        String from = bookmark == null || bookmark.isEmpty() ? UNSPECIFIED_START_KEY : bookmark;
+        List<KeyValue> page = new ArrayList<>();
+        String nextBookmark = "";
+        for (Map.Entry<String, InMemoryLedger.Versioned> entry : ledger.scan(from, null, Integer.MAX_VALUE)) {
+            if (!selector.matches(entry.getValue().value)) {
+                continue;
+            }
+            if (page.size() == pageSize) {
+                nextBookmark = entry.getKey();
+                break;
+            }
+            page.add(new Entry(entry.getKey(), entry.getValue().value.clone()));
+        }
+        return new Results<>(page, nextBookmark);
+    }
+
+    // The peer refuses to mix paginated queries with writes in one transaction
+    private void checkPaginationAllowed() {
+        if (!writes.isEmpty()) {
+            throw new IllegalStateException("paginated queries are not supported in a transaction that writes");
+        }
+        paginatedQueries = true;
+    }
+
+    private void checkWriteAllowed() {
+        if (paginatedQueries) {
+            throw new IllegalStateException("writes are not supported in a transaction that ran paginated queries");
+        }
+    }
+
+    private static UnsupportedOperationException unsupported(final String feature) {
+        return new UnsupportedOperationException(String.format("InMemoryChaincodeStub does not support %s", feature));
+    }
+
+    static final class Entry implements KeyValue {
+        private final String key;
+        private final byte[] value;
+
+        Entry(final String key, final byte[] value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return value;
+        }
+
+        @Override
+        public String getStringValue() {
+            return new String(value, StandardCharsets.UTF_8);
+        }
+    }
+
+    static final class Results<T> implements QueryResultsIterator<T>, QueryResultsIteratorWithMetadata<T> {
+        private final List<T> page;
+        private final QueryResponseMetadata metadata;
+
+        Results(final List<T> page, final String bookmark) {
+            this.page = page;
+            this.metadata = QueryResponseMetadata.newBuilder()
+                    .setFetchedRecordsCount(page.size())
+                    .setBookmark(bookmark)
+                    .build();
+        }
+
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            return metadata;
+        }
+
+        @Override
+        public Iterator<T> iterator() {
+            return page.iterator();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.protos.peer.ChaincodeEvent;
+import org.hyperledger.fabric.shim.ledger.KeyModification;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Versioned world state with the peer's execute-then-validate model.
+ * Transactions are simulated on stubs from {@link #newTransaction()}, which record a read set,
+ * the range queries they ran and a write set. {@link #commit} validates them in order the way
+ * the committing peer does: a transaction whose reads or ranges changed since simulation is
+ * marked invalid and its writes are dropped. Valid writes are applied with a new version,
+ * appended to key history, and their event is kept.
+ */
+public class InMemoryLedger {
+    // 版本 0 表示键不存在
+    static final long ABSENT = 0L;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Versioned> state = new TreeMap<>();
+    private final Map<String, List<Modification>> history = new HashMap<>();
+    private final List<ChaincodeEvent> events = new ArrayList<>();
+    private final Clock clock;
+    private final AtomicLong txCount = new AtomicLong();
+    private long version;
+    private long blockHeight;
+    private long validCount;
+    private long mvccConflictCount;
+    private long phantomConflictCount;
+
+    public InMemoryLedger() {
+        this(Clock.systemUTC());
+    }
+
+    public InMemoryLedger(final Clock clock) {
+        this.clock = clock;
+    }
+
+    public enum ValidationCode {
+        VALID,
+        MVCC_READ_CONFLICT,
+        PHANTOM_READ_CONFLICT
+    }
+
+    public InMemoryChaincodeStub newTransaction() {
+        return newTransaction("tx" + txCount.incrementAndGet());
+    }
+
+    public InMemoryChaincodeStub newTransaction(final String txId) {
+        return new InMemoryChaincodeStub(this, txId, clock.instant());
+    }
+
+    // Commits a block holding a single transaction
+    public ValidationCode commit(final InMemoryChaincodeStub tx) {
+        return commitBlock(Collections.singletonList(tx)).get(0);
+    }
+
+    // Validates and applies the transactions in order; later ones see the writes of earlier valid ones
+    public List<ValidationCode> commitBlock(final List<InMemoryChaincodeStub> txs) {
+        List<ValidationCode> codes = new ArrayList<>(txs.size());
+        lock.writeLock().lock();
+        try {
+            blockHeight++;
+            for (InMemoryChaincodeStub tx : txs) {
+                ValidationCode code = validate(tx);
+                codes.add(code);
+                switch (code) {
+                    case VALID:
+                        validCount++;
+                        apply(tx);
+                        break;
+                    case MVCC_READ_CONFLICT:
+                        mvccConflictCount++;
+                        break;
+                    default:
+                        phantomConflictCount++;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return codes;
+    }
+
+    public byte[] get(final String key) {
+        Versioned value = read(key);
+        return value == null ? null : value.value.clone();
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return state.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getBlockHeight() {
+        lock.readLock().lock();
+        try {
+            return blockHeight;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getValidCount() {
+        lock.readLock().lock();
+        try {
+            return validCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getMvccConflictCount() {
+        lock.readLock().lock();
+        try {
+            return mvccConflictCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getPhantomConflictCount() {
+        lock.readLock().lock();
+        try {
+            return phantomConflictCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Events of valid transactions, in commit order
+    public List<ChaincodeEvent> getEvents() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(events);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    Versioned read(final String key) {
+        lock.readLock().lock();
+        try {
+            return state.get(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Committed entries in [startKey, endKey), at most limit of them; endKey null means unbounded
+    List<Map.Entry<String, Versioned>> scan(final String startKey, final String endKey, final int limit) {
+        lock.readLock().lock();
+        try {
+            List<Map.Entry<String, Versioned>> entries = new ArrayList<>(Math.min(limit, 256));
+            for (Map.Entry<String, Versioned> entry : range(startKey, endKey).entrySet()) {
+                if (entries.size() == limit) {
+                    break;
+                }
+                entries.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+            return entries;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Newest modification first, as returned by the peer
+    List<KeyModification> history(final String key) {
+        lock.readLock().lock();
+        try {
+            List<Modification> modifications = history.getOrDefault(key, Collections.emptyList());
+            List<KeyModification> newestFirst = new ArrayList<>(modifications);
+            Collections.reverse(newestFirst);
+            return newestFirst;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private NavigableMap<String, Versioned> range(final String startKey, final String endKey) {
+        return endKey == null ? state.tailMap(startKey, true) : state.subMap(startKey, true, endKey, false);
+    }
+
+    private ValidationCode validate(final InMemoryChaincodeStub tx) {
+        for (Map.Entry<String, Long> read : tx.getReadSet().entrySet()) {
+            Versioned current = state.get(read.getKey());
+            long currentVersion = current == null ? ABSENT : current.version;
+            if (currentVersion != read.getValue()) {
+                return ValidationCode.MVCC_READ_CONFLICT;
+            }
+        }
+        for (RangeRead rangeRead : tx.getRangeReads()) {
+            // Re-run the range over what the transaction actually saw; any insert, delete or update is a phantom
+            NavigableMap<String, Versioned> current = rangeRead.lastKey == null
+                    ? range(rangeRead.startKey, rangeRead.endKey)
+                    : state.subMap(rangeRead.startKey, true, rangeRead.lastKey, true);
+            if (current.size() != rangeRead.versions.size()) {
+                return ValidationCode.PHANTOM_READ_CONFLICT;
+            }
+            for (Map.Entry<String, Versioned> entry : current.entrySet()) {
+                Long seen = rangeRead.versions.get(entry.getKey());
+                if (seen == null || seen != entry.getValue().version) {
+                    return ValidationCode.PHANTOM_READ_CONFLICT;
+                }
+            }
+        }
+        return ValidationCode.VALID;
+    }
+
+    private void apply(final InMemoryChaincodeStub tx) {
+        long txVersion = ++version;
+        Instant timestamp = tx.getTxTimestamp();
+        for (Map.Entry<String, byte[]> write : tx.getWrites().entrySet()) {
+            String key = write.getKey();
+            byte[] value = write.getValue();
+            if (value == null) {
+                state.remove(key);
+            } else {
+                state.put(key, new Versioned(value, txVersion));
+            }
+            history.computeIfAbsent(key, k -> new ArrayList<>()).add(new Modification(tx.getTxId(), value, timestamp));
+        }
+        if (tx.getEvent() != null) {
+            events.add(tx.getEvent());
+        }
+    }
+
+    static final class Versioned {
+        final byte[] value;
+        final long version;
+
+        Versioned(final byte[] value, final long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    // A range query as the transaction saw it; lastKey is set when it stopped before the end of the range
+    static final class RangeRead {
+        final String startKey;
+        final String endKey;
+        final String lastKey;
+        final Map<String, Long> versions;
+
+        RangeRead(final String startKey, final String endKey, final String lastKey, final Map<String, Long> versions) {
+            this.startKey = startKey;
+            this.endKey = endKey;
+            this.lastKey = lastKey;
+            this.versions = versions;
+        }
+    }
+
+    static final class Modification implements KeyModification {
+        private final String txId;
+        private final byte[] value;
+        private final Instant timestamp;
+
+        Modification(final String txId, final byte[] value, final Instant timestamp) {
+            this.txId = txId;
+            this.value = value;
+            this.timestamp = timestamp;
+        }
+
+        @Override
+        public String getTxId() {
+            return txId;
+        }
+
+        @Override
+        public byte[] getValue() {
+            return value == null ? new byte[0] : value.clone();
+        }
+
+        @Override
+        public String getStringValue() {
+            return value == null ? "" : new String(value, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public Instant getTimestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public boolean isDeleted() {
+            return value == null;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.canisminor.assettransfer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of InMemoryLedger itself, without the contract: simulating reads and writes
+ * and validating them at commit. Sets the ceiling for TransactionBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LedgerBenchmark {
+    private static final byte[] VALUE = Fixtures.ciphertext(256, 0).getBytes(StandardCharsets.UTF_8);
+
+    @Param({"10000"})
+    public int keys;
+
+    private InMemoryLedger ledger;
+    private String[] keyNames;
+    private int next;
+
+    @Setup
+    public void populate() {
+        ledger = new InMemoryLedger();
+        keyNames = new String[keys];
+        InMemoryChaincodeStub stub = ledger.newTransaction();
+        for (int i = 0; i < keys; i++) {
+            keyNames[i] = String.format("Key%08d", i);
+            stub.putState(keyNames[i], VALUE);
+        }
+        ledger.commit(stub);
+    }
+
+    @Benchmark
+    public byte[] getState() {
+        return ledger.newTransaction().getState(key(nextKey()));
+    }
+
+    // Read-modify-write of one key, validated and committed
+    @Benchmark
+    public InMemoryLedger.ValidationCode updateAndCommit() {
+        InMemoryChaincodeStub stub = ledger.newTransaction();
+        String key = key(nextKey());
+        stub.putState(key, stub.getState(key));
+        return ledger.commit(stub);
+    }
+
+    @Benchmark
+    public void rangeScan(final Blackhole blackhole) {
+        int start = nextKey();
+        ledger.newTransaction().getStateByRange(key(start), key(start + 100)).forEach(blackhole::consume);
+    }
+
+    private int nextKey() {
+        next = (next + 1) % (keys - 100);
+        return next;
+    }
+
+    private String key(final int n) {
+        return keyNames[n];
+    }
+}
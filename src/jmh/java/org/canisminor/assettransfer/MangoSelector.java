@@ -0,0 +1,198 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.Genson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The subset of CouchDB Mango queries the in-memory stub evaluates: field conditions with an
+ * implicit $eq, dotted paths into nested objects, the operators $eq $ne $gt $gte $lt $lte $in
+ * $nin $exists $not, the combinators $and $or $nor $not, and a query-level limit. A missing
+ * field only matches {"$exists": false}. Values that are not JSON objects never match, as
+ * CouchDB does not index them as documents.
+ */
+final class MangoSelector {
+    private static final Genson GENSON = new Genson();
+    private static final Object MISSING = new Object();
+
+    private final Map<String, Object> selector;
+    private final int limit;
+
+    private MangoSelector(final Map<String, Object> selector, final int limit) {
+        this.selector = selector;
+        this.limit = limit;
+    }
+
+    @SuppressWarnings("unchecked")
+    static MangoSelector parse(final String query) {
+        Map<String, Object> parsed = GENSON.deserialize(query, Map.class);
+        Object selector = parsed == null ? null : parsed.get("selector");
+        if (!(selector instanceof Map)) {
+            throw new IllegalArgumentException("Query has no selector object: " + query);
+        }
+        Object limit = parsed.get("limit");
+        return new MangoSelector((Map<String, Object>) selector, limit instanceof Number ? ((Number) limit).intValue() : Integer.MAX_VALUE);
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    @SuppressWarnings("unchecked")
+    boolean matches(final byte[] value) {
+        if (value.length == 0 || value[0] != '{') {
+            return false;
+        }
+        Map<String, Object> document = GENSON.deserialize(new String(value, StandardCharsets.UTF_8), Map.class);
+        return document != null && matchesAll(selector, document);
+    }
+
+    private static boolean matchesAll(final Map<String, Object> selector, final Map<String, Object> document) {
+        for (Map.Entry<String, Object> entry : selector.entrySet()) {
+            String name = entry.getKey();
+            Object condition = entry.getValue();
+            boolean matched;
+            switch (name) {
+                case "$and":
+                    matched = countMatches(condition, document) == list(name, condition).size();
+                    break;
+                case "$or":
+                    matched = countMatches(condition, document) > 0;
+                    break;
+                case "$nor":
+                    matched = countMatches(condition, document) == 0;
+                    break;
+                case "$not":
+                    matched = !matchesAll(object(name, condition), document);
+                    break;
+                default:
+                    if (name.startsWith("$")) {
+                        throw new IllegalArgumentException("Unsupported Mango combinator " + name);
+                    }
+                    matched = matchesField(resolve(document, name), condition);
+                    break;
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int countMatches(final Object selectors, final Map<String, Object> document) {
+        int count = 0;
+        for (Object selector : list("combinator", selectors)) {
+            if (matchesAll(object("combinator", selector), document)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean matchesField(final Object value, final Object condition) {
+        if (!(condition instanceof Map) || !isOperatorObject((Map<String, Object>) condition)) {
+            return value != MISSING && equal(value, condition);
+        }
+        for (Map.Entry<String, Object> operator : ((Map<String, Object>) condition).entrySet()) {
+            if (!matchesOperator(operator.getKey(), value, operator.getValue())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matchesOperator(final String operator, final Object value, final Object operand) {
+        if ("$exists".equals(operator)) {
+            return (value != MISSING) == Boolean.TRUE.equals(operand);
+        }
+        if ("$not".equals(operator)) {
+            return !matchesField(value, operand);
+        }
+        if (value == MISSING) {
+            return false;
+        }
+        Integer comparison;
+        switch (operator) {
+            case "$eq":
+                return equal(value, operand);
+            case "$ne":
+                return !equal(value, operand);
+            case "$in":
+                return list(operator, operand).stream().anyMatch(candidate -> equal(value, candidate));
+            case "$nin":
+                return list(operator, operand).stream().noneMatch(candidate -> equal(value, candidate));
+            case "$gt":
+                comparison = compare(value, operand);
+                return comparison != null && comparison > 0;
+            case "$gte":
+                comparison = compare(value, operand);
+                return comparison != null && comparison >= 0;
+            case "$lt":
+                comparison = compare(value, operand);
+                return comparison != null && comparison < 0;
+            case "$lte":
+                comparison = compare(value, operand);
+                return comparison != null && comparison <= 0;
+            default:
+                throw new IllegalArgumentException("Unsupported Mango operator " + operator);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object resolve(final Map<String, Object> document, final String path) {
+        Object current = document;
+        for (String name : path.split("\\.")) {
+            if (!(current instanceof Map) || !((Map<String, Object>) current).containsKey(name)) {
+                return MISSING;
+            }
+            current = ((Map<String, Object>) current).get(name);
+        }
+        return current;
+    }
+
+    private static boolean isOperatorObject(final Map<String, Object> condition) {
+        for (String name : condition.keySet()) {
+            if (!name.startsWith("$")) {
+                return false;
+            }
+        }
+        return !condition.isEmpty();
+    }
+
+    private static boolean equal(final Object value, final Object operand) {
+        if (value instanceof Number && operand instanceof Number) {
+            return ((Number) value).doubleValue() == ((Number) operand).doubleValue();
+        }
+        return Objects.equals(value, operand);
+    }
+
+    // null when the values are not both numbers or both strings
+    private static Integer compare(final Object value, final Object operand) {
+        if (value instanceof Number && operand instanceof Number) {
+            return Double.compare(((Number) value).doubleValue(), ((Number) operand).doubleValue());
+        }
+        if (value instanceof String && operand instanceof String) {
+            return ((String) value).compareTo((String) operand);
+        }
+        return null;
+    }
+
+    private static List<?> list(final String name, final Object operand) {
+        if (!(operand instanceof List)) {
+            throw new IllegalArgumentException(name + " needs an array");
+        }
+        return (List<?>) operand;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> object(final String name, final Object operand) {
+        if (!(operand instanceof Map)) {
+            throw new IllegalArgumentException(name + " needs an object");
+        }
+        return (Map<String, Object>) operand;
+    }
+}
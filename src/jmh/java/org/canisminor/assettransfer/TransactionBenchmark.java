@@ -0,0 +1,505 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.Genson;
+import org.hyperledger.fabric.contract.Context;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Every AssetTransfer transaction, simulated against a populated in-memory ledger.
+ * Each operation is one proposal: a fresh stub and Context, beforeTransaction, the
+ * transaction itself and afterTransaction. Writes are left uncommitted, as on an endorsing
+ * peer, so the ledger stays the same across operations and Create* can reuse one new id.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransactionBenchmark {
+    private static final int DEPARTMENTS = 100;
+    private static final int BATCH_SIZE = 100;
+    private static final int PAGE_SIZE = 100;
+    // The properties most list views render, leaving out the ciphertexts
+    private static final String LISTING_FIELDS = "id,name,ownerId,location,field";
+
+    // 每类资产、订单和属性申请的数量
+    @Param({"1000"})
+    public int ledgerSize;
+
+    private final AssetTransfer contract = new AssetTransfer();
+    private final InMemoryLedger ledger = new InMemoryLedger();
+
+    private String ownerId;
+    private String queryAssetsSelector;
+    private String departmentsBatchJSON;
+    private String dataAssetsBatchJSON;
+    private String dbAssetsBatchJSON;
+    private String videoAssetsBatchJSON;
+    private String dataAssetOrderUpdatesJSON;
+    private String videoAssetOrderUpdatesJSON;
+    private String attributeApplicationUpdatesJSON;
+
+    @Setup(Level.Trial)
+    public void populate() {
+        for (int i = 0; i < DEPARTMENTS; i++) {
+            Department department = Fixtures.department(i);
+            commit(ctx -> contract.CreateDepartment(ctx, department.getId(), department.getName(), department.getAttribute()));
+        }
+        for (int i = 0; i < ledgerSize; i++) {
+            String departmentId = Fixtures.departmentId(i % DEPARTMENTS);
+            DataAsset dataAsset = Fixtures.dataAsset(i, departmentId);
+            DBAsset dbAsset = Fixtures.dbAsset(i, departmentId);
+            VideoAsset videoAsset = Fixtures.videoAsset(i, departmentId);
+            commit(ctx -> contract.CreateDataAsset(ctx, dataAsset.getId(), dataAsset.getName(), dataAsset.getOwnerId(), dataAsset.getPolicy(),
+                    dataAsset.getLocation(), dataAsset.getField(), dataAsset.getCid(), dataAsset.getAesKey(), dataAsset.getEncType()));
+            commit(ctx -> contract.CreateDBAsset(ctx, dbAsset.getId(), dbAsset.getName(), dbAsset.getOwnerId(), dbAsset.getPolicy(),
+                    dbAsset.getLocation(), dbAsset.getField(), dbAsset.getJdbcUrl(), dbAsset.getUsername(), dbAsset.getPassword(),
+                    dbAsset.getAesKey(), dbAsset.getEncType()));
+            commit(ctx -> contract.CreateVideoAsset(ctx, videoAsset.getId(), videoAsset.getName(), videoAsset.getOwnerId(), videoAsset.getPolicy(),
+                    videoAsset.getLocation(), videoAsset.getField(), videoAsset.getRtspUrl(), videoAsset.getAesKey(), videoAsset.getEncType()));
+        }
+        for (int i = 0; i < ledgerSize; i++) {
+            String applicantId = Fixtures.departmentId((i + 1) % DEPARTMENTS);
+            DataAssetOrder dataAssetOrder = Fixtures.dataAssetOrder(i, applicantId);
+            DBAssetOrder dbAssetOrder = Fixtures.dbAssetOrder(i, applicantId);
+            VideoAssetOrder videoAssetOrder = Fixtures.videoAssetOrder(i, applicantId);
+            AttributeApplication attributeApplication = Fixtures.attributeApplication(i, applicantId);
+            commit(ctx -> contract.CreateDataAssetOrder(ctx, dataAssetOrder.getId(), dataAssetOrder.getDataAssetId(), applicantId, dataAssetOrder.getStatus()));
+            commit(ctx -> contract.CreateDBAssetOrder(ctx, dbAssetOrder.getId(), dbAssetOrder.getDbAssetId(), applicantId, dbAssetOrder.getSql()));
+            commit(ctx -> contract.CreateVideoAssetOrder(ctx, videoAssetOrder.getId(), videoAssetOrder.getVideoAssetId(), applicantId, videoAssetOrder.getStatus()));
+            commit(ctx -> contract.CreateAttributeApplication(ctx, attributeApplication.getId(), applicantId, attributeApplication.getAttribute(), attributeApplication.getStatus()));
+        }
+        for (int i = 0; i < DEPARTMENTS; i++) {
+            AttributeItem attributeItem = Fixtures.attributeItem(i);
+            commit(ctx -> contract.CreateAttributeItem(ctx, attributeItem.getId(), attributeItem.getContent()));
+        }
+
+        ownerId = Fixtures.departmentId(0);
+        queryAssetsSelector = "{\"ownerId\":\"" + ownerId + "\",\"location\":\"" + Fixtures.location(0) + "\"}";
+        Genson genson = EntityConverters.newGenson();
+        Department[] departments = new Department[BATCH_SIZE];
+        DataAsset[] dataAssets = new DataAsset[BATCH_SIZE];
+        DBAsset[] dbAssets = new DBAsset[BATCH_SIZE];
+        VideoAsset[] videoAssets = new VideoAsset[BATCH_SIZE];
+        StatusUpdate[] dataAssetOrderUpdates = new StatusUpdate[BATCH_SIZE];
+        StatusUpdate[] videoAssetOrderUpdates = new StatusUpdate[BATCH_SIZE];
+        StatusUpdate[] attributeApplicationUpdates = new StatusUpdate[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            departments[i] = Fixtures.department(DEPARTMENTS + i);
+            dataAssets[i] = Fixtures.dataAsset(ledgerSize + i, Fixtures.departmentId(i % DEPARTMENTS));
+            dbAssets[i] = Fixtures.dbAsset(ledgerSize + i, Fixtures.departmentId(i % DEPARTMENTS));
+            videoAssets[i] = Fixtures.videoAsset(ledgerSize + i, Fixtures.departmentId(i % DEPARTMENTS));
+            dataAssetOrderUpdates[i] = new StatusUpdate("DataAssetOrder" + i, 1);
+            videoAssetOrderUpdates[i] = new StatusUpdate("VideoAssetOrder" + i, 1);
+            attributeApplicationUpdates[i] = new StatusUpdate("AttributeApplication" + i, 1);
+        }
+        departmentsBatchJSON = genson.serialize(departments);
+        dataAssetsBatchJSON = genson.serialize(dataAssets);
+        dbAssetsBatchJSON = genson.serialize(dbAssets);
+        videoAssetsBatchJSON = genson.serialize(videoAssets);
+        dataAssetOrderUpdatesJSON = genson.serialize(dataAssetOrderUpdates);
+        videoAssetOrderUpdatesJSON = genson.serialize(videoAssetOrderUpdates);
+        attributeApplicationUpdatesJSON = genson.serialize(attributeApplicationUpdates);
+    }
+
+    @Benchmark
+    public boolean departmentExists() {
+        return endorse(ctx -> contract.DepartmentExists(ctx, "Department1"));
+    }
+
+    @Benchmark
+    public Department createDepartment() {
+        return endorse(ctx -> contract.CreateDepartment(ctx, "Department" + DEPARTMENTS, "New department", Fixtures.ATTRIBUTE));
+    }
+
+    @Benchmark
+    public String createDepartmentsBatch() {
+        return endorse(ctx -> contract.CreateDepartmentsBatch(ctx, departmentsBatchJSON));
+    }
+
+    @Benchmark
+    public Department readDepartment() {
+        return endorse(ctx -> contract.ReadDepartment(ctx, "Department1"));
+    }
+
+    @Benchmark
+    public Department updateDepartmentAttribute() {
+        return endorse(ctx -> contract.UpdateDepartmentAttribute(ctx, "Department1", "role:hospital region:west level:2"));
+    }
+
+    @Benchmark
+    public String getAllDepartment() {
+        return endorse(ctx -> contract.GetAllDepartment(ctx));
+    }
+
+    @Benchmark
+    public String getAllDepartmentWithPagination() {
+        return endorse(ctx -> contract.GetAllDepartmentWithPagination(ctx, PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public String getDepartmentsByAttribute() {
+        return endorse(ctx -> contract.GetDepartmentsByAttribute(ctx, "role:hospital", PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public String getDepartmentsByAttributes() {
+        return endorse(ctx -> contract.GetDepartmentsByAttributes(ctx, "role:hospital region:east", PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public boolean dataAssetExists() {
+        return endorse(ctx -> contract.DataAssetExists(ctx, "DataAsset1"));
+    }
+
+    @Benchmark
+    public DataAsset createDataAsset() {
+        return endorse(ctx -> contract.CreateDataAsset(ctx, "DataAsset" + ledgerSize, "New data asset", ownerId, Fixtures.POLICY, Fixtures.location(0), Fixtures.field(0), Fixtures.ciphertext(Fixtures.CID_LENGTH, 0), Fixtures.ciphertext(Fixtures.AES_KEY_LENGTH, 0), 1));
+    }
+
+    @Benchmark
+    public String createDataAssetsBatch() {
+        return endorse(ctx -> contract.CreateDataAssetsBatch(ctx, dataAssetsBatchJSON));
+    }
+
+    @Benchmark
+    public DataAsset readDataAsset() {
+        return endorse(ctx -> contract.ReadDataAsset(ctx, "DataAsset1"));
+    }
+
+    @Benchmark
+    public String getAllDataAsset() {
+        return endorse(ctx -> contract.GetAllDataAsset(ctx));
+    }
+
+    @Benchmark
+    public String getAllDataAssetWithPagination() {
+        return endorse(ctx -> contract.GetAllDataAssetWithPagination(ctx, PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public boolean dbAssetExists() {
+        return endorse(ctx -> contract.DBAssetExists(ctx, "DBAsset1"));
+    }
+
+    @Benchmark
+    public DBAsset createDBAsset() {
+        return endorse(ctx -> contract.CreateDBAsset(ctx, "DBAsset" + ledgerSize, "New DB asset", ownerId, Fixtures.POLICY, Fixtures.location(0), Fixtures.field(0), Fixtures.ciphertext(Fixtures.URL_LENGTH, 0), Fixtures.ciphertext(Fixtures.CREDENTIAL_LENGTH, 1), Fixtures.ciphertext(Fixtures.CREDENTIAL_LENGTH, 2), Fixtures.ciphertext(Fixtures.AES_KEY_LENGTH, 0), 1));
+    }
+
+    @Benchmark
+    public String createDBAssetsBatch() {
+        return endorse(ctx -> contract.CreateDBAssetsBatch(ctx, dbAssetsBatchJSON));
+    }
+
+    @Benchmark
+    public DBAsset readDBAsset() {
+        return endorse(ctx -> contract.ReadDBAsset(ctx, "DBAsset1"));
+    }
+
+    @Benchmark
+    public String getAllDBAsset() {
+        return endorse(ctx -> contract.GetAllDBAsset(ctx));
+    }
+
+    @Benchmark
+    public String getAllDBAssetWithPagination() {
+        return endorse(ctx -> contract.GetAllDBAssetWithPagination(ctx, PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public boolean videoAssetExists() {
+        return endorse(ctx -> contract.VideoAssetExists(ctx, "VideoAsset1"));
+    }
+
+    @Benchmark
+    public VideoAsset createVideoAsset() {
+        return endorse(ctx -> contract.CreateVideoAsset(ctx, "VideoAsset" + ledgerSize, "New video asset", ownerId, Fixtures.POLICY, Fixtures.location(0), Fixtures.field(0), Fixtures.ciphertext(Fixtures.URL_LENGTH, 0), Fixtures.ciphertext(Fixtures.AES_KEY_LENGTH, 0), 1));
+    }
+
+    @Benchmark
+    public String createVideoAssetsBatch() {
+        return endorse(ctx -> contract.CreateVideoAssetsBatch(ctx, videoAssetsBatchJSON));
+    }
+
+    @Benchmark
+    public VideoAsset readVideoAsset() {
+        return endorse(ctx -> contract.ReadVideoAsset(ctx, "VideoAsset1"));
+    }
+
+    @Benchmark
+    public String getAllVideoAsset() {
+        return endorse(ctx -> contract.GetAllVideoAsset(ctx));
+    }
+
+    @Benchmark
+    public String getAllVideoAssetWithPagination() {
+        return endorse(ctx -> contract.GetAllVideoAssetWithPagination(ctx, PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public String getAssetsByOwner() {
+        return endorse(ctx -> contract.GetAssetsByOwner(ctx, ownerId, "DataAsset", PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public String searchAssets() {
+        return endorse(ctx -> contract.SearchAssets(ctx, Fixtures.location(0), Fixtures.field(0), "DataAsset", PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public String readEntityFields() {
+        return endorse(ctx -> contract.ReadEntityFields(ctx, "DataAsset", "DataAsset1", LISTING_FIELDS));
+    }
+
+    @Benchmark
+    public String getAllEntityFieldsWithPagination() {
+        return endorse(ctx -> contract.GetAllEntityFieldsWithPagination(ctx, "DataAsset", LISTING_FIELDS, PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public String queryAssets() {
+        return endorse(ctx -> contract.QueryAssets(ctx, queryAssetsSelector, PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public boolean dataAssetOrderExists() {
+        return endorse(ctx -> contract.DataAssetOrderExists(ctx, "DataAssetOrder1"));
+    }
+
+    @Benchmark
+    public DataAssetOrder createDataAssetOrder() {
+        return endorse(ctx -> contract.CreateDataAssetOrder(ctx, "DataAssetOrder" + ledgerSize, "DataAsset1", ownerId, 0));
+    }
+
+    @Benchmark
+    public DataAssetOrder readDataAssetOrder() {
+        return endorse(ctx -> contract.ReadDataAssetOrder(ctx, "DataAssetOrder1"));
+    }
+
+    @Benchmark
+    public DataAssetOrder updateDataAssetOrderStatus() {
+        return endorse(ctx -> contract.UpdateDataAssetOrderStatus(ctx, "DataAssetOrder1", 1));
+    }
+
+    @Benchmark
+    public String updateDataAssetOrderStatusBatch() {
+        return endorse(ctx -> contract.UpdateDataAssetOrderStatusBatch(ctx, dataAssetOrderUpdatesJSON));
+    }
+
+    @Benchmark
+    public String getAllDataAssetOrder() {
+        return endorse(ctx -> contract.GetAllDataAssetOrder(ctx));
+    }
+
+    @Benchmark
+    public String getAllDataAssetOrderWithPagination() {
+        return endorse(ctx -> contract.GetAllDataAssetOrderWithPagination(ctx, PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public boolean dbAssetOrderExists() {
+        return endorse(ctx -> contract.DBAssetOrderExists(ctx, "DBAssetOrder1"));
+    }
+
+    @Benchmark
+    public DBAssetOrder createDBAssetOrder() {
+        return endorse(ctx -> contract.CreateDBAssetOrder(ctx, "DBAssetOrder" + ledgerSize, "DBAsset1", ownerId, "SELECT * FROM patient"));
+    }
+
+    @Benchmark
+    public DBAssetOrder readDBAssetOrder() {
+        return endorse(ctx -> contract.ReadDBAssetOrder(ctx, "DBAssetOrder1"));
+    }
+
+    @Benchmark
+    public String getAllDBAssetOrder() {
+        return endorse(ctx -> contract.GetAllDBAssetOrder(ctx));
+    }
+
+    @Benchmark
+    public String getAllDBAssetOrderWithPagination() {
+        return endorse(ctx -> contract.GetAllDBAssetOrderWithPagination(ctx, PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public boolean videoAssetOrderExists() {
+        return endorse(ctx -> contract.VideoAssetOrderExists(ctx, "VideoAssetOrder1"));
+    }
+
+    @Benchmark
+    public VideoAssetOrder createVideoAssetOrder() {
+        return endorse(ctx -> contract.CreateVideoAssetOrder(ctx, "VideoAssetOrder" + ledgerSize, "VideoAsset1", ownerId, 0));
+    }
+
+    @Benchmark
+    public VideoAssetOrder readVideoAssetOrder() {
+        return endorse(ctx -> contract.ReadVideoAssetOrder(ctx, "VideoAssetOrder1"));
+    }
+
+    @Benchmark
+    public VideoAssetOrder videoDataAssetOrderStatus() {
+        return endorse(ctx -> contract.VideoDataAssetOrderStatus(ctx, "VideoAssetOrder1", 1));
+    }
+
+    @Benchmark
+    public String updateVideoAssetOrderStatusBatch() {
+        return endorse(ctx -> contract.UpdateVideoAssetOrderStatusBatch(ctx, videoAssetOrderUpdatesJSON));
+    }
+
+    @Benchmark
+    public String getAllVideoAssetOrder() {
+        return endorse(ctx -> contract.GetAllVideoAssetOrder(ctx));
+    }
+
+    @Benchmark
+    public String getAllVideoAssetOrderWithPagination() {
+        return endorse(ctx -> contract.GetAllVideoAssetOrderWithPagination(ctx, PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public String getOrdersByApplicant() {
+        return endorse(ctx -> contract.GetOrdersByApplicant(ctx, "Department1", PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public boolean attributeApplicationExists() {
+        return endorse(ctx -> contract.AttributeApplicationExists(ctx, "AttributeApplication1"));
+    }
+
+    @Benchmark
+    public AttributeApplication createAttributeApplication() {
+        return endorse(ctx -> contract.CreateAttributeApplication(ctx, "AttributeApplication" + ledgerSize, ownerId, "role:hospital", 0));
+    }
+
+    @Benchmark
+    public AttributeApplication readAttributeApplication() {
+        return endorse(ctx -> contract.ReadAttributeApplication(ctx, "AttributeApplication1"));
+    }
+
+    @Benchmark
+    public AttributeApplication updateAttributeApplicationStatus() {
+        return endorse(ctx -> contract.UpdateAttributeApplicationStatus(ctx, "AttributeApplication1", 1));
+    }
+
+    @Benchmark
+    public String updateAttributeApplicationStatusBatch() {
+        return endorse(ctx -> contract.UpdateAttributeApplicationStatusBatch(ctx, attributeApplicationUpdatesJSON));
+    }
+
+    @Benchmark
+    public String getAllAttributeApplication() {
+        return endorse(ctx -> contract.GetAllAttributeApplication(ctx));
+    }
+
+    @Benchmark
+    public String getAllAttributeApplicationWithPagination() {
+        return endorse(ctx -> contract.GetAllAttributeApplicationWithPagination(ctx, PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public boolean attributeItemExists() {
+        return endorse(ctx -> contract.AttributeItemExists(ctx, "AttributeItem1"));
+    }
+
+    @Benchmark
+    public AttributeItem createAttributeItem() {
+        return endorse(ctx -> contract.CreateAttributeItem(ctx, "AttributeItem" + DEPARTMENTS, "key:value"));
+    }
+
+    @Benchmark
+    public AttributeItem readAttributeItem() {
+        return endorse(ctx -> contract.ReadAttributeItem(ctx, "AttributeItem1"));
+    }
+
+    @Benchmark
+    public AttributeItem deleteAttributeItem() {
+        return endorse(ctx -> contract.DeleteAttributeItem(ctx, "AttributeItem1"));
+    }
+
+    @Benchmark
+    public String getAllAttributeItem() {
+        return endorse(ctx -> contract.GetAllAttributeItem(ctx));
+    }
+
+    @Benchmark
+    public String getAllAttributeItemWithPagination() {
+        return endorse(ctx -> contract.GetAllAttributeItemWithPagination(ctx, PAGE_SIZE, ""));
+    }
+
+    @Benchmark
+    public String getEntitiesAfter() {
+        return endorse(ctx -> contract.GetEntitiesAfter(ctx, "DataAsset", "DataAsset1", PAGE_SIZE));
+    }
+
+    @Benchmark
+    public boolean checkAccess() {
+        return endorse(ctx -> contract.CheckAccess(ctx, "DataAsset1", ownerId, "DataAsset"));
+    }
+
+    @Benchmark
+    public String compactStatusLog() {
+        return endorse(ctx -> contract.CompactStatusLog(ctx, "DataAssetOrder", "DataAssetOrder1"));
+    }
+
+    @Benchmark
+    public int compactStatusLogs() {
+        return endorse(ctx -> contract.CompactStatusLogs(ctx, "DataAssetOrder", PAGE_SIZE));
+    }
+
+    @Benchmark
+    public MigrationProgress migrateChunk() {
+        return endorse(ctx -> contract.MigrateChunk(ctx, "values:DataAsset", PAGE_SIZE));
+    }
+
+    @Benchmark
+    public long countEntities() {
+        return endorse(ctx -> contract.CountEntities(ctx, "DataAsset"));
+    }
+
+    @Benchmark
+    public long countEntitiesByDepartment() {
+        return endorse(ctx -> contract.CountEntitiesByDepartment(ctx, "DataAsset", ownerId));
+    }
+
+    @Benchmark
+    public long countEntitiesByStatus() {
+        return endorse(ctx -> contract.CountEntitiesByStatus(ctx, "DataAssetOrder", 0));
+    }
+
+    private <T> T endorse(final Function<Context, T> transaction) {
+        return run(ledger.newTransaction(), transaction);
+    }
+
+    private <T> T commit(final Function<Context, T> transaction) {
+        InMemoryChaincodeStub stub = ledger.newTransaction();
+        T result = run(stub, transaction);
+        if (ledger.commit(stub) != InMemoryLedger.ValidationCode.VALID) {
+            throw new IllegalStateException(String.format("Transaction %s was invalidated while populating the ledger", stub.getTxId()));
+        }
+        return result;
+    }
+
+    private <T> T run(final InMemoryChaincodeStub stub, final Function<Context, T> transaction) {
+        Context ctx = contract.createContext(stub);
+        contract.beforeTransaction(ctx);
+        T result = transaction.apply(ctx);
+        contract.afterTransaction(ctx, result);
+        return result;
+    }
+}
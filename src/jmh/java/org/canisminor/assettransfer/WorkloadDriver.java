@@ -0,0 +1,484 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Closed-loop load test of AssetTransfer on an {@link InMemoryLedger}.
+ * Each client thread endorses a transaction drawn from the configured mix, submits it to the
+ * orderer and waits for the commit result, like a Gateway submit. The orderer cuts a block
+ * when it holds blockSize transactions or blockTimeoutMillis has passed, and the ledger
+ * validates the block, so transactions endorsed against state a block has since changed fail
+ * with MVCC or phantom read conflicts. A share of the operations can be pointed at a single
+ * hot department to see how it behaves under load.
+ *
+ * <pre>
+ * ./gradlew workload -Pworkload.args="--threads 16 --duration 30 --hotDepartmentRatio 0.2"
+ * </pre>
+ */
+public final class WorkloadDriver {
+    private final Config config;
+    private final AssetTransfer contract = new AssetTransfer();
+    private final InMemoryLedger ledger = new InMemoryLedger();
+    private final BlockingQueue<Submission> orderer = new LinkedBlockingQueue<>();
+    private final AtomicLong nextId = new AtomicLong();
+    private volatile boolean running;
+    private volatile boolean ordering;
+
+    private WorkloadDriver(final Config config) {
+        this.config = config;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        Config config = Config.parse(args);
+        System.out.println(config);
+        new WorkloadDriver(config).run();
+    }
+
+    private void run() throws Exception {
+        populate();
+
+        running = true;
+        ordering = true;
+        Thread committer = new Thread(this::commitBlocks, "orderer");
+        committer.start();
+        List<Client> clients = new ArrayList<>();
+        for (int i = 0; i < config.threads; i++) {
+            Client client = new Client(config.seed + i);
+            clients.add(client);
+            client.thread.start();
+        }
+
+        long start = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.warmupSeconds));
+        clients.forEach(Client::reset);
+        long measureStart = System.nanoTime();
+        Thread.sleep(TimeUnit.SECONDS.toMillis(config.durationSeconds));
+        long elapsed = System.nanoTime() - measureStart;
+
+        running = false;
+        for (Client client : clients) {
+            client.thread.join();
+        }
+        // Clients wait for their last commit, so the orderer stops only after they are done
+        ordering = false;
+        committer.join();
+
+        Map<String, Stats> total = new TreeMap<>();
+        for (Client client : clients) {
+            client.stats.forEach((name, stats) -> total.computeIfAbsent(name, Stats::new).merge(stats));
+        }
+        report(total, elapsed);
+        System.out.printf(Locale.ROOT, "blocks=%d keys=%d run=%.1fs%n", ledger.getBlockHeight(), ledger.size(), (System.nanoTime() - start) / 1e9);
+    }
+
+    private void populate() {
+        for (int i = 0; i < config.departments; i++) {
+            Department department = Fixtures.department(i);
+            commit(ctx -> contract.CreateDepartment(ctx, department.getId(), department.getName(), department.getAttribute()));
+        }
+        for (int i = 0; i < config.assets; i++) {
+            DataAsset dataAsset = Fixtures.dataAsset(i, Fixtures.departmentId(i % config.departments));
+            VideoAsset videoAsset = Fixtures.videoAsset(i, Fixtures.departmentId(i % config.departments));
+            commit(ctx -> contract.CreateDataAsset(ctx, dataAsset.getId(), dataAsset.getName(), dataAsset.getOwnerId(), dataAsset.getPolicy(),
+                    dataAsset.getLocation(), dataAsset.getField(), dataAsset.getCid(), dataAsset.getAesKey(), dataAsset.getEncType()));
+            commit(ctx -> contract.CreateVideoAsset(ctx, videoAsset.getId(), videoAsset.getName(), videoAsset.getOwnerId(), videoAsset.getPolicy(),
+                    videoAsset.getLocation(), videoAsset.getField(), videoAsset.getRtspUrl(), videoAsset.getAesKey(), videoAsset.getEncType()));
+        }
+        for (int i = 0; i < config.orders; i++) {
+            String applicantId = Fixtures.departmentId((i + 1) % config.departments);
+            String dataAssetId = "DataAsset" + (i % config.assets);
+            String videoAssetId = "VideoAsset" + (i % config.assets);
+            String dataAssetOrderId = "DataAssetOrder" + i;
+            String videoAssetOrderId = "VideoAssetOrder" + i;
+            commit(ctx -> contract.CreateDataAssetOrder(ctx, dataAssetOrderId, dataAssetId, applicantId, 0));
+            commit(ctx -> contract.CreateVideoAssetOrder(ctx, videoAssetOrderId, videoAssetId, applicantId, 0));
+        }
+    }
+
+    private void commit(final Function<Context, ?> transaction) {
+        InMemoryChaincodeStub stub = ledger.newTransaction();
+        invoke(stub, transaction);
+        if (ledger.commit(stub) != InMemoryLedger.ValidationCode.VALID) {
+            throw new IllegalStateException(String.format("Transaction %s was invalidated while populating the ledger", stub.getTxId()));
+        }
+    }
+
+    private Object invoke(final InMemoryChaincodeStub stub, final Function<Context, ?> transaction) {
+        Context ctx = contract.createContext(stub);
+        contract.beforeTransaction(ctx);
+        Object result = transaction.apply(ctx);
+        contract.afterTransaction(ctx, result);
+        return result;
+    }
+
+    // Orderer and committing peer in one: cuts blocks and validates them in arrival order
+    private void commitBlocks() {
+        List<Submission> block = new ArrayList<>(config.blockSize);
+        List<InMemoryChaincodeStub> txs = new ArrayList<>(config.blockSize);
+        try {
+            while (ordering) {
+                Submission first = orderer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                block.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.blockTimeoutMillis);
+                while (block.size() < config.blockSize) {
+                    Submission next = orderer.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    block.add(next);
+                }
+
+                for (Submission submission : block) {
+                    txs.add(submission.stub);
+                }
+                List<InMemoryLedger.ValidationCode> codes = ledger.commitBlock(txs);
+                for (int i = 0; i < block.size(); i++) {
+                    block.get(i).result.complete(codes.get(i));
+                }
+                block.clear();
+                txs.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void report(final Map<String, Stats> total, final long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf(Locale.ROOT, "%-28s %9s %9s %9s %9s %10s %9s %9s %9s%n",
+                "transaction", "submitted", "valid", "conflict", "rejected", "valid/s", "p50 ms", "p95 ms", "p99 ms");
+        Stats all = new Stats("total");
+        for (Stats stats : total.values()) {
+            print(stats, seconds);
+            all.merge(stats);
+        }
+        print(all, seconds);
+    }
+
+    private static void print(final Stats stats, final double seconds) {
+        long[] latencies = stats.sortedLatencies();
+        System.out.printf(Locale.ROOT, "%-28s %9d %9d %8.2f%% %9d %10.1f %9.2f %9.2f %9.2f%n",
+                stats.name, stats.submitted, stats.valid, stats.conflictRate() * 100, stats.rejected, stats.valid / seconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99));
+    }
+
+    private static double percentile(final long[] sorted, final double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private final class Client implements Runnable {
+        private final Thread thread;
+        private final Random random;
+        private Map<String, Stats> stats = new LinkedHashMap<>();
+
+        Client(final long seed) {
+            this.random = new Random(seed);
+            this.thread = new Thread(this, "client-" + seed);
+        }
+
+        // Drops what was recorded during warmup; only called before the measured window
+        void reset() {
+            synchronized (this) {
+                stats = new LinkedHashMap<>();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Operation operation = nextOperation();
+                long start = System.nanoTime();
+                InMemoryChaincodeStub stub = ledger.newTransaction();
+                try {
+                    invoke(stub, operation.transaction);
+                } catch (ChaincodeException e) {
+                    record(operation.name, Outcome.REJECTED, System.nanoTime() - start);
+                    continue;
+                }
+
+                Submission submission = new Submission(stub);
+                orderer.add(submission);
+                InMemoryLedger.ValidationCode code;
+                try {
+                    code = submission.result.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(e.getCause());
+                }
+                record(operation.name, code == InMemoryLedger.ValidationCode.VALID ? Outcome.VALID : Outcome.CONFLICT, System.nanoTime() - start);
+            }
+        }
+
+        private synchronized void record(final String name, final Outcome outcome, final long latencyNanos) {
+            stats.computeIfAbsent(name, Stats::new).record(outcome, latencyNanos);
+        }
+
+        private Operation nextOperation() {
+            int pick = random.nextInt(config.mixTotal);
+            if ((pick -= config.departmentWeight) < 0) {
+                String id = "Department" + config.departments + "-" + nextId.incrementAndGet();
+                return new Operation("CreateDepartment", ctx -> contract.CreateDepartment(ctx, id, "Department " + id, Fixtures.ATTRIBUTE));
+            }
+            if ((pick -= config.assetWeight) < 0) {
+                long n = nextId.incrementAndGet();
+                String ownerId = department();
+                if (random.nextBoolean()) {
+                    DataAsset asset = Fixtures.dataAsset((int) n, ownerId);
+                    String id = "DataAsset-" + n;
+                    return new Operation("CreateDataAsset", ctx -> contract.CreateDataAsset(ctx, id, asset.getName(), ownerId, asset.getPolicy(),
+                            asset.getLocation(), asset.getField(), asset.getCid(), asset.getAesKey(), asset.getEncType()));
+                }
+                VideoAsset asset = Fixtures.videoAsset((int) n, ownerId);
+                String id = "VideoAsset-" + n;
+                return new Operation("CreateVideoAsset", ctx -> contract.CreateVideoAsset(ctx, id, asset.getName(), ownerId, asset.getPolicy(),
+                        asset.getLocation(), asset.getField(), asset.getRtspUrl(), asset.getAesKey(), asset.getEncType()));
+            }
+            if ((pick -= config.orderWeight) < 0) {
+                String id = "Order-" + nextId.incrementAndGet();
+                String applicantId = department();
+                String assetNumber = Integer.toString(random.nextInt(config.assets));
+                if (random.nextBoolean()) {
+                    return new Operation("CreateDataAssetOrder", ctx -> contract.CreateDataAssetOrder(ctx, "Data" + id, "DataAsset" + assetNumber, applicantId, 0));
+                }
+                return new Operation("CreateVideoAssetOrder", ctx -> contract.CreateVideoAssetOrder(ctx, "Video" + id, "VideoAsset" + assetNumber, applicantId, 0));
+            }
+            if ((pick -= config.statusWeight) < 0) {
+                int status = 1 + random.nextInt(2);
+                String orderNumber = Integer.toString(hotOrNot(config.orders));
+                if (random.nextBoolean()) {
+                    return new Operation("UpdateDataAssetOrderStatus", ctx -> contract.UpdateDataAssetOrderStatus(ctx, "DataAssetOrder" + orderNumber, status));
+                }
+                return new Operation("VideoDataAssetOrderStatus", ctx -> contract.VideoDataAssetOrderStatus(ctx, "VideoAssetOrder" + orderNumber, status));
+            }
+            String departmentId = department();
+            String attribute = "role:hospital region:east level:" + random.nextInt(5);
+            return new Operation("UpdateDepartmentAttribute", ctx -> contract.UpdateDepartmentAttribute(ctx, departmentId, attribute));
+        }
+
+        private String department() {
+            return Fixtures.departmentId(hotOrNot(config.departments));
+        }
+
+        // Index 0 with probability hotDepartmentRatio, otherwise uniform
+        private int hotOrNot(final int bound) {
+            return random.nextDouble() < config.hotDepartmentRatio ? 0 : random.nextInt(bound);
+        }
+    }
+
+    private static final class Operation {
+        private final String name;
+        private final Function<Context, ?> transaction;
+
+        Operation(final String name, final Function<Context, ?> transaction) {
+            this.name = name;
+            this.transaction = transaction;
+        }
+    }
+
+    private static final class Submission {
+        private final InMemoryChaincodeStub stub;
+        private final CompletableFuture<InMemoryLedger.ValidationCode> result = new CompletableFuture<>();
+
+        Submission(final InMemoryChaincodeStub stub) {
+            this.stub = stub;
+        }
+    }
+
+    private enum Outcome {
+        VALID,
+        CONFLICT,
+        REJECTED
+    }
+
+    private static final class Stats {
+        private final String name;
+        private long submitted;
+        private long valid;
+        private long conflicts;
+        private long rejected;
+        // Latency of every transaction that reached the orderer
+        private long[] latencies = new long[1024];
+        private int count;
+
+        Stats(final String name) {
+            this.name = name;
+        }
+
+        void record(final Outcome outcome, final long latencyNanos) {
+            switch (outcome) {
+                case VALID:
+                    valid++;
+                    break;
+                case CONFLICT:
+                    conflicts++;
+                    break;
+                default:
+                    rejected++;
+                    return;
+            }
+            submitted++;
+            add(latencyNanos);
+        }
+
+        void merge(final Stats other) {
+            submitted += other.submitted;
+            valid += other.valid;
+            conflicts += other.conflicts;
+            rejected += other.rejected;
+            for (int i = 0; i < other.count; i++) {
+                add(other.latencies[i]);
+            }
+        }
+
+        double conflictRate() {
+            return submitted == 0 ? 0 : (double) conflicts / submitted;
+        }
+
+        long[] sortedLatencies() {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        private void add(final long latencyNanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count << 1);
+            }
+            latencies[count++] = latencyNanos;
+        }
+    }
+
+    static final class Config {
+        int threads = Runtime.getRuntime().availableProcessors();
+        int warmupSeconds = 5;
+        int durationSeconds = 30;
+        int departments = 100;
+        int assets = 1000;
+        int orders = 1000;
+        double hotDepartmentRatio = 0.0;
+        int blockSize = 100;
+        int blockTimeoutMillis = 2;
+        long seed = 42;
+        // 交易比例：机构创建、资产创建、订单创建、订单状态更新、机构属性更新
+        int departmentWeight = 5;
+        int assetWeight = 30;
+        int orderWeight = 35;
+        int statusWeight = 25;
+        int attributeWeight = 5;
+        int mixTotal;
+
+        static Config parse(final String[] args) {
+            Config config = new Config();
+            for (int i = 0; i < args.length; i += 2) {
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException(String.format("Missing value for %s", args[i]));
+                }
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--threads":
+                        config.threads = Integer.parseInt(value);
+                        break;
+                    case "--warmup":
+                        config.warmupSeconds = Integer.parseInt(value);
+                        break;
+                    case "--duration":
+                        config.durationSeconds = Integer.parseInt(value);
+                        break;
+                    case "--departments":
+                        config.departments = Integer.parseInt(value);
+                        break;
+                    case "--assets":
+                        config.assets = Integer.parseInt(value);
+                        break;
+                    case "--orders":
+                        config.orders = Integer.parseInt(value);
+                        break;
+                    case "--hotDepartmentRatio":
+                        config.hotDepartmentRatio = Double.parseDouble(value);
+                        break;
+                    case "--blockSize":
+                        config.blockSize = Integer.parseInt(value);
+                        break;
+                    case "--blockTimeoutMillis":
+                        config.blockTimeoutMillis = Integer.parseInt(value);
+                        break;
+                    case "--seed":
+                        config.seed = Long.parseLong(value);
+                        break;
+                    case "--mix":
+                        config.parseMix(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Unknown option %s", args[i]));
+                }
+            }
+            config.mixTotal = config.departmentWeight + config.assetWeight + config.orderWeight + config.statusWeight + config.attributeWeight;
+            if (config.mixTotal <= 0 || config.departments <= 0 || config.assets <= 0 || config.orders <= 0 || config.blockSize <= 0) {
+                throw new IllegalArgumentException("Mix weights, ledger sizes and blockSize must be positive");
+            }
+            return config;
+        }
+
+        // e.g. department=5,asset=30,order=35,status=25,attribute=5
+        private void parseMix(final String mix) {
+            for (String part : mix.split(",")) {
+                String[] pair = part.split("=", 2);
+                int weight = Integer.parseInt(pair[1].trim());
+                switch (pair[0].trim()) {
+                    case "department":
+                        departmentWeight = weight;
+                        break;
+                    case "asset":
+                        assetWeight = weight;
+                        break;
+                    case "order":
+                        orderWeight = weight;
+                        break;
+                    case "status":
+                        statusWeight = weight;
+                        break;
+                    case "attribute":
+                        attributeWeight = weight;
+                        break;
+                    default:
+                        throw new IllegalArgumentException(String.format("Unknown mix entry %s", pair[0]));
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT,
+                    "threads=%d warmup=%ds duration=%ds departments=%d assets=%d orders=%d hotDepartmentRatio=%.2f blockSize=%d blockTimeout=%dms "
+                            + "mix=department:%d,asset:%d,order:%d,status:%d,attribute:%d",
+                    threads, warmupSeconds, durationSeconds, departments, assets, orders, hotDepartmentRatio, blockSize, blockTimeoutMillis,
+                    departmentWeight, assetWeight, orderWeight, statusWeight, attributeWeight);
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package org.canisminor.assettransfer;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * An asset access policy compiled into a boolean expression tree over department attributes.
+ * Grammar, with operators case-insensitive and AND binding tighter than OR:
+ * <pre>
+ *   policy    := or
+ *   or        := and (("OR" | "||") and)*
+ *   and       := not (("AND" | "&amp;&amp;") not)*
+ *   not       := ("NOT" | "!") not | "(" or ")" | predicate
+ *   predicate := key ":" value      department has this attribute
+ *              | key ":" "*"        department has any value for key
+ * </pre>
+ * A blank policy permits every department. Department attributes are key:value pairs separated
+ * by whitespace, commas or semicolons; a key may carry several values.
+ * For departments stored as a dictionary bitset the tree is resolved once per transaction into
+ * {@link BitPolicy}: the plain and negated predicates under each AND become one required and one
+ * forbidden mask, tested word by word.
+ */
+final class AccessPolicy {
+    // Chaincode environment variable that makes Create*Order reject applicants failing the asset policy: "true" or "false" (default)
+    static final String ENVIRONMENT_VARIABLE = "DATAASSET_ENFORCE_POLICY";
+
+    private static final AccessPolicy PERMIT_ALL = new AccessPolicy(new Constant(true));
+
+    private final Node root;
+
+    private AccessPolicy(final Node root) {
+        this.root = root;
+    }
+
+    static boolean enforceForName(final String enforce) {
+        if (enforce == null || enforce.isEmpty() || "false".equalsIgnoreCase(enforce)) {
+            return false;
+        }
+        if ("true".equalsIgnoreCase(enforce)) {
+            return true;
+        }
+        throw new IllegalArgumentException(String.format("Unknown policy enforcement %s", enforce));
+    }
+
+    // Throws IllegalArgumentException describing the first syntax error
+    static AccessPolicy compile(final String policy) {
+        if (policy == null || policy.trim().isEmpty()) {
+            return PERMIT_ALL;
+        }
+        return new AccessPolicy(new Parser(policy).parse());
+    }
+
+    static Attributes parseAttributes(final String attribute) {
+        Set<String> items = attributeItems(attribute);
+        Set<String> keys = new HashSet<>();
+        for (String item : items) {
+            keys.add(item.substring(0, item.indexOf(':')));
+        }
+        return new Attributes() {
+            @Override
+            public boolean has(final String item) {
+                return items.contains(item);
+            }
+
+            @Override
+            public boolean hasKey(final String key) {
+                return keys.contains(key);
+            }
+        };
+    }
+
+    // The distinct key:value items of a department attribute string, in order; malformed items are skipped
+    static Set<String> attributeItems(final String attribute) {
+        if (attribute == null || attribute.trim().isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> items = new LinkedHashSet<>();
+        for (String item : attribute.trim().split("[\\s,;]+")) {
+            int colon = item.indexOf(':');
+            if (colon > 0 && colon < item.length() - 1) {
+                items.add(item);
+            }
+        }
+        return items;
+    }
+
+    boolean permits(final Attributes attributes) {
+        return root.evaluate(attributes);
+    }
+
+    // Resolves every predicate to dictionary codes
+    BitPolicy compile(final Codes codes) {
+        return root.compile(codes);
+    }
+
+    // The attribute set of one department, as parsed from its string
+    interface Attributes {
+        // item is key:value
+        boolean has(String item);
+
+        boolean hasKey(String key);
+    }
+
+    // Dictionary codes of attribute items
+    interface Codes {
+        // Code of a key:value item, or null when it has none
+        Integer code(String item);
+
+        // Codes of every item of key, empty when there are none
+        BitSet keyCodes(String key);
+    }
+
+    // A policy over the attribute bitset of one department
+    interface BitPolicy {
+        boolean permits(BitSet bits);
+    }
+
+    private interface Node {
+        boolean evaluate(Attributes attributes);
+
+        BitPolicy compile(Codes codes);
+    }
+
+    private static final class Constant implements Node {
+        private final boolean value;
+
+        Constant(final boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        public boolean evaluate(final Attributes attributes) {
+            return value;
+        }
+
+        @Override
+        public BitPolicy compile(final Codes codes) {
+            return bits -> value;
+        }
+    }
+
+    private static final class Has implements Node {
+        private final String item;
+
+        Has(final String item) {
+            this.item = item;
+        }
+
+        @Override
+        public boolean evaluate(final Attributes attributes) {
+            return attributes.has(item);
+        }
+
+        @Override
+        public BitPolicy compile(final Codes codes) {
+            // An item without a code is held by no bitset
+            Integer code = codes.code(item);
+            return code == null ? bits -> false : bits -> bits.get(code);
+        }
+    }
+
+    private static final class HasKey implements Node {
+        private final String key;
+
+        HasKey(final String key) {
+            this.key = key;
+        }
+
+        @Override
+        public boolean evaluate(final Attributes attributes) {
+            return attributes.hasKey(key);
+        }
+
+        @Override
+        public BitPolicy compile(final Codes codes) {
+            BitSet keyCodes = codes.keyCodes(key);
+            return bits -> bits.intersects(keyCodes);
+        }
+    }
+
+    private static final class Not implements Node {
+        private final Node operand;
+
+        Not(final Node operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public boolean evaluate(final Attributes attributes) {
+            return !operand.evaluate(attributes);
+        }
+
+        @Override
+        public BitPolicy compile(final Codes codes) {
+            BitPolicy compiled = operand.compile(codes);
+            return bits -> !compiled.permits(bits);
+        }
+    }
+
+    private static final class Or implements Node {
+        private final Node[] operands;
+
+        Or(final Node[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public boolean evaluate(final Attributes attributes) {
+            for (Node operand : operands) {
+                if (operand.evaluate(attributes)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public BitPolicy compile(final Codes codes) {
+            BitPolicy[] compiled = new BitPolicy[operands.length];
+            for (int i = 0; i < operands.length; i++) {
+                compiled[i] = operands[i].compile(codes);
+            }
+            return bits -> {
+                for (BitPolicy operand : compiled) {
+                    if (operand.permits(bits)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+    }
+
+    private static final class And implements Node {
+        private final Node[] operands;
+
+        And(final Node[] operands) {
+            this.operands = operands;
+        }
+
+        @Override
+        public boolean evaluate(final Attributes attributes) {
+            for (Node operand : operands) {
+                if (!operand.evaluate(attributes)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Items and negated items become the required and forbidden masks, the rest stays a tree
+        @Override
+        public BitPolicy compile(final Codes codes) {
+            BitSet required = new BitSet();
+            BitSet forbidden = new BitSet();
+            List<BitPolicy> others = new ArrayList<>();
+            for (Node operand : operands) {
+                if (operand instanceof Has) {
+                    Integer code = codes.code(((Has) operand).item);
+                    if (code == null) {
+                        return bits -> false;
+                    }
+                    required.set(code);
+                } else if (operand instanceof Not && ((Not) operand).operand instanceof Has) {
+                    Integer code = codes.code(((Has) ((Not) operand).operand).item);
+                    if (code != null) {
+                        forbidden.set(code);
+                    }
+                } else {
+                    others.add(operand.compile(codes));
+                }
+            }
+            BitPolicy[] rest = others.toArray(new BitPolicy[0]);
+            return bits -> {
+                if (!AttributeDictionary.containsAll(bits, required) || bits.intersects(forbidden)) {
+                    return false;
+                }
+                for (BitPolicy operand : rest) {
+                    if (!operand.permits(bits)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+    }
+
+    private static final class Parser {
+        private final String policy;
+        private final List<String> tokens = new ArrayList<>();
+        private int position;
+
+        Parser(final String policy) {
+            this.policy = policy;
+            tokenize();
+        }
+
+        Node parse() {
+            Node node = parseOr();
+            if (position < tokens.size()) {
+                throw error(String.format("unexpected '%s'", tokens.get(position)));
+            }
+            return node;
+        }
+
+        private Node parseOr() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (accept("OR", "||")) {
+                operands.add(parseAnd());
+            }
+            if (operands.size() == 1) {
+                return operands.get(0);
+            }
+            return new Or(operands.toArray(new Node[0]));
+        }
+
+        private Node parseAnd() {
+            List<Node> operands = new ArrayList<>();
+            operands.add(parseNot());
+            while (accept("AND", "&&")) {
+                operands.add(parseNot());
+            }
+            if (operands.size() == 1) {
+                return operands.get(0);
+            }
+            return new And(operands.toArray(new Node[0]));
+        }
+
+        private Node parseNot() {
+            if (accept("NOT", "!")) {
+                return new Not(parseNot());
+            }
+            if (accept("(", "(")) {
+                Node node = parseOr();
+                if (!accept(")", ")")) {
+                    throw error("missing ')'");
+                }
+                return node;
+            }
+            return parsePredicate();
+        }
+
+        private Node parsePredicate() {
+            if (position >= tokens.size()) {
+                throw error("unexpected end of policy");
+            }
+            String token = tokens.get(position++);
+            int colon = token.indexOf(':');
+            if (colon <= 0 || colon == token.length() - 1 || ")".equals(token)) {
+                throw error(String.format("'%s' is not a key:value predicate", token));
+            }
+            if ("*".equals(token.substring(colon + 1))) {
+                return new HasKey(token.substring(0, colon));
+            }
+            return new Has(token);
+        }
+
+        private boolean accept(final String word, final String symbol) {
+            if (position < tokens.size() && (tokens.get(position).equalsIgnoreCase(word) || tokens.get(position).equals(symbol))) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void tokenize() {
+            int i = 0;
+            while (i < policy.length()) {
+                char c = policy.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '(' || c == ')' || c == '!') {
+                    tokens.add(String.valueOf(c));
+                    i++;
+                } else if ((c == '&' || c == '|') && i + 1 < policy.length() && policy.charAt(i + 1) == c) {
+                    tokens.add(policy.substring(i, i + 2));
+                    i += 2;
+                } else {
+                    int start = i;
+                    while (i < policy.length() && !Character.isWhitespace(policy.charAt(i)) && "()!&|".indexOf(policy.charAt(i)) < 0) {
+                        i++;
+                    }
+                    if (start == i) {
+                        throw error(String.format("unexpected '%s'", c));
+                    }
+                    tokens.add(policy.substring(start, i));
+                }
+            }
+        }
+
+        private IllegalArgumentException error(final String message) {
+            return new IllegalArgumentException(String.format("Policy \"%s\": %s", policy, message));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.canisminor.assettransfer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU of compiled policies, so checks against popular assets skip parsing.
+ * Entries are keyed by the policy string itself: the map hashes it, and equality on the full
+ * string means two policies with the same hash can never share a compiled tree.
+ * Shared by every transaction thread of the contract, hence synchronized.
+ */
+final class AccessPolicyCache {
+    private final Map<String, AccessPolicy> policies;
+
+    AccessPolicyCache(final int capacity) {
+        this.policies = new LinkedHashMap<String, AccessPolicy>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, AccessPolicy> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    synchronized AccessPolicy get(final String policy) {
+        String key = policy == null ? "" : policy;
+        AccessPolicy compiled = policies.get(key);
+        if (compiled == null) {
+            compiled = AccessPolicy.compile(key);
+            policies.put(key, compiled);
+        }
+        return compiled;
+    }
+}
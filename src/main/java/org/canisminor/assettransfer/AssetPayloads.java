@@ -0,0 +1,131 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hot/cold split of asset records. In "split" mode a DataAsset, DBAsset or VideoAsset is stored as a
+ * metadata record under its usual key, with the encrypted payload properties (cid, jdbcUrl, username,
+ * password, rtspUrl, aesKey) left null, and its payload under a key of its own, as an instance of the
+ * same class holding only the id and those properties. Listings, searches and index lookups read the
+ * metadata records alone; full reads put the payload back. Records written inline, before the split
+ * was enabled or after it was turned off, keep their payload and are read as they are.
+ */
+final class AssetPayloads {
+    // Chaincode environment variable selecting where asset payloads are kept: "inline" (default) or "split"
+    static final String ENVIRONMENT_VARIABLE = "DATAASSET_PAYLOAD_MODE";
+
+    // 资产id => 加密负载
+    static final String PAYLOAD = "payload~assetId";
+
+    private static final Map<Class<?>, List<String>> PROPERTIES = new HashMap<>();
+
+    static {
+        PROPERTIES.put(DataAsset.class, Arrays.asList("cid", "aesKey"));
+        PROPERTIES.put(DBAsset.class, Arrays.asList("jdbcUrl", "username", "password", "aesKey"));
+        PROPERTIES.put(VideoAsset.class, Arrays.asList("rtspUrl", "aesKey"));
+    }
+
+    private AssetPayloads() {
+    }
+
+    static boolean splitForName(final String mode) {
+        if (mode == null || mode.isEmpty() || "inline".equalsIgnoreCase(mode)) {
+            return false;
+        }
+        if ("split".equalsIgnoreCase(mode)) {
+            return true;
+        }
+        throw new IllegalArgumentException(String.format("Unknown payload mode %s", mode));
+    }
+
+    static String key(final ChaincodeStub stub, final String assetId) {
+        return stub.createCompositeKey(PAYLOAD, assetId).toString();
+    }
+
+    // Whether a projection of type needs payload properties
+    static boolean selectsPayload(final Class<?> type, final FieldProjection fields) {
+        List<String> properties = PROPERTIES.get(type);
+        if (properties == null) {
+            return false;
+        }
+        for (String property : properties) {
+            if (fields.includes(property)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static String id(final Object asset) {
+        if (asset instanceof DataAsset) {
+            return ((DataAsset) asset).getId();
+        }
+        if (asset instanceof DBAsset) {
+            return ((DBAsset) asset).getId();
+        }
+        return ((VideoAsset) asset).getId();
+    }
+
+    // Whether the record carries any payload property, i.e. was written inline
+    static boolean hasPayload(final Object asset) {
+        if (asset instanceof DataAsset) {
+            DataAsset dataAsset = (DataAsset) asset;
+            return dataAsset.getCid() != null || dataAsset.getAesKey() != null;
+        }
+        if (asset instanceof DBAsset) {
+            DBAsset dbAsset = (DBAsset) asset;
+            return dbAsset.getJdbcUrl() != null || dbAsset.getUsername() != null || dbAsset.getPassword() != null || dbAsset.getAesKey() != null;
+        }
+        VideoAsset videoAsset = (VideoAsset) asset;
+        return videoAsset.getRtspUrl() != null || videoAsset.getAesKey() != null;
+    }
+
+    static Object metadata(final Object asset) {
+        if (asset instanceof DataAsset) {
+            DataAsset dataAsset = (DataAsset) asset;
+            return new DataAsset(dataAsset.getId(), dataAsset.getName(), dataAsset.getOwnerId(), dataAsset.getPolicy(), dataAsset.getLocation(), dataAsset.getField(), null, null, dataAsset.getEncType());
+        }
+        if (asset instanceof DBAsset) {
+            DBAsset dbAsset = (DBAsset) asset;
+            return new DBAsset(dbAsset.getId(), dbAsset.getName(), dbAsset.getOwnerId(), dbAsset.getPolicy(), dbAsset.getLocation(), dbAsset.getField(), null, null, null, null, dbAsset.getEncType());
+        }
+        VideoAsset videoAsset = (VideoAsset) asset;
+        return new VideoAsset(videoAsset.getId(), videoAsset.getName(), videoAsset.getOwnerId(), videoAsset.getPolicy(), videoAsset.getLocation(), videoAsset.getField(), null, null, videoAsset.getEncType());
+    }
+
+    static Object payload(final Object asset) {
+        if (asset instanceof DataAsset) {
+            DataAsset dataAsset = (DataAsset) asset;
+            return new DataAsset(dataAsset.getId(), null, null, null, null, null, dataAsset.getCid(), dataAsset.getAesKey(), 0);
+        }
+        if (asset instanceof DBAsset) {
+            DBAsset dbAsset = (DBAsset) asset;
+            return new DBAsset(dbAsset.getId(), null, null, null, null, null, dbAsset.getJdbcUrl(), dbAsset.getUsername(), dbAsset.getPassword(), dbAsset.getAesKey(), 0);
+        }
+        VideoAsset videoAsset = (VideoAsset) asset;
+        return new VideoAsset(videoAsset.getId(), null, null, null, null, null, videoAsset.getRtspUrl(), videoAsset.getAesKey(), 0);
+    }
+
+    // The full asset from its metadata record and its payload
+    @SuppressWarnings("unchecked")
+    static <T> T merge(final T metadata, final T payload) {
+        if (metadata instanceof DataAsset) {
+            DataAsset m = (DataAsset) metadata;
+            DataAsset p = (DataAsset) payload;
+            return (T) new DataAsset(m.getId(), m.getName(), m.getOwnerId(), m.getPolicy(), m.getLocation(), m.getField(), p.getCid(), p.getAesKey(), m.getEncType());
+        }
+        if (metadata instanceof DBAsset) {
+            DBAsset m = (DBAsset) metadata;
+            DBAsset p = (DBAsset) payload;
+            return (T) new DBAsset(m.getId(), m.getName(), m.getOwnerId(), m.getPolicy(), m.getLocation(), m.getField(), p.getJdbcUrl(), p.getUsername(), p.getPassword(), p.getAesKey(), m.getEncType());
+        }
+        VideoAsset m = (VideoAsset) metadata;
+        VideoAsset p = (VideoAsset) payload;
+        return (T) new VideoAsset(m.getId(), m.getName(), m.getOwnerId(), m.getPolicy(), m.getLocation(), m.getField(), p.getRtspUrl(), p.getAesKey(), m.getEncType());
+    }
+}
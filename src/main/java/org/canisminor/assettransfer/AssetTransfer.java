@@ -1,22 +1,39 @@
 package org.canisminor.assettransfer;
 
 import com.owlike.genson.Genson;
+import com.owlike.genson.JsonBindingException;
 import org.hyperledger.fabric.contract.Context;
 import org.hyperledger.fabric.contract.ContractInterface;
 import org.hyperledger.fabric.contract.annotation.*;
+import org.hyperledger.fabric.protos.peer.QueryResponseMetadata;
 import org.hyperledger.fabric.shim.Chaincode;
 import org.hyperledger.fabric.shim.ChaincodeException;
 import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
 import org.hyperledger.fabric.shim.ledger.KeyValue;
 import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
 
 @Contract(
         name = "DataAsset",
+        transactionSerializer = "org.canisminor.assettransfer.EntityTransactionSerializer",
         info = @Info(
                 title = "Data Asset Transfer",
                 description = "Chaincode of Data Asset X Project",
@@ -34,20 +51,74 @@ import java.util.List;
 
 @Default
 public final class AssetTransfer implements ContractInterface {
-    private final Genson genson = new Genson();
+    private final Genson genson = EntityConverters.newGenson();
+    private final ValueCodec codec;
+    private final EntityEvents events;
+    private final boolean appendStatusChanges;
+    private final boolean enforcePolicies;
+    private final AccessPolicyCache policies = new AccessPolicyCache(1024);
+    private final boolean bitsetAttributes;
+    private final EntityKeys keys;
+    private final boolean splitPayloads;
+
+    // 有序键模式下，遍历旧键区间的分页书签前缀
+    private static final String LEGACY_BOOKMARK = "legacy|";
+
+    // 迁移任务 => 进度
+    private static final String MIGRATION = "migration~name";
+
+    // 富查询只匹配资产元数据记录：只有资产带 ownerId、location 和 field，拆分后的负载记录三者皆无
+    private static final String ASSET_SELECTOR = "{\"ownerId\":{\"$type\":\"string\"},\"location\":{\"$type\":\"string\"},\"field\":{\"$type\":\"string\"}}";
 
     private enum AssetTransferErrors {
         ASSET_NOT_FOUND,
-        ASSET_ALREADY_EXISTS
+        ASSET_ALREADY_EXISTS,
+        INVALID_ARGUMENT,
+        ACCESS_DENIED
+    }
+
+    public AssetTransfer() {
+        this(System::getenv);
+    }
+
+    // Modes are read through environment, the chaincode process environment outside of tests
+    AssetTransfer(final UnaryOperator<String> environment) {
+        codec = new MeteringValueCodec(ValueCodec.forName(environment.apply(ValueCodec.ENVIRONMENT_VARIABLE), genson));
+        events = EntityEvents.forName(environment.apply(EntityEvents.ENVIRONMENT_VARIABLE), genson);
+        appendStatusChanges = StatusLog.appendForName(environment.apply(StatusLog.ENVIRONMENT_VARIABLE));
+        enforcePolicies = AccessPolicy.enforceForName(environment.apply(AccessPolicy.ENVIRONMENT_VARIABLE));
+        bitsetAttributes = AttributeDictionary.bitsetForName(environment.apply(AttributeDictionary.ENVIRONMENT_VARIABLE));
+        keys = EntityKeys.forName(environment.apply(EntityKeys.ENVIRONMENT_VARIABLE));
+        splitPayloads = AssetPayloads.splitForName(environment.apply(AssetPayloads.ENVIRONMENT_VARIABLE));
+    }
+
+    @Override
+    public Context createContext(final ChaincodeStub stub) {
+        return new AssetTransferContext(stub);
+    }
+
+    @Override
+    public void afterTransaction(final Context ctx, final Object result) {
+        if (ctx instanceof AssetTransferContext) {
+            ((AssetTransferContext) ctx).flush();
+        }
+    }
+
+    @Override
+    public void unknownTransaction(final Context ctx) {
+        if (ctx instanceof AssetTransferContext) {
+            ((AssetTransferContext) ctx).fail();
+        }
+        ContractInterface.super.unknownTransaction(ctx);
     }
 
     // Department
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public boolean DepartmentExists(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String departmentJSON = stub.getStringState(id);
+        byte[] departmentValue = getValue(stub, id);
 
-        return (departmentJSON != null && !departmentJSON.isEmpty());
+        return (departmentValue != null && departmentValue.length > 0);
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
@@ -61,71 +132,211 @@ public final class AssetTransfer implements ContractInterface {
         }
 
         Department department = new Department(id, name, attribute);
-        // Use Genson to convert the Asset into string, sort it alphabetically and serialize it into a json string
-        String sortedJson = genson.serialize(department);
-        stub.putStringState(id, sortedJson);
+        String sortedJson = putDepartment(stub, department);
 
-        stub.setEvent("CreateDepartment", sortedJson.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("CreateDepartment", events.created("Department", id, sortedJson));
         return department;
     }
 
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String CreateDepartmentsBatch(final Context ctx, final String departmentsJSON) {
+        ChaincodeStub stub = ctx.getStub();
+        Department[] departments = parseBatch(departmentsJSON, Department[].class);
+        for (int i = 0; i < departments.length; i++) {
+            checkRequired("Department", i, "id", departments[i].getId());
+        }
+
+        Set<String> ids = new HashSet<>();
+        for (Department department : departments) {
+            if (!ids.add(department.getId()) || DepartmentExists(ctx, department.getId())) {
+                String errorMessage = String.format("Department %s already exists", department.getId());
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+            }
+        }
+
+        JsonResponseWriter writer = new JsonResponseWriter();
+        EntityEvents.Batch eventBatch = events.newBatch();
+        writer.beginArray();
+        for (Department department : departments) {
+            String sortedJson = putDepartment(stub, department);
+            writer.writeRawValue(sortedJson.getBytes(StandardCharsets.UTF_8));
+            eventBatch.created("Department", department.getId(), sortedJson);
+        }
+        writer.endArray();
+
+        final String response = writer.toString();
+        stub.setEvent("CreateDepartmentsBatch", eventBatch.payload(response));
+        return response;
+    }
+
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public Department ReadDepartment(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String departmentJSON = stub.getStringState(id);
+        Department department = getDepartment(stub, id);
 
-        if (departmentJSON == null || departmentJSON.isEmpty()) {
+        if (department == null) {
             String errorMessage = String.format("Department %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        Department department = genson.deserialize(departmentJSON, Department.class);
         return department;
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public Department UpdateDepartmentAttribute(final Context ctx, final String id, final String attribute) {
         ChaincodeStub stub = ctx.getStub();
-        String departmentJSON = stub.getStringState(id);
+        Department newDepartment = getDepartment(stub, id);
 
-        if (departmentJSON == null || departmentJSON.isEmpty()) {
+        if (newDepartment == null) {
             String errorMessage = String.format("Department %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        Department newDepartment = genson.deserialize(departmentJSON, Department.class);
+        Set<String> oldItems = AccessPolicy.attributeItems(newDepartment.getAttribute());
+        Set<String> newItems = AccessPolicy.attributeItems(attribute);
+        for (String item : oldItems) {
+            if (!newItems.contains(item)) {
+                IndexKeys.delete(stub, IndexKeys.ATTRIBUTE_DEPARTMENT, item, id);
+            }
+        }
+        for (String item : newItems) {
+            if (!oldItems.contains(item)) {
+                IndexKeys.put(stub, IndexKeys.ATTRIBUTE_DEPARTMENT, item, id);
+            }
+        }
+
         newDepartment.setAttribute(attribute);
-        String sortedJson = genson.serialize(newDepartment);
-        stub.putStringState(id, sortedJson);
+        String sortedJson = putDepartmentEntity(stub, newDepartment);
 
-        stub.setEvent("UpdateDepartmentAttribute", sortedJson.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("UpdateDepartmentAttribute", events.updated("Department", id, sortedJson, "attribute", attribute));
         return newDepartment;
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public String GetAllDepartment(final Context ctx) {
+        return getStateByRangeAsJson(ctx, "Department");
+    }
+
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllDepartmentWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        return getStateByRangeWithPaginationAsJson(ctx, "Department", pageSize, bookmark);
+    }
+
+    // Departments by attribute
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetDepartmentsByAttribute(final Context ctx, final String attribute, final int pageSize, final String bookmark) {
+        CompositeKey prefix = IndexKeys.prefix(ctx.getStub(), IndexKeys.ATTRIBUTE_DEPARTMENT, attribute);
+        return getIndexedStateWithPaginationAsJson(ctx, Department.class, prefix, pageSize, bookmark);
+    }
+
+    // Departments holding every key:value item of attributes, written like Department.attribute. With several
+    // items fetchedRecordsCount and the bookmark count the entries scanned in the driving posting list.
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetDepartmentsByAttributes(final Context ctx, final String attributes, final int pageSize, final String bookmark) {
+        ChaincodeStub stub = ctx.getStub();
+        checkPageSize(pageSize);
+
+        List<String> items = new ArrayList<>(AccessPolicy.attributeItems(attributes));
+        if (items.isEmpty()) {
+            String errorMessage = String.format("Attributes \"%s\" hold no key:value item", attributes);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+        if (items.size() == 1) {
+            return getIndexedStateWithPaginationAsJson(ctx, Department.class, IndexKeys.prefix(stub, IndexKeys.ATTRIBUTE_DEPARTMENT, items.get(0)), pageSize, bookmark);
+        }
+
+        // The bookmark records which posting list drives the intersection as its position among the
+        // items, in the order they are written in attributes: "<position>|<inner bookmark>"
+        int driving;
+        QueryResultsIteratorWithMetadata<KeyValue> results;
+        if (bookmark != null && !bookmark.isEmpty()) {
+            int separator = bookmark.indexOf('|');
+            driving = separator < 0 ? -1 : parsePosition(bookmark.substring(0, separator));
+            if (driving < 0 || driving >= items.size()) {
+                String errorMessage = String.format("Bookmark %s was not returned by GetDepartmentsByAttributes", bookmark);
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+            }
+            results = stub.getStateByPartialCompositeKeyWithPagination(IndexKeys.prefix(stub, IndexKeys.ATTRIBUTE_DEPARTMENT, items.get(driving)), pageSize, bookmark.substring(separator + 1));
+        } else {
+            // Posting list sizes are not stored, so the first page only tells a list that fits in it from
+            // one that does not. The first item whose first page is not full drives; when every first page
+            // is full the first item drives whatever the sizes. Pages fetched and not walked are closed.
+            driving = 0;
+            results = stub.getStateByPartialCompositeKeyWithPagination(IndexKeys.prefix(stub, IndexKeys.ATTRIBUTE_DEPARTMENT, items.get(0)), pageSize, "");
+            for (int i = 1; i < items.size() && results.getMetadata().getFetchedRecordsCount() >= pageSize; i++) {
+                QueryResultsIteratorWithMetadata<KeyValue> itemResults = stub.getStateByPartialCompositeKeyWithPagination(IndexKeys.prefix(stub, IndexKeys.ATTRIBUTE_DEPARTMENT, items.get(i)), pageSize, "");
+                if (itemResults.getMetadata().getFetchedRecordsCount() < pageSize) {
+                    ClosingResults.of(results).close();
+                    driving = i;
+                    results = itemResults;
+                } else {
+                    ClosingResults.of(itemResults).close();
+                }
+            }
+        }
+
+        // Each candidate is matched on its own record: its attribute string against the items, or an
+        // attribute set an earlier version encoded in place with a word-wise test against their bitset
+        BitSet required = bitsetAttributes ? AttributeDictionary.encode(stub, new HashSet<>(items)) : null;
+        JsonResponseWriter writer = new JsonResponseWriter();
+        writer.beginObject().writeName("records").beginArray();
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                Department department = getEntity(stub, IndexKeys.entityId(stub, result.getKey()), Department.class);
+                if (department == null) {
+                    continue;
+                }
+                String attribute = department.getAttribute();
+                boolean matches;
+                if (AttributeDictionary.isEncoded(attribute)) {
+                    matches = required != null && AttributeDictionary.containsAll(AttributeDictionary.bits(attribute), required);
+                } else {
+                    matches = AccessPolicy.attributeItems(attribute).containsAll(items);
+                }
+                if (matches) {
+                    writeDepartment(stub, department, writer, FieldProjection.ALL);
+                }
+            }
+        }
+        writer.endArray();
+
+        QueryResponseMetadata metadata = results.getMetadata();
+        String nextBookmark = metadata.getBookmark() == null || metadata.getBookmark().isEmpty() ? "" : driving + "|" + metadata.getBookmark();
+        return writePageMetadata(writer, metadata.getFetchedRecordsCount(), nextBookmark);
+    }
+
+    // Writes the attribute postings, and in bitset mode the department bitsets, of state created
+    // before they were maintained. Codes come from the codes migration, run it first; departments
+    // with uncoded items get no bitset. Reads every department in one transaction; on large ledgers
+    // run the attributes migration instead.
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public long RebuildAttributeIndex(final Context ctx) {
         ChaincodeStub stub = ctx.getStub();
-        List<Department> queryResults = new ArrayList<>();
 
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("Department", "Department9999999999999999999999999");
-        for (KeyValue result : results) {
-            Department department = genson.deserialize(result.getStringValue(), Department.class);
-            queryResults.add(department);
+        long count = 0;
+        QueryResultsIterator<KeyValue> results = getEntities(stub, "Department");
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                indexAttributes(stub, decodeDepartment(stub, codec.decode(result.getValue(), Department.class)));
+                count++;
+            }
         }
 
-        final String reponse = genson.serialize(queryResults);
-        return reponse;
+        return count;
     }
 
     // DataAsset
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public boolean DataAssetExists(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String dataAssetJSON = stub.getStringState(id);
+        byte[] dataAssetValue = getValue(stub, id);
 
-        return (dataAssetJSON != null && !dataAssetJSON.isEmpty());
+        return (dataAssetValue != null && dataAssetValue.length > 0);
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
@@ -145,50 +356,83 @@ public final class AssetTransfer implements ContractInterface {
         }
 
         DataAsset dataAsset = new DataAsset(id, name, ownerId, policy, location, field, cid, aesKey, encType);
-        String sortedJson = genson.serialize(dataAsset);
-        stub.putStringState(id, sortedJson);
+        String sortedJson = putDataAsset(stub, dataAsset);
 
-        stub.setEvent("CreateDataAsset", sortedJson.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("CreateDataAsset", events.created("DataAsset", id, sortedJson));
         return dataAsset;
     }
 
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String CreateDataAssetsBatch(final Context ctx, final String dataAssetsJSON) {
+        ChaincodeStub stub = ctx.getStub();
+        DataAsset[] dataAssets = parseBatch(dataAssetsJSON, DataAsset[].class);
+        for (int i = 0; i < dataAssets.length; i++) {
+            checkAssetFields("DataAsset", i, dataAssets[i].getId(), dataAssets[i].getOwnerId(), dataAssets[i].getLocation(), dataAssets[i].getField());
+        }
+
+        // Each distinct owner is checked once, however many of its assets are in the batch
+        Set<String> ids = new HashSet<>();
+        Set<String> ownerIds = new HashSet<>();
+        for (DataAsset dataAsset : dataAssets) {
+            if (!ids.add(dataAsset.getId()) || DataAssetExists(ctx, dataAsset.getId())) {
+                String errorMessage = String.format("DataAsset %s already exists", dataAsset.getId());
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+            }
+
+            if (ownerIds.add(dataAsset.getOwnerId()) && !DepartmentExists(ctx, dataAsset.getOwnerId())) {
+                String errorMessage = String.format("Department %s does not exist", dataAsset.getOwnerId());
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+            }
+        }
+
+        JsonResponseWriter writer = new JsonResponseWriter();
+        EntityEvents.Batch eventBatch = events.newBatch();
+        writer.beginArray();
+        for (DataAsset dataAsset : dataAssets) {
+            String sortedJson = putDataAsset(stub, dataAsset);
+            writer.writeRawValue(sortedJson.getBytes(StandardCharsets.UTF_8));
+            eventBatch.created("DataAsset", dataAsset.getId(), sortedJson);
+        }
+        writer.endArray();
+
+        final String response = writer.toString();
+        stub.setEvent("CreateDataAssetsBatch", eventBatch.payload(response));
+        return response;
+    }
+
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public DataAsset ReadDataAsset(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String dataAssetJSON = stub.getStringState(id);
+        DataAsset dataAsset = getAsset(stub, id, DataAsset.class);
 
-        if (dataAssetJSON == null || dataAssetJSON.isEmpty()) {
+        if (dataAsset == null) {
             String errorMessage = String.format("DataAsset %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        DataAsset dataAsset = genson.deserialize(dataAssetJSON, DataAsset.class);
         return dataAsset;
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public String GetAllDataAsset(final Context ctx) {
-        ChaincodeStub stub = ctx.getStub();
-        List<DataAsset> queryResults = new ArrayList<>();
-
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("DataAsset", "DataAsset9999999999999999999999999");
-        for (KeyValue result : results) {
-            DataAsset dataAsset = genson.deserialize(result.getStringValue(), DataAsset.class);
-            queryResults.add(dataAsset);
-        }
+        return getStateByRangeAsJson(ctx, "DataAsset");
+    }
 
-        final String response = genson.serialize(queryResults);
-        return response;
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllDataAssetWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        return getStateByRangeWithPaginationAsJson(ctx, "DataAsset", pageSize, bookmark);
     }
 
     // DBAsset
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public boolean DBAssetExists(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String dbAssetJSON = stub.getStringState(id);
+        byte[] dbAssetValue = getValue(stub, id);
 
-        return (dbAssetJSON != null && !dbAssetJSON.isEmpty());
+        return (dbAssetValue != null && dbAssetValue.length > 0);
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
@@ -208,50 +452,83 @@ public final class AssetTransfer implements ContractInterface {
         }
 
         DBAsset dbAsset = new DBAsset(id, name, ownerId, policy, location, field, jdbcUrl, username, password, aesKey, encType);
-        String sortedJson = genson.serialize(dbAsset);
-        stub.putStringState(id, sortedJson);
+        String sortedJson = putDBAsset(stub, dbAsset);
 
-        stub.setEvent("CreateDBAsset", sortedJson.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("CreateDBAsset", events.created("DBAsset", id, sortedJson));
         return dbAsset;
     }
 
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String CreateDBAssetsBatch(final Context ctx, final String dbAssetsJSON) {
+        ChaincodeStub stub = ctx.getStub();
+        DBAsset[] dbAssets = parseBatch(dbAssetsJSON, DBAsset[].class);
+        for (int i = 0; i < dbAssets.length; i++) {
+            checkAssetFields("DBAsset", i, dbAssets[i].getId(), dbAssets[i].getOwnerId(), dbAssets[i].getLocation(), dbAssets[i].getField());
+        }
+
+        // Each distinct owner is checked once, however many of its assets are in the batch
+        Set<String> ids = new HashSet<>();
+        Set<String> ownerIds = new HashSet<>();
+        for (DBAsset dbAsset : dbAssets) {
+            if (!ids.add(dbAsset.getId()) || DBAssetExists(ctx, dbAsset.getId())) {
+                String errorMessage = String.format("DBAsset %s already exists", dbAsset.getId());
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+            }
+
+            if (ownerIds.add(dbAsset.getOwnerId()) && !DepartmentExists(ctx, dbAsset.getOwnerId())) {
+                String errorMessage = String.format("Department %s does not exist", dbAsset.getOwnerId());
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+            }
+        }
+
+        JsonResponseWriter writer = new JsonResponseWriter();
+        EntityEvents.Batch eventBatch = events.newBatch();
+        writer.beginArray();
+        for (DBAsset dbAsset : dbAssets) {
+            String sortedJson = putDBAsset(stub, dbAsset);
+            writer.writeRawValue(sortedJson.getBytes(StandardCharsets.UTF_8));
+            eventBatch.created("DBAsset", dbAsset.getId(), sortedJson);
+        }
+        writer.endArray();
+
+        final String response = writer.toString();
+        stub.setEvent("CreateDBAssetsBatch", eventBatch.payload(response));
+        return response;
+    }
+
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public DBAsset ReadDBAsset(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String dbAssetJSON = stub.getStringState(id);
+        DBAsset dbAsset = getAsset(stub, id, DBAsset.class);
 
-        if (dbAssetJSON == null || dbAssetJSON.isEmpty()) {
+        if (dbAsset == null) {
             String errorMessage = String.format("DBAsset %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        DBAsset dbAsset = genson.deserialize(dbAssetJSON, DBAsset.class);
         return dbAsset;
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public String GetAllDBAsset(final Context ctx) {
-        ChaincodeStub stub = ctx.getStub();
-        List<DBAsset> queryResults = new ArrayList<>();
-
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("DBAsset", "DBAsset9999999999999999999999999");
-        for (KeyValue result : results) {
-            DBAsset dbAsset = genson.deserialize(result.getStringValue(), DBAsset.class);
-            queryResults.add(dbAsset);
-        }
+        return getStateByRangeAsJson(ctx, "DBAsset");
+    }
 
-        final String response = genson.serialize(queryResults);
-        return response;
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllDBAssetWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        return getStateByRangeWithPaginationAsJson(ctx, "DBAsset", pageSize, bookmark);
     }
 
     // VideoAsset
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public boolean VideoAssetExists(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String videoAssetJSON = stub.getStringState(id);
+        byte[] videoAssetValue = getValue(stub, id);
 
-        return (videoAssetJSON != null && !videoAssetJSON.isEmpty());
+        return (videoAssetValue != null && videoAssetValue.length > 0);
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
@@ -271,50 +548,277 @@ public final class AssetTransfer implements ContractInterface {
         }
 
         VideoAsset videoAsset = new VideoAsset(id, name, ownerId, policy, location, field, rstpUrl, aesKey, encType);
-        String sortedJson = genson.serialize(videoAsset);
-        stub.putStringState(id, sortedJson);
+        String sortedJson = putVideoAsset(stub, videoAsset);
 
-        stub.setEvent("CreateVideoAsset", sortedJson.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("CreateVideoAsset", events.created("VideoAsset", id, sortedJson));
         return videoAsset;
     }
 
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String CreateVideoAssetsBatch(final Context ctx, final String videoAssetsJSON) {
+        ChaincodeStub stub = ctx.getStub();
+        VideoAsset[] videoAssets = parseBatch(videoAssetsJSON, VideoAsset[].class);
+        for (int i = 0; i < videoAssets.length; i++) {
+            checkAssetFields("VideoAsset", i, videoAssets[i].getId(), videoAssets[i].getOwnerId(), videoAssets[i].getLocation(), videoAssets[i].getField());
+        }
+
+        // Each distinct owner is checked once, however many of its assets are in the batch
+        Set<String> ids = new HashSet<>();
+        Set<String> ownerIds = new HashSet<>();
+        for (VideoAsset videoAsset : videoAssets) {
+            if (!ids.add(videoAsset.getId()) || VideoAssetExists(ctx, videoAsset.getId())) {
+                String errorMessage = String.format("VideoAsset %s already exists", videoAsset.getId());
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_ALREADY_EXISTS.toString());
+            }
+
+            if (ownerIds.add(videoAsset.getOwnerId()) && !DepartmentExists(ctx, videoAsset.getOwnerId())) {
+                String errorMessage = String.format("Department %s does not exist", videoAsset.getOwnerId());
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+            }
+        }
+
+        JsonResponseWriter writer = new JsonResponseWriter();
+        EntityEvents.Batch eventBatch = events.newBatch();
+        writer.beginArray();
+        for (VideoAsset videoAsset : videoAssets) {
+            String sortedJson = putVideoAsset(stub, videoAsset);
+            writer.writeRawValue(sortedJson.getBytes(StandardCharsets.UTF_8));
+            eventBatch.created("VideoAsset", videoAsset.getId(), sortedJson);
+        }
+        writer.endArray();
+
+        final String response = writer.toString();
+        stub.setEvent("CreateVideoAssetsBatch", eventBatch.payload(response));
+        return response;
+    }
+
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public VideoAsset ReadVideoAsset(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String videoAssetJSON = stub.getStringState(id);
+        VideoAsset videoAsset = getAsset(stub, id, VideoAsset.class);
 
-        if (videoAssetJSON == null || videoAssetJSON.isEmpty()) {
+        if (videoAsset == null) {
             String errorMessage = String.format("DBAsset %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        VideoAsset videoAsset = genson.deserialize(videoAssetJSON, VideoAsset.class);
         return videoAsset;
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public String GetAllVideoAsset(final Context ctx) {
+        return getStateByRangeAsJson(ctx, "VideoAsset");
+    }
+
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllVideoAssetWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        return getStateByRangeWithPaginationAsJson(ctx, "VideoAsset", pageSize, bookmark);
+    }
+
+    // Assets by owner
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAssetsByOwner(final Context ctx, final String ownerId, final String assetType, final int pageSize, final String bookmark) {
         ChaincodeStub stub = ctx.getStub();
-        List<VideoAsset> queryResults = new ArrayList<>();
+        CompositeKey prefix;
 
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("VideoAsset", "VideoAsset9999999999999999999999999");
-        for (KeyValue result : results) {
-            VideoAsset videoAsset = genson.deserialize(result.getStringValue(), VideoAsset.class);
-            queryResults.add(videoAsset);
+        if (assetType == null || assetType.isEmpty()) {
+            prefix = IndexKeys.prefix(stub, IndexKeys.OWNER_TYPE_ASSET, ownerId);
+        } else {
+            checkAssetType(assetType);
+            prefix = IndexKeys.prefix(stub, IndexKeys.OWNER_TYPE_ASSET, ownerId, assetType);
         }
 
-        final String response = genson.serialize(queryResults);
-        return response;
+        return getIndexedStateWithPaginationAsJson(ctx, prefix, pageSize, bookmark);
+    }
+
+    // Faceted search
+    // With both location and field the page walks one posting list and probes the other, so
+    // fetchedRecordsCount and the bookmark count the posting entries scanned, not the assets
+    // returned: a page may hold fewer records, even none, while more pages follow.
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String SearchAssets(final Context ctx, final String location, final String field, final String assetType, final int pageSize, final String bookmark) {
+        ChaincodeStub stub = ctx.getStub();
+        checkPageSize(pageSize);
+
+        boolean byLocation = location != null && !location.isEmpty();
+        boolean byField = field != null && !field.isEmpty();
+        if (!byLocation && !byField) {
+            String errorMessage = "At least one of location and field must be given";
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+
+        boolean byType = assetType != null && !assetType.isEmpty();
+        if (byType) {
+            checkAssetType(assetType);
+        }
+
+        CompositeKey locationPrefix = byType ? IndexKeys.prefix(stub, IndexKeys.LOCATION_TYPE_ASSET, location, assetType) : IndexKeys.prefix(stub, IndexKeys.LOCATION_TYPE_ASSET, location);
+        CompositeKey fieldPrefix = byType ? IndexKeys.prefix(stub, IndexKeys.FIELD_TYPE_ASSET, field, assetType) : IndexKeys.prefix(stub, IndexKeys.FIELD_TYPE_ASSET, field);
+        if (!byLocation) {
+            return getIndexedStateWithPaginationAsJson(ctx, fieldPrefix, pageSize, bookmark);
+        }
+        if (!byField) {
+            return getIndexedStateWithPaginationAsJson(ctx, locationPrefix, pageSize, bookmark);
+        }
+
+        // The bookmark records which posting list drives the intersection: "<index>|<inner bookmark>"
+        String drivingIndex;
+        QueryResultsIteratorWithMetadata<KeyValue> results;
+        if (bookmark != null && !bookmark.isEmpty()) {
+            int separator = bookmark.indexOf('|');
+            drivingIndex = separator < 0 ? "" : bookmark.substring(0, separator);
+            if (!IndexKeys.LOCATION_TYPE_ASSET.equals(drivingIndex) && !IndexKeys.FIELD_TYPE_ASSET.equals(drivingIndex)) {
+                String errorMessage = String.format("Bookmark %s was not returned by SearchAssets", bookmark);
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+            }
+            CompositeKey drivingPrefix = IndexKeys.LOCATION_TYPE_ASSET.equals(drivingIndex) ? locationPrefix : fieldPrefix;
+            results = stub.getStateByPartialCompositeKeyWithPagination(drivingPrefix, pageSize, bookmark.substring(separator + 1));
+        } else {
+            // Posting list sizes are not stored, so the first page only tells a list that fits in it
+            // from one that does not. Location drives unless its first page is full and the field's is
+            // not; when both are full location drives whatever their sizes. Such a first call fetches
+            // two pages and closes the one it does not walk.
+            drivingIndex = IndexKeys.LOCATION_TYPE_ASSET;
+            results = stub.getStateByPartialCompositeKeyWithPagination(locationPrefix, pageSize, "");
+            if (results.getMetadata().getFetchedRecordsCount() >= pageSize) {
+                QueryResultsIteratorWithMetadata<KeyValue> fieldResults = stub.getStateByPartialCompositeKeyWithPagination(fieldPrefix, pageSize, "");
+                if (fieldResults.getMetadata().getFetchedRecordsCount() < pageSize) {
+                    ClosingResults.of(results).close();
+                    drivingIndex = IndexKeys.FIELD_TYPE_ASSET;
+                    results = fieldResults;
+                } else {
+                    ClosingResults.of(fieldResults).close();
+                }
+            }
+        }
+
+        String probeIndex = IndexKeys.LOCATION_TYPE_ASSET.equals(drivingIndex) ? IndexKeys.FIELD_TYPE_ASSET : IndexKeys.LOCATION_TYPE_ASSET;
+        String probeValue = IndexKeys.LOCATION_TYPE_ASSET.equals(drivingIndex) ? field : location;
+        JsonResponseWriter writer = new JsonResponseWriter();
+        writer.beginObject().writeName("records").beginArray();
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                List<String> attributes = stub.splitCompositeKey(result.getKey()).getAttributes();
+                String type = attributes.get(1);
+                String id = attributes.get(2);
+                if (!IndexKeys.contains(stub, probeIndex, probeValue, type, id)) {
+                    continue;
+                }
+                byte[] value = getValue(stub, id);
+                if (value != null && value.length > 0) {
+                    codec.writeJson(value, writer);
+                }
+            }
+        }
+        writer.endArray();
+
+        QueryResponseMetadata metadata = results.getMetadata();
+        String nextBookmark = metadata.getBookmark() == null || metadata.getBookmark().isEmpty() ? "" : drivingIndex + "|" + metadata.getBookmark();
+        return writePageMetadata(writer, metadata.getFetchedRecordsCount(), nextBookmark);
+    }
+
+    // Field projection
+    // Reads and listings returning only the properties named in fields, a comma-separated list such as
+    // "id,name,ownerId,location,field"; a blank list returns every property. Properties left out are
+    // skipped in the stored value without being decoded. With split asset payloads a read selecting payload
+    // properties also fetches the payload, while the listings only read metadata records: they reject
+    // payload properties, and a blank list returns the metadata records like the other asset listings.
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String ReadEntityFields(final Context ctx, final String entityType, final String id, final String fields) {
+        ChaincodeStub stub = ctx.getStub();
+        FieldProjection projection = checkFields(entityType, fields);
+        Class<?> clazz = EntityConverters.entityType(entityType);
+        byte[] value;
+        if (AssetPayloads.selectsPayload(clazz, projection)) {
+            Object asset = getAsset(stub, id, clazz);
+            value = asset == null ? null : genson.serialize(asset).getBytes(StandardCharsets.UTF_8);
+        } else {
+            value = getValue(stub, id);
+        }
+
+        if (value == null || value.length == 0) {
+            String errorMessage = String.format("%s %s does not exist", entityType, id);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+        }
+
+        JsonResponseWriter writer = new JsonResponseWriter();
+        writeEntity(stub, clazz, value, writer, projection);
+        return writer.toString();
+    }
+
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllEntityFields(final Context ctx, final String entityType, final String fields) {
+        return getStateByRangeAsJson(ctx, entityType, checkListingFields(entityType, fields));
+    }
+
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllEntityFieldsWithPagination(final Context ctx, final String entityType, final String fields, final int pageSize, final String bookmark) {
+        return getStateByRangeWithPaginationAsJson(ctx, entityType, checkListingFields(entityType, fields), pageSize, bookmark);
+    }
+
+    // Rich queries
+    // Pages through the assets matching a CouchDB Mango selector such as {"ownerId":"Department1","location":"east"}.
+    // A full query object with a "selector" member, e.g. to add use_index or sort, keeps its other members.
+    // The selector is combined with ASSET_SELECTOR, so orders, applications, payload records and other
+    // documents never match, and results under composite keys are skipped.
+    // Needs a CouchDB state database and the JSON value codec; the indexes shipped under
+    // META-INF/statedb/couchdb/indexes cover ownerId, location and field.
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String QueryAssets(final Context ctx, final String selectorJson, final int pageSize, final String bookmark) {
+        ChaincodeStub stub = ctx.getStub();
+        checkPageSize(pageSize);
+
+        Map<?, ?> selector;
+        try {
+            selector = genson.deserialize(selectorJson, Map.class);
+        } catch (JsonBindingException e) {
+            String errorMessage = String.format("Selector is not a valid JSON object: %s", e.getMessage());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+        if (selector == null || selector.isEmpty()) {
+            String errorMessage = "Selector must be a non-empty JSON object";
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+        String query;
+        if (selector.containsKey("selector")) {
+            Map<Object, Object> fullQuery = new LinkedHashMap<>(selector);
+            fullQuery.put("selector", Collections.singletonMap("$and", Arrays.asList(selector.get("selector"), genson.deserialize(ASSET_SELECTOR, Map.class))));
+            query = genson.serialize(fullQuery);
+        } else {
+            query = "{\"selector\":{\"$and\":[" + selectorJson + "," + ASSET_SELECTOR + "]}}";
+        }
+
+        JsonResponseWriter writer = new JsonResponseWriter();
+        QueryResultsIteratorWithMetadata<KeyValue> results = stub.getQueryResultWithPagination(query, pageSize, bookmark == null ? "" : bookmark);
+        writer.beginObject().writeName("records").beginArray();
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                if (!result.getKey().startsWith(CompositeKey.NAMESPACE)) {
+                    codec.writeJson(result.getValue(), writer);
+                }
+            }
+        }
+        writer.endArray();
+
+        QueryResponseMetadata metadata = results.getMetadata();
+        return writePageMetadata(writer, metadata.getFetchedRecordsCount(), metadata.getBookmark());
     }
 
     // DataAssetOrder
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public boolean DataAssetOrderExists(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String dataAssetOrderJSON = stub.getStringState(id);
+        byte[] dataAssetOrderValue = getValue(stub, id);
 
-        return (dataAssetOrderJSON != null && !dataAssetOrderJSON.isEmpty());
+        return (dataAssetOrderValue != null && dataAssetOrderValue.length > 0);
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
@@ -339,71 +843,130 @@ public final class AssetTransfer implements ContractInterface {
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
+        if (enforcePolicies && !checkAccess(stub, "DataAsset", dataAssetId, applicantId)) {
+            String errorMessage = String.format("Department %s does not satisfy the policy of DataAsset %s", applicantId, dataAssetId);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ACCESS_DENIED.toString());
+        }
+
         DataAssetOrder dataAssetOrder = new DataAssetOrder(id, dataAssetId, applicantId, status);
-        String sortedJson = genson.serialize(dataAssetOrder);
-        stub.putStringState(id, sortedJson);
+        String sortedJson = putEntity(stub, id, dataAssetOrder);
+        countCreated(stub, "DataAssetOrder", applicantId, status);
+        putIndexEntries(stub, dataAssetOrder);
 
-        stub.setEvent("CreateDataAssetOrder", sortedJson.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("CreateDataAssetOrder", events.created("DataAssetOrder", id, sortedJson));
         return dataAssetOrder;
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public DataAssetOrder ReadDataAssetOrder(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String dataAssetOrderJSON = stub.getStringState(id);
+        DataAssetOrder dataAssetOrder = getEntity(stub, id, DataAssetOrder.class);
 
-        if (dataAssetOrderJSON == null || dataAssetOrderJSON.isEmpty()) {
+        if (dataAssetOrder == null) {
             String errorMessage = String.format("DataAssetOrder %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        DataAssetOrder dataAssetOrder = genson.deserialize(dataAssetOrderJSON, DataAssetOrder.class);
+        if (appendStatusChanges) {
+            Integer status = StatusLog.latest(stub, "DataAssetOrder", id);
+            if (status != null) {
+                dataAssetOrder.setStatus(status);
+            }
+        }
+
         return dataAssetOrder;
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public DataAssetOrder UpdateDataAssetOrderStatus(final Context ctx, final String id, final int status) {
         ChaincodeStub stub = ctx.getStub();
-        String dataAssetOrderJSON = stub.getStringState(id);
+        DataAssetOrder newDataAssetOrder = getEntity(stub, id, DataAssetOrder.class);
 
-        if (dataAssetOrderJSON == null || dataAssetOrderJSON.isEmpty()) {
+        if (newDataAssetOrder == null) {
             String errorMessage = String.format("DataAssetOrder %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        DataAssetOrder newDataAssetOrder = genson.deserialize(dataAssetOrderJSON, DataAssetOrder.class);
+        if (appendStatusChanges) {
+            StatusLog.append(stub, "DataAssetOrder", id, status);
+            newDataAssetOrder.setStatus(status);
+            stub.setEvent("UpdateDataAssetOrderStatus", events.updated("DataAssetOrder", id, genson.serialize(newDataAssetOrder), "status", status));
+            return newDataAssetOrder;
+        }
+
+        countStatusChange(stub, "DataAssetOrder", newDataAssetOrder.getStatus(), status);
         newDataAssetOrder.setStatus(status);
-        String sortedJSON = genson.serialize(newDataAssetOrder);
-        stub.putStringState(id, sortedJSON);
+        String sortedJSON = putEntity(stub, id, newDataAssetOrder);
 
-        stub.setEvent("UpdateDataAssetOrderStatus", sortedJSON.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("UpdateDataAssetOrderStatus", events.updated("DataAssetOrder", id, sortedJSON, "status", status));
         return newDataAssetOrder;
     }
 
-    @Transaction(intent = Transaction.TYPE.EVALUATE)
-    public String GetAllDataAssetOrder(final Context ctx) {
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String UpdateDataAssetOrderStatusBatch(final Context ctx, final String updatesJSON) {
         ChaincodeStub stub = ctx.getStub();
-        List<DataAssetOrder> queryResults = new ArrayList<>();
+        StatusUpdate[] updates = parseBatch(updatesJSON, StatusUpdate[].class);
+        checkDistinctIds(updates);
+
+        // Every id is resolved before the first write so a missing one rejects the whole batch;
+        // in append mode that reads the stored record only, never the status log
+        List<DataAssetOrder> dataAssetOrders = new ArrayList<>();
+        for (StatusUpdate update : updates) {
+            dataAssetOrders.add(appendStatusChanges ? getStoredEntity(stub, "DataAssetOrder", update.getId(), DataAssetOrder.class) : ReadDataAssetOrder(ctx, update.getId()));
+        }
 
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("DataAssetOrder", "DataAssetOrder99999999999999999999");
-        for (KeyValue result : results) {
-            DataAssetOrder dataAssetOrder = genson.deserialize(result.getStringValue(), DataAssetOrder.class);
-            queryResults.add(dataAssetOrder);
+        List<StatusUpdateResult> results = new ArrayList<>();
+        EntityEvents.Batch eventBatch = events.newBatch();
+        for (int i = 0; i < updates.length; i++) {
+            DataAssetOrder dataAssetOrder = dataAssetOrders.get(i);
+            int storedStatus = dataAssetOrder.getStatus();
+            int status = updates[i].getStatus();
+            if (appendStatusChanges) {
+                // The current status is not known without reading the log, so every change is appended
+                // and reported against the status stored in the record
+                StatusLog.append(stub, "DataAssetOrder", dataAssetOrder.getId(), status);
+                dataAssetOrder.setStatus(status);
+                eventBatch.updated("DataAssetOrder", dataAssetOrder.getId(), genson.serialize(dataAssetOrder), "status", status);
+                results.add(new StatusUpdateResult(dataAssetOrder.getId(), storedStatus, status, StatusUpdateResult.Outcome.APPENDED));
+                continue;
+            }
+            if (storedStatus == status) {
+                results.add(new StatusUpdateResult(dataAssetOrder.getId(), storedStatus, status, StatusUpdateResult.Outcome.UNCHANGED));
+                continue;
+            }
+
+            dataAssetOrder.setStatus(status);
+            countStatusChange(stub, "DataAssetOrder", storedStatus, status);
+            String sortedJson = putEntity(stub, dataAssetOrder.getId(), dataAssetOrder);
+            eventBatch.updated("DataAssetOrder", dataAssetOrder.getId(), sortedJson, "status", status);
+            results.add(new StatusUpdateResult(dataAssetOrder.getId(), storedStatus, status, StatusUpdateResult.Outcome.UPDATED));
         }
 
-        final String response = genson.serialize(queryResults);
+        final String response = genson.serialize(results);
+        stub.setEvent("UpdateDataAssetOrderStatusBatch", eventBatch.payload(response));
         return response;
     }
 
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllDataAssetOrder(final Context ctx) {
+        return getStateByRangeAsJson(ctx, "DataAssetOrder");
+    }
+
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllDataAssetOrderWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        return getStateByRangeWithPaginationAsJson(ctx, "DataAssetOrder", pageSize, bookmark);
+    }
+
     // DBAssetOrder
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public boolean DBAssetOrderExists(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String dbAssetOrderJSON = stub.getStringState(id);
+        byte[] dbAssetOrderValue = getValue(stub, id);
 
-        return (dbAssetOrderJSON != null && !dbAssetOrderJSON.isEmpty());
+        return (dbAssetOrderValue != null && dbAssetOrderValue.length > 0);
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
@@ -428,51 +991,52 @@ public final class AssetTransfer implements ContractInterface {
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
+        if (enforcePolicies && !checkAccess(stub, "DBAsset", dbAssetId, applicantId)) {
+            String errorMessage = String.format("Department %s does not satisfy the policy of DBAsset %s", applicantId, dbAssetId);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ACCESS_DENIED.toString());
+        }
+
         DBAssetOrder dbAssetOrder = new DBAssetOrder(id, dbAssetId, applicantId, sql);
-        String sortedJson = genson.serialize(dbAssetOrder);
-        stub.putStringState(id, sortedJson);
+        String sortedJson = putEntity(stub, id, dbAssetOrder);
+        countCreated(stub, "DBAssetOrder", applicantId, null);
+        putIndexEntries(stub, dbAssetOrder);
 
-        stub.setEvent("CreateDBAssetOrder", sortedJson.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("CreateDBAssetOrder", events.created("DBAssetOrder", id, sortedJson));
         return dbAssetOrder;
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public DBAssetOrder ReadDBAssetOrder(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String dbAssetOrderJSON = stub.getStringState(id);
+        DBAssetOrder dbAssetOrder = getEntity(stub, id, DBAssetOrder.class);
 
-        if (dbAssetOrderJSON == null || dbAssetOrderJSON.isEmpty()) {
+        if (dbAssetOrder == null) {
             String errorMessage = String.format("DBAssetOrder %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        DBAssetOrder dbAssetOrder = genson.deserialize(dbAssetOrderJSON, DBAssetOrder.class);
         return dbAssetOrder;
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public String GetAllDBAssetOrder(final Context ctx) {
-        ChaincodeStub stub = ctx.getStub();
-        List<DBAssetOrder> queryResults = new ArrayList<>();
-
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("DBAssetOrder", "DBAssetOrder99999999999999999999");
-        for (KeyValue result : results) {
-            DBAssetOrder dbAssetOrder = genson.deserialize(result.getStringValue(), DBAssetOrder.class);
-            queryResults.add(dbAssetOrder);
-        }
+        return getStateByRangeAsJson(ctx, "DBAssetOrder");
+    }
 
-        final String response = genson.serialize(queryResults);
-        return response;
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllDBAssetOrderWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        return getStateByRangeWithPaginationAsJson(ctx, "DBAssetOrder", pageSize, bookmark);
     }
 
     // VideoAssetOrder
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public boolean VideoAssetOrderExists(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String videoAssetOrderJSON = stub.getStringState(id);
+        byte[] videoAssetOrderValue = getValue(stub, id);
 
-        return (videoAssetOrderJSON != null && !videoAssetOrderJSON.isEmpty());
+        return (videoAssetOrderValue != null && videoAssetOrderValue.length > 0);
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
@@ -497,71 +1061,137 @@ public final class AssetTransfer implements ContractInterface {
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
+        if (enforcePolicies && !checkAccess(stub, "VideoAsset", videoAssetId, applicantId)) {
+            String errorMessage = String.format("Department %s does not satisfy the policy of VideoAsset %s", applicantId, videoAssetId);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ACCESS_DENIED.toString());
+        }
+
         VideoAssetOrder videoAssetOrder = new VideoAssetOrder(id, videoAssetId, applicantId, status);
-        String sortedJson = genson.serialize(videoAssetOrder);
-        stub.putStringState(id, sortedJson);
+        String sortedJson = putEntity(stub, id, videoAssetOrder);
+        countCreated(stub, "VideoAssetOrder", applicantId, status);
+        putIndexEntries(stub, videoAssetOrder);
 
-        stub.setEvent("CreateVideoAssetOrder", sortedJson.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("CreateVideoAssetOrder", events.created("VideoAssetOrder", id, sortedJson));
         return videoAssetOrder;
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public VideoAssetOrder ReadVideoAssetOrder(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String videoAssetOrderJSON = stub.getStringState(id);
+        VideoAssetOrder videoAssetOrder = getEntity(stub, id, VideoAssetOrder.class);
 
-        if (videoAssetOrderJSON == null || videoAssetOrderJSON.isEmpty()) {
+        if (videoAssetOrder == null) {
             String errorMessage = String.format("VideoAssetOrder %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        VideoAssetOrder videoAssetOrder = genson.deserialize(videoAssetOrderJSON, VideoAssetOrder.class);
+        if (appendStatusChanges) {
+            Integer status = StatusLog.latest(stub, "VideoAssetOrder", id);
+            if (status != null) {
+                videoAssetOrder.setStatus(status);
+            }
+        }
+
         return videoAssetOrder;
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public VideoAssetOrder VideoDataAssetOrderStatus(final Context ctx, final String id, final int status) {
         ChaincodeStub stub = ctx.getStub();
-        String videoAssetOrderJSON = stub.getStringState(id);
+        VideoAssetOrder newVideoAssetOrder = getEntity(stub, id, VideoAssetOrder.class);
 
-        if (videoAssetOrderJSON == null || videoAssetOrderJSON.isEmpty()) {
+        if (newVideoAssetOrder == null) {
             String errorMessage = String.format("VideoAssetOrder %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        VideoAssetOrder newVideoAssetOrder = genson.deserialize(videoAssetOrderJSON, VideoAssetOrder.class);
+        if (appendStatusChanges) {
+            StatusLog.append(stub, "VideoAssetOrder", id, status);
+            newVideoAssetOrder.setStatus(status);
+            stub.setEvent("UpdateVideoAssetOrderStatus", events.updated("VideoAssetOrder", id, genson.serialize(newVideoAssetOrder), "status", status));
+            return newVideoAssetOrder;
+        }
+
+        countStatusChange(stub, "VideoAssetOrder", newVideoAssetOrder.getStatus(), status);
         newVideoAssetOrder.setStatus(status);
-        String sortedJSON = genson.serialize(newVideoAssetOrder);
-        stub.putStringState(id, sortedJSON);
+        String sortedJSON = putEntity(stub, id, newVideoAssetOrder);
 
-        stub.setEvent("UpdateVideoAssetOrderStatus", sortedJSON.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("UpdateVideoAssetOrderStatus", events.updated("VideoAssetOrder", id, sortedJSON, "status", status));
         return newVideoAssetOrder;
     }
 
-    @Transaction(intent = Transaction.TYPE.EVALUATE)
-    public String GetAllVideoAssetOrder(final Context ctx) {
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String UpdateVideoAssetOrderStatusBatch(final Context ctx, final String updatesJSON) {
         ChaincodeStub stub = ctx.getStub();
-        List<VideoAssetOrder> queryResults = new ArrayList<>();
+        StatusUpdate[] updates = parseBatch(updatesJSON, StatusUpdate[].class);
+        checkDistinctIds(updates);
+
+        // Every id is resolved before the first write so a missing one rejects the whole batch;
+        // in append mode that reads the stored record only, never the status log
+        List<VideoAssetOrder> videoAssetOrders = new ArrayList<>();
+        for (StatusUpdate update : updates) {
+            videoAssetOrders.add(appendStatusChanges ? getStoredEntity(stub, "VideoAssetOrder", update.getId(), VideoAssetOrder.class) : ReadVideoAssetOrder(ctx, update.getId()));
+        }
 
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("VideoAssetOrder", "VideoAssetOrder99999999999999999999");
-        for (KeyValue result : results) {
-            VideoAssetOrder videoAssetOrder = genson.deserialize(result.getStringValue(), VideoAssetOrder.class);
-            queryResults.add(videoAssetOrder);
+        List<StatusUpdateResult> results = new ArrayList<>();
+        EntityEvents.Batch eventBatch = events.newBatch();
+        for (int i = 0; i < updates.length; i++) {
+            VideoAssetOrder videoAssetOrder = videoAssetOrders.get(i);
+            int storedStatus = videoAssetOrder.getStatus();
+            int status = updates[i].getStatus();
+            if (appendStatusChanges) {
+                // The current status is not known without reading the log, so every change is appended
+                // and reported against the status stored in the record
+                StatusLog.append(stub, "VideoAssetOrder", videoAssetOrder.getId(), status);
+                videoAssetOrder.setStatus(status);
+                eventBatch.updated("VideoAssetOrder", videoAssetOrder.getId(), genson.serialize(videoAssetOrder), "status", status);
+                results.add(new StatusUpdateResult(videoAssetOrder.getId(), storedStatus, status, StatusUpdateResult.Outcome.APPENDED));
+                continue;
+            }
+            if (storedStatus == status) {
+                results.add(new StatusUpdateResult(videoAssetOrder.getId(), storedStatus, status, StatusUpdateResult.Outcome.UNCHANGED));
+                continue;
+            }
+
+            videoAssetOrder.setStatus(status);
+            countStatusChange(stub, "VideoAssetOrder", storedStatus, status);
+            String sortedJson = putEntity(stub, videoAssetOrder.getId(), videoAssetOrder);
+            eventBatch.updated("VideoAssetOrder", videoAssetOrder.getId(), sortedJson, "status", status);
+            results.add(new StatusUpdateResult(videoAssetOrder.getId(), storedStatus, status, StatusUpdateResult.Outcome.UPDATED));
         }
 
-        final String response = genson.serialize(queryResults);
+        final String response = genson.serialize(results);
+        stub.setEvent("UpdateVideoAssetOrderStatusBatch", eventBatch.payload(response));
         return response;
     }
 
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllVideoAssetOrder(final Context ctx) {
+        return getStateByRangeAsJson(ctx, "VideoAssetOrder");
+    }
+
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllVideoAssetOrderWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        return getStateByRangeWithPaginationAsJson(ctx, "VideoAssetOrder", pageSize, bookmark);
+    }
+
+    // Orders by applicant
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetOrdersByApplicant(final Context ctx, final String applicantId, final int pageSize, final String bookmark) {
+        CompositeKey prefix = IndexKeys.prefix(ctx.getStub(), IndexKeys.APPLICANT_TYPE_ORDER, applicantId);
+        return getIndexedStateWithPaginationAsJson(ctx, prefix, pageSize, bookmark);
+    }
+
     // AttributeApplication
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public boolean AttributeApplicationExists(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String attributeApplicationJSON = stub.getStringState(id);
+        byte[] attributeApplicationValue = getValue(stub, id);
 
-        return (attributeApplicationJSON != null && !attributeApplicationJSON.isEmpty());
+        return (attributeApplicationValue != null && attributeApplicationValue.length > 0);
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
@@ -581,70 +1211,122 @@ public final class AssetTransfer implements ContractInterface {
         }
 
         AttributeApplication attributeApplication = new AttributeApplication(id, departmentId, attribute, status);
-        String sortedJson = genson.serialize(attributeApplication);
-        stub.putStringState(id, sortedJson);
+        String sortedJson = putEntity(stub, id, attributeApplication);
+        countCreated(stub, "AttributeApplication", departmentId, status);
 
-        stub.setEvent("CreateAttributeApplication", sortedJson.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("CreateAttributeApplication", events.created("AttributeApplication", id, sortedJson));
         return attributeApplication;
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public AttributeApplication ReadAttributeApplication(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String attributeApplicationJSON = stub.getStringState(id);
+        AttributeApplication attributeApplication = getEntity(stub, id, AttributeApplication.class);
 
-        if (attributeApplicationJSON == null || attributeApplicationJSON.isEmpty()) {
+        if (attributeApplication == null) {
             String errorMessage = String.format("AttributeApplication %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        AttributeApplication attributeApplication = genson.deserialize(attributeApplicationJSON, AttributeApplication.class);
+        if (appendStatusChanges) {
+            Integer status = StatusLog.latest(stub, "AttributeApplication", id);
+            if (status != null) {
+                attributeApplication.setStatus(status);
+            }
+        }
+
         return attributeApplication;
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
     public AttributeApplication UpdateAttributeApplicationStatus(final Context ctx, final String id, final int status) {
         ChaincodeStub stub = ctx.getStub();
-        String attributeApplicationJSON = stub.getStringState(id);
+        AttributeApplication newAttributeApplication = getEntity(stub, id, AttributeApplication.class);
 
-        if (attributeApplicationJSON == null || attributeApplicationJSON.isEmpty()) {
+        if (newAttributeApplication == null) {
             String errorMessage = String.format("AttributeApplication %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        AttributeApplication newAttributeApplication = genson.deserialize(attributeApplicationJSON, AttributeApplication.class);
+        if (appendStatusChanges) {
+            StatusLog.append(stub, "AttributeApplication", id, status);
+            newAttributeApplication.setStatus(status);
+            stub.setEvent("UpdateAttributeApplicationStatus", events.updated("AttributeApplication", id, genson.serialize(newAttributeApplication), "status", status));
+            return newAttributeApplication;
+        }
+
+        countStatusChange(stub, "AttributeApplication", newAttributeApplication.getStatus(), status);
         newAttributeApplication.setStatus(status);
-        String sortedJson = genson.serialize(newAttributeApplication);
-        stub.putStringState(id, sortedJson);
+        String sortedJson = putEntity(stub, id, newAttributeApplication);
 
-        stub.setEvent("UpdateAttributeApplicationStatus", sortedJson.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("UpdateAttributeApplicationStatus", events.updated("AttributeApplication", id, sortedJson, "status", status));
         return newAttributeApplication;
     }
 
-    @Transaction(intent = Transaction.TYPE.EVALUATE)
-    public String GetAllAttributeApplication(final Context ctx) {
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String UpdateAttributeApplicationStatusBatch(final Context ctx, final String updatesJSON) {
         ChaincodeStub stub = ctx.getStub();
-        List<AttributeApplication> queryResults = new ArrayList<>();
+        StatusUpdate[] updates = parseBatch(updatesJSON, StatusUpdate[].class);
+        checkDistinctIds(updates);
+
+        // Every id is resolved before the first write so a missing one rejects the whole batch;
+        // in append mode that reads the stored record only, never the status log
+        List<AttributeApplication> attributeApplications = new ArrayList<>();
+        for (StatusUpdate update : updates) {
+            attributeApplications.add(appendStatusChanges ? getStoredEntity(stub, "AttributeApplication", update.getId(), AttributeApplication.class) : ReadAttributeApplication(ctx, update.getId()));
+        }
 
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("AttributeApplication", "AttributeApplication9999999999999999999999999");
-        for (KeyValue result : results) {
-            AttributeApplication attributeApplication = genson.deserialize(result.getStringValue(), AttributeApplication.class);
-            queryResults.add(attributeApplication);
+        List<StatusUpdateResult> results = new ArrayList<>();
+        EntityEvents.Batch eventBatch = events.newBatch();
+        for (int i = 0; i < updates.length; i++) {
+            AttributeApplication attributeApplication = attributeApplications.get(i);
+            int storedStatus = attributeApplication.getStatus();
+            int status = updates[i].getStatus();
+            if (appendStatusChanges) {
+                // The current status is not known without reading the log, so every change is appended
+                // and reported against the status stored in the record
+                StatusLog.append(stub, "AttributeApplication", attributeApplication.getId(), status);
+                attributeApplication.setStatus(status);
+                eventBatch.updated("AttributeApplication", attributeApplication.getId(), genson.serialize(attributeApplication), "status", status);
+                results.add(new StatusUpdateResult(attributeApplication.getId(), storedStatus, status, StatusUpdateResult.Outcome.APPENDED));
+                continue;
+            }
+            if (storedStatus == status) {
+                results.add(new StatusUpdateResult(attributeApplication.getId(), storedStatus, status, StatusUpdateResult.Outcome.UNCHANGED));
+                continue;
+            }
+
+            attributeApplication.setStatus(status);
+            countStatusChange(stub, "AttributeApplication", storedStatus, status);
+            String sortedJson = putEntity(stub, attributeApplication.getId(), attributeApplication);
+            eventBatch.updated("AttributeApplication", attributeApplication.getId(), sortedJson, "status", status);
+            results.add(new StatusUpdateResult(attributeApplication.getId(), storedStatus, status, StatusUpdateResult.Outcome.UPDATED));
         }
 
-        final String response = genson.serialize(queryResults);
+        final String response = genson.serialize(results);
+        stub.setEvent("UpdateAttributeApplicationStatusBatch", eventBatch.payload(response));
         return response;
     }
 
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllAttributeApplication(final Context ctx) {
+        return getStateByRangeAsJson(ctx, "AttributeApplication");
+    }
+
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllAttributeApplicationWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        return getStateByRangeWithPaginationAsJson(ctx, "AttributeApplication", pageSize, bookmark);
+    }
+
     // AttributeItem
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public boolean AttributeItemExists(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String attributeItemJSON = stub.getStringState(id);
+        byte[] attributeItemValue = getValue(stub, id);
 
-        return (attributeItemJSON != null && !attributeItemJSON.isEmpty());
+        return (attributeItemValue != null && attributeItemValue.length > 0);
     }
 
     @Transaction(intent = Transaction.TYPE.SUBMIT)
@@ -658,25 +1340,24 @@ public final class AssetTransfer implements ContractInterface {
         }
 
         AttributeItem attributeItem = new AttributeItem(id, content);
-        String sortedJson = genson.serialize(attributeItem);
-        stub.putStringState(id, sortedJson);
+        String sortedJson = putEntity(stub, id, attributeItem);
+        countCreated(stub, "AttributeItem", null, null);
 
-        stub.setEvent("CreateAttributeItem", sortedJson.getBytes(StandardCharsets.UTF_8));
+        stub.setEvent("CreateAttributeItem", events.created("AttributeItem", id, sortedJson));
         return attributeItem;
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public AttributeItem ReadAttributeItem(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
-        String attributeItemJSON = stub.getStringState(id);
+        AttributeItem attributeItem = getEntity(stub, id, AttributeItem.class);
 
-        if (attributeItemJSON == null || attributeItemJSON.isEmpty()) {
+        if (attributeItem == null) {
             String errorMessage = String.format("AttributeItem %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        AttributeItem attributeItem = genson.deserialize(attributeItemJSON, AttributeItem.class);
         return attributeItem;
     }
 
@@ -684,34 +1365,908 @@ public final class AssetTransfer implements ContractInterface {
     public AttributeItem DeleteAttributeItem(final Context ctx, final String id) {
         ChaincodeStub stub = ctx.getStub();
 
-        String attributeItemJSON = stub.getStringState(id);
+        AttributeItem attributeItem = getEntity(stub, id, AttributeItem.class);
 
-        if (attributeItemJSON == null || attributeItemJSON.isEmpty()) {
+        if (attributeItem == null) {
             String errorMessage = String.format("AttributeItem %s does not exist", id);
             System.out.println(errorMessage);
             throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
         }
 
-        AttributeItem attributeItem = genson.deserialize(attributeItemJSON, AttributeItem.class);
-
-        stub.delState(id);
-        stub.setEvent("DeleteAttributeItem", attributeItemJSON.getBytes(StandardCharsets.UTF_8));
+        deleteValue(stub, id);
+        Counters.add(stub, "AttributeItem", Counters.ALL, -1);
+        stub.setEvent("DeleteAttributeItem", events.deleted("AttributeItem", id, attributeItem));
         return attributeItem;
     }
 
     @Transaction(intent = Transaction.TYPE.EVALUATE)
     public String GetAllAttributeItem(final Context ctx) {
+        return getStateByRangeAsJson(ctx, "AttributeItem");
+    }
+
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetAllAttributeItemWithPagination(final Context ctx, final int pageSize, final String bookmark) {
+        return getStateByRangeWithPaginationAsJson(ctx, "AttributeItem", pageSize, bookmark);
+    }
+
+    // Cursor reads
+    // Up to limit entities of entityType after afterId, or from the first one when afterId is empty.
+    // Key order is numeric in the ordered key layout and lexicographic in the raw one; in ordered mode
+    // entities still at their raw key are not visited.
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public String GetEntitiesAfter(final Context ctx, final String entityType, final String afterId, final int limit) {
         ChaincodeStub stub = ctx.getStub();
-        List<AttributeItem> queryResults = new ArrayList<>();
+        checkEntityType(entityType);
+        checkPageSize(limit);
+
+        String startKey = keys.startKey(entityType);
+        String endKey = keys.endKey(entityType);
+        if (afterId != null && !afterId.isEmpty()) {
+            String afterKey = keys.key(afterId);
+            if (afterKey.compareTo(startKey) < 0 || afterKey.compareTo(endKey) >= 0) {
+                String errorMessage = String.format("Cursor %s is not a %s id", afterId, entityType);
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+            }
+            // The smallest key after the cursor's own
+            startKey = afterKey + '\u0000';
+        }
 
-        QueryResultsIterator<KeyValue> results = stub.getStateByRange("AttributeItem", "AttributeItem9999999999999999999999999");
-        for (KeyValue result : results) {
-            AttributeItem attributeItem = genson.deserialize(result.getStringValue(), AttributeItem.class);
-            queryResults.add(attributeItem);
+        JsonResponseWriter writer = new JsonResponseWriter();
+        writer.beginArray();
+        int count = 0;
+        QueryResultsIterator<KeyValue> results = stub.getStateByRange(startKey, endKey);
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                writeEntity(stub, EntityConverters.entityType(entityType), result.getValue(), writer, FieldProjection.ALL);
+                if (++count == limit) {
+                    break;
+                }
+            }
         }
+        writer.endArray();
 
-        final String response = genson.serialize(queryResults);
-        return response;
+        return writer.toString();
     }
 
+    // Access policy
+    // Whether the department's attributes satisfy the asset's policy, see AccessPolicy for the grammar
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public boolean CheckAccess(final Context ctx, final String assetId, final String departmentId, final String assetType) {
+        checkAssetType(assetType);
+        return checkAccess(ctx.getStub(), assetType, assetId, departmentId);
+    }
+
+    // Status log
+    // In append mode status changes are appended to a log instead of rewriting the record. Reads apply the
+    // latest entry, at the cost of one range scan over the entries since the last fold, and listings and
+    // CountEntitiesByStatus only see a change once it is folded into the record. Run CompactStatusLogs on
+    // a cadence, e.g. after each approval burst and at least every few minutes under steady load.
+    // Folds the status changes appended for a DataAssetOrder, VideoAssetOrder or AttributeApplication into its record
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public String CompactStatusLog(final Context ctx, final String entityType, final String id) {
+        ChaincodeStub stub = ctx.getStub();
+
+        switch (entityType) {
+            case "DataAssetOrder":
+                return compactStatusLog(stub, entityType, id, DataAssetOrder.class, DataAssetOrder::getStatus, DataAssetOrder::setStatus);
+            case "VideoAssetOrder":
+                return compactStatusLog(stub, entityType, id, VideoAssetOrder.class, VideoAssetOrder::getStatus, VideoAssetOrder::setStatus);
+            case "AttributeApplication":
+                return compactStatusLog(stub, entityType, id, AttributeApplication.class, AttributeApplication::getStatus, AttributeApplication::setStatus);
+            default:
+                String errorMessage = String.format("Entity type %s is not one of DataAssetOrder, VideoAssetOrder, AttributeApplication", entityType);
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+    }
+
+    // Folds the first chunkSize entries of the status log of entityType, in id and then time order, into their records;
+    // repeat while it returns chunkSize. Its range read conflicts with appends committed meanwhile, retry then.
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public int CompactStatusLogs(final Context ctx, final String entityType, final int chunkSize) {
+        ChaincodeStub stub = ctx.getStub();
+        checkChunkSize(chunkSize);
+
+        switch (entityType) {
+            case "DataAssetOrder":
+                return compactStatusLogs(stub, entityType, DataAssetOrder.class, DataAssetOrder::getStatus, DataAssetOrder::setStatus, chunkSize);
+            case "VideoAssetOrder":
+                return compactStatusLogs(stub, entityType, VideoAssetOrder.class, VideoAssetOrder::getStatus, VideoAssetOrder::setStatus, chunkSize);
+            case "AttributeApplication":
+                return compactStatusLogs(stub, entityType, AttributeApplication.class, AttributeApplication::getStatus, AttributeApplication::setStatus, chunkSize);
+            default:
+                String errorMessage = String.format("Entity type %s is not one of DataAssetOrder, VideoAssetOrder, AttributeApplication", entityType);
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+    }
+
+    // Counters
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public long CountEntities(final Context ctx, final String entityType) {
+        checkEntityType(entityType);
+        return Counters.sum(ctx.getStub(), entityType, Counters.ALL);
+    }
+
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public long CountEntitiesByDepartment(final Context ctx, final String entityType, final String departmentId) {
+        checkEntityType(entityType);
+        return Counters.sum(ctx.getStub(), entityType, Counters.department(departmentId));
+    }
+
+    // In append mode a status counts from when its log entry is folded, see CompactStatusLogs
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public long CountEntitiesByStatus(final Context ctx, final String entityType, final int status) {
+        checkEntityType(entityType);
+        return Counters.sum(ctx.getStub(), entityType, Counters.status(status));
+    }
+
+    // Migrations
+    // Runs the next chunk of a migration, one of
+    //   keys:<entityType>    moves entities still at their raw key to the ordered key layout
+    //   values:<entityType>  re-encodes entities with the configured value codec
+    //   codes                gives every AttributeItem its dictionary code (bitset mode), the only writer of codes
+    //   attributes           writes every department's attribute postings, and in bitset mode the bitset beside it
+    //   payloads:<assetType> moves the payload of assets written inline under its own key (split mode)
+    //   indexes:<entityType> writes the secondary index entries of assets, orders or departments
+    //   counters:<entityType> counts the entities again, its first chunk clearing their counters; creates of
+    //                        the type made while it runs are counted twice or not at all, so pause them meanwhile
+    // Each chunk scans at most chunkSize keys after the cursor stored on the ledger and advances it in the
+    // same transaction, so a failed or retried chunk is simply run again. Run codes before attributes; departments
+    // holding items coded later get no bitset, and are checked by their string, until both run again after ResetMigration.
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public MigrationProgress MigrateChunk(final Context ctx, final String migration, final int chunkSize) {
+        ChaincodeStub stub = ctx.getStub();
+
+        checkChunkSize(chunkSize);
+
+        int separator = migration.indexOf(':');
+        String job = separator < 0 ? migration : migration.substring(0, separator);
+        String entityType = separator < 0 ? null : migration.substring(separator + 1);
+        Class<?> clazz;
+        String startKey;
+        String endKey;
+        if ("keys".equals(job) && entityType != null) {
+            clazz = checkEntityType(entityType);
+            if (!keys.isOrdered()) {
+                String errorMessage = String.format("Migration %s needs %s=ordered", migration, EntityKeys.ENVIRONMENT_VARIABLE);
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+            }
+            startKey = EntityKeys.legacyStartKey(entityType);
+        } else if ("values".equals(job) && entityType != null) {
+            clazz = checkEntityType(entityType);
+            startKey = keys.startKey(entityType);
+        } else if ("payloads".equals(job) && entityType != null) {
+            checkAssetType(entityType);
+            clazz = checkEntityType(entityType);
+            if (!splitPayloads) {
+                String errorMessage = String.format("Migration %s needs %s=split", migration, AssetPayloads.ENVIRONMENT_VARIABLE);
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+            }
+            startKey = keys.startKey(entityType);
+        } else if ("indexes".equals(job) && entityType != null) {
+            clazz = checkEntityType(entityType);
+            if (clazz == AttributeItem.class || clazz == AttributeApplication.class) {
+                String errorMessage = String.format("Entity type %s has no secondary indexes", entityType);
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+            }
+            startKey = keys.startKey(entityType);
+        } else if ("counters".equals(job) && entityType != null) {
+            clazz = checkEntityType(entityType);
+            startKey = keys.startKey(entityType);
+        } else if ("codes".equals(migration) && bitsetAttributes) {
+            entityType = "AttributeItem";
+            clazz = AttributeItem.class;
+            startKey = keys.startKey(entityType);
+        } else if ("attributes".equals(migration)) {
+            entityType = "Department";
+            clazz = Department.class;
+            startKey = keys.startKey(entityType);
+        } else {
+            String errorMessage = String.format("Migration %s is not one of keys:<entityType>, values:<entityType>, codes (bitset mode), attributes, payloads:<assetType> (split mode), indexes:<entityType>, counters:<entityType>", migration);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+        // In ordered mode this spans the ordered range and then the raw keys not yet moved
+        endKey = EntityKeys.rawEndKey(entityType);
+
+        String progressKey = stub.createCompositeKey(MIGRATION, migration).toString();
+        MigrationProgress progress = getMigrationProgress(stub, progressKey, migration);
+        if (progress.isDone()) {
+            return progress;
+        }
+
+        String cursor = progress.getCursor();
+        if ("counters".equals(job) && cursor.isEmpty()) {
+            Counters.clear(stub, entityType);
+        }
+        Map<String, Long> counted = new LinkedHashMap<>();
+        int count = 0;
+        QueryResultsIterator<KeyValue> results = stub.getStateByRange(cursor.isEmpty() ? startKey : cursor + '\u0000', endKey);
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                switch (job) {
+                    case "keys":
+                        String key = keys.key(result.getKey());
+                        if (!key.equals(result.getKey())) {
+                            byte[] current = stub.getState(key);
+                            if (current == null || current.length == 0) {
+                                stub.putState(key, result.getValue());
+                            }
+                            stub.delState(result.getKey());
+                        }
+                        break;
+                    case "values":
+                        byte[] value = codec.encode(codec.decode(result.getValue(), clazz));
+                        if (!Arrays.equals(value, result.getValue())) {
+                            stub.putState(result.getKey(), value);
+                        }
+                        break;
+                    case "codes":
+                        assignAttributeCodes(stub, codec.decode(result.getValue(), AttributeItem.class));
+                        break;
+                    case "payloads":
+                        Object asset = codec.decode(result.getValue(), clazz);
+                        if (AssetPayloads.hasPayload(asset)) {
+                            stub.putState(AssetPayloads.key(stub, AssetPayloads.id(asset)), codec.encode(AssetPayloads.payload(asset)));
+                            stub.putState(result.getKey(), codec.encode(AssetPayloads.metadata(asset)));
+                        }
+                        break;
+                    case "indexes":
+                        Object entity = codec.decode(result.getValue(), clazz);
+                        putIndexEntries(stub, entity instanceof Department ? decodeDepartment(stub, (Department) entity) : entity);
+                        break;
+                    case "counters":
+                        for (String scope : counterScopes(codec.decode(result.getValue(), clazz))) {
+                            counted.merge(scope, 1L, Long::sum);
+                        }
+                        break;
+                    default:
+                        indexAttributes(stub, decodeDepartment(stub, codec.decode(result.getValue(), Department.class)));
+                        break;
+                }
+                cursor = result.getKey();
+                if (++count == chunkSize) {
+                    break;
+                }
+            }
+        }
+
+        for (Map.Entry<String, Long> scope : counted.entrySet()) {
+            Counters.add(stub, entityType, scope.getKey(), scope.getValue());
+        }
+
+        progress = new MigrationProgress(migration, cursor, progress.getProcessed() + count, count < chunkSize);
+        stub.putState(progressKey, genson.serialize(progress).getBytes(StandardCharsets.UTF_8));
+        return progress;
+    }
+
+    @Transaction(intent = Transaction.TYPE.EVALUATE)
+    public MigrationProgress GetMigrationProgress(final Context ctx, final String migration) {
+        ChaincodeStub stub = ctx.getStub();
+        return getMigrationProgress(stub, stub.createCompositeKey(MIGRATION, migration).toString(), migration);
+    }
+
+    // Forgets the progress of a migration so that it runs again from the start
+    @Transaction(intent = Transaction.TYPE.SUBMIT)
+    public void ResetMigration(final Context ctx, final String migration) {
+        ChaincodeStub stub = ctx.getStub();
+        stub.delState(stub.createCompositeKey(MIGRATION, migration).toString());
+    }
+
+    private MigrationProgress getMigrationProgress(final ChaincodeStub stub, final String progressKey, final String migration) {
+        byte[] value = stub.getState(progressKey);
+        if (value == null || value.length == 0) {
+            return new MigrationProgress(migration, "", 0, false);
+        }
+        return genson.deserialize(new String(value, StandardCharsets.UTF_8), MigrationProgress.class);
+    }
+
+    // State helpers
+    // Value of the entity with this id; in ordered mode falls back to the raw key it had before
+    private byte[] getValue(final ChaincodeStub stub, final String id) {
+        String key = keys.key(id);
+        byte[] value = stub.getState(key);
+        if ((value == null || value.length == 0) && !key.equals(id)) {
+            value = stub.getState(id);
+        }
+        return value;
+    }
+
+    // Writes under the current layout and drops a raw-key copy the entity may have had before
+    private void putValue(final ChaincodeStub stub, final String id, final byte[] value) {
+        String key = keys.key(id);
+        stub.putState(key, value);
+        if (!key.equals(id)) {
+            // A blind delete, so writes add no read of the raw key to the read set
+            stub.delState(id);
+        }
+    }
+
+    private void deleteValue(final ChaincodeStub stub, final String id) {
+        String key = keys.key(id);
+        stub.delState(key);
+        if (!key.equals(id)) {
+            stub.delState(id);
+        }
+    }
+
+    // Entities of one type in key order; in ordered mode entities still at their raw key follow the ordered range
+    private QueryResultsIterator<KeyValue> getEntities(final ChaincodeStub stub, final String entityType) {
+        QueryResultsIterator<KeyValue> results = stub.getStateByRange(keys.startKey(entityType), keys.endKey(entityType));
+        if (!keys.isOrdered()) {
+            return results;
+        }
+        return new QueryResultsIterator<KeyValue>() {
+            private QueryResultsIterator<KeyValue> legacyResults;
+
+            @Override
+            public Iterator<KeyValue> iterator() {
+                return new Iterator<KeyValue>() {
+                    private Iterator<KeyValue> current = results.iterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        if (!current.hasNext() && legacyResults == null) {
+                            legacyResults = stub.getStateByRange(EntityKeys.legacyStartKey(entityType), EntityKeys.legacyEndKey(entityType));
+                            current = legacyResults.iterator();
+                        }
+                        return current.hasNext();
+                    }
+
+                    @Override
+                    public KeyValue next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return current.next();
+                    }
+                };
+            }
+
+            // Closes the raw-key range too when it was opened
+            @Override
+            public void close() throws Exception {
+                try {
+                    results.close();
+                } finally {
+                    if (legacyResults != null) {
+                        legacyResults.close();
+                    }
+                }
+            }
+        };
+    }
+
+    private <T> T getEntity(final ChaincodeStub stub, final String key, final Class<T> clazz) {
+        byte[] value = getValue(stub, key);
+        if (value == null || value.length == 0) {
+            return null;
+        }
+        return codec.decode(value, clazz);
+    }
+
+    // Stores the entity with the configured codec and returns its canonical JSON for events and responses
+    private String putEntity(final ChaincodeStub stub, final String key, final Object entity) {
+        byte[] value = codec.encode(entity);
+        putValue(stub, key, value);
+        return codec.toJson(entity, value);
+    }
+
+    // A full asset: in split mode its metadata record merged with the payload stored beside it
+    private <T> T getAsset(final ChaincodeStub stub, final String id, final Class<T> clazz) {
+        T asset = getEntity(stub, id, clazz);
+        if (asset == null || AssetPayloads.hasPayload(asset)) {
+            return asset;
+        }
+        byte[] payload = stub.getState(AssetPayloads.key(stub, id));
+        if (payload == null || payload.length == 0) {
+            return asset;
+        }
+        return AssetPayloads.merge(asset, codec.decode(payload, clazz));
+    }
+
+    // In split mode stores the metadata record and the payload under their own keys; the returned JSON is still the full asset
+    private String putAsset(final ChaincodeStub stub, final String id, final Object asset) {
+        if (!splitPayloads) {
+            return putEntity(stub, id, asset);
+        }
+        putEntity(stub, id, AssetPayloads.metadata(asset));
+        stub.putState(AssetPayloads.key(stub, id), codec.encode(AssetPayloads.payload(asset)));
+        return genson.serialize(asset);
+    }
+
+    private String putDepartment(final ChaincodeStub stub, final Department department) {
+        String sortedJson = putDepartmentEntity(stub, department);
+        putIndexEntries(stub, department);
+        countCreated(stub, "Department", null, null);
+        return sortedJson;
+    }
+
+    // Stores a department and, in bitset mode, the bitset of its attribute set beside it
+    private String putDepartmentEntity(final ChaincodeStub stub, final Department department) {
+        String sortedJson = putEntity(stub, department.getId(), department);
+        if (bitsetAttributes) {
+            AttributeDictionary.putDepartmentBits(stub, department.getId(), department.getAttribute());
+        }
+        return sortedJson;
+    }
+
+    // Department with the attribute string, derived from the dictionary when an earlier version encoded the record in place
+    private Department getDepartment(final ChaincodeStub stub, final String id) {
+        Department department = getEntity(stub, id, Department.class);
+        return department == null ? null : decodeDepartment(stub, department);
+    }
+
+    private Department decodeDepartment(final ChaincodeStub stub, final Department department) {
+        if (AttributeDictionary.isEncoded(department.getAttribute())) {
+            department.setAttribute(AttributeDictionary.decodeAttribute(stub, department.getAttribute()));
+        }
+        return department;
+    }
+
+    // Writes a stored entity, departments with the attribute string
+    private void writeEntity(final ChaincodeStub stub, final Class<?> clazz, final byte[] value, final JsonResponseWriter writer, final FieldProjection fields) {
+        if (clazz == Department.class && fields.includes("attribute")) {
+            Department department = codec.decode(value, Department.class);
+            if (AttributeDictionary.isEncoded(department.getAttribute())) {
+                writeDepartment(stub, department, writer, fields);
+                return;
+            }
+        }
+        codec.writeJson(value, writer, fields);
+    }
+
+    private void writeDepartment(final ChaincodeStub stub, final Department department, final JsonResponseWriter writer, final FieldProjection fields) {
+        codec.writeJson(codec.encode(decodeDepartment(stub, department)), writer, fields);
+    }
+
+    // Writes the attribute postings of a department and, in bitset mode, re-stores it with the bitset
+    // of its attribute set, which also restores the attribute string of a record encoded in place
+    private void indexAttributes(final ChaincodeStub stub, final Department department) {
+        putIndexEntries(stub, department);
+        if (bitsetAttributes) {
+            putDepartmentEntity(stub, department);
+        }
+    }
+
+    private void assignAttributeCodes(final ChaincodeStub stub, final AttributeItem attributeItem) {
+        for (String item : AccessPolicy.attributeItems(attributeItem.getContent())) {
+            AttributeDictionary.assign(stub, item);
+        }
+    }
+
+    private String putDataAsset(final ChaincodeStub stub, final DataAsset dataAsset) {
+        String sortedJson = putAsset(stub, dataAsset.getId(), dataAsset);
+        putIndexEntries(stub, dataAsset);
+        countCreated(stub, "DataAsset", dataAsset.getOwnerId(), null);
+        return sortedJson;
+    }
+
+    private String putDBAsset(final ChaincodeStub stub, final DBAsset dbAsset) {
+        String sortedJson = putAsset(stub, dbAsset.getId(), dbAsset);
+        putIndexEntries(stub, dbAsset);
+        countCreated(stub, "DBAsset", dbAsset.getOwnerId(), null);
+        return sortedJson;
+    }
+
+    private String putVideoAsset(final ChaincodeStub stub, final VideoAsset videoAsset) {
+        String sortedJson = putAsset(stub, videoAsset.getId(), videoAsset);
+        putIndexEntries(stub, videoAsset);
+        countCreated(stub, "VideoAsset", videoAsset.getOwnerId(), null);
+        return sortedJson;
+    }
+
+    // Writes the secondary index entries of an entity: owner, location and field of assets, applicant of
+    // orders, attribute items of departments. Blind puts, so writing them again is harmless.
+    private static void putIndexEntries(final ChaincodeStub stub, final Object entity) {
+        if (entity instanceof DataAsset) {
+            DataAsset dataAsset = (DataAsset) entity;
+            putAssetIndexEntries(stub, "DataAsset", dataAsset.getId(), dataAsset.getOwnerId(), dataAsset.getLocation(), dataAsset.getField());
+        } else if (entity instanceof DBAsset) {
+            DBAsset dbAsset = (DBAsset) entity;
+            putAssetIndexEntries(stub, "DBAsset", dbAsset.getId(), dbAsset.getOwnerId(), dbAsset.getLocation(), dbAsset.getField());
+        } else if (entity instanceof VideoAsset) {
+            VideoAsset videoAsset = (VideoAsset) entity;
+            putAssetIndexEntries(stub, "VideoAsset", videoAsset.getId(), videoAsset.getOwnerId(), videoAsset.getLocation(), videoAsset.getField());
+        } else if (entity instanceof DataAssetOrder) {
+            DataAssetOrder order = (DataAssetOrder) entity;
+            IndexKeys.put(stub, IndexKeys.APPLICANT_TYPE_ORDER, order.getApplicantId(), "DataAssetOrder", order.getId());
+        } else if (entity instanceof DBAssetOrder) {
+            DBAssetOrder order = (DBAssetOrder) entity;
+            IndexKeys.put(stub, IndexKeys.APPLICANT_TYPE_ORDER, order.getApplicantId(), "DBAssetOrder", order.getId());
+        } else if (entity instanceof VideoAssetOrder) {
+            VideoAssetOrder order = (VideoAssetOrder) entity;
+            IndexKeys.put(stub, IndexKeys.APPLICANT_TYPE_ORDER, order.getApplicantId(), "VideoAssetOrder", order.getId());
+        } else if (entity instanceof Department) {
+            Department department = (Department) entity;
+            for (String item : AccessPolicy.attributeItems(department.getAttribute())) {
+                IndexKeys.put(stub, IndexKeys.ATTRIBUTE_DEPARTMENT, item, department.getId());
+            }
+        }
+    }
+
+    private static void putAssetIndexEntries(final ChaincodeStub stub, final String assetType, final String id,
+                                             final String ownerId, final String location, final String field) {
+        IndexKeys.put(stub, IndexKeys.OWNER_TYPE_ASSET, ownerId, assetType, id);
+        IndexKeys.put(stub, IndexKeys.LOCATION_TYPE_ASSET, location, assetType, id);
+        IndexKeys.put(stub, IndexKeys.FIELD_TYPE_ASSET, field, assetType, id);
+    }
+
+    // Counts a new entity in its type total and, where the type has them, its department and status
+    private void countCreated(final ChaincodeStub stub, final String entityType, final String departmentId, final Integer status) {
+        Counters.add(stub, entityType, Counters.ALL, 1);
+        if (departmentId != null) {
+            Counters.add(stub, entityType, Counters.department(departmentId), 1);
+        }
+        if (status != null) {
+            Counters.add(stub, entityType, Counters.status(status), 1);
+        }
+    }
+
+    // The counters a stored entity is in, as countCreated counted it
+    private static List<String> counterScopes(final Object entity) {
+        String departmentId = null;
+        Integer status = null;
+        if (entity instanceof DataAsset) {
+            departmentId = ((DataAsset) entity).getOwnerId();
+        } else if (entity instanceof DBAsset) {
+            departmentId = ((DBAsset) entity).getOwnerId();
+        } else if (entity instanceof VideoAsset) {
+            departmentId = ((VideoAsset) entity).getOwnerId();
+        } else if (entity instanceof DataAssetOrder) {
+            departmentId = ((DataAssetOrder) entity).getApplicantId();
+            status = ((DataAssetOrder) entity).getStatus();
+        } else if (entity instanceof DBAssetOrder) {
+            departmentId = ((DBAssetOrder) entity).getApplicantId();
+        } else if (entity instanceof VideoAssetOrder) {
+            departmentId = ((VideoAssetOrder) entity).getApplicantId();
+            status = ((VideoAssetOrder) entity).getStatus();
+        } else if (entity instanceof AttributeApplication) {
+            departmentId = ((AttributeApplication) entity).getDepartmentId();
+            status = ((AttributeApplication) entity).getStatus();
+        }
+
+        List<String> scopes = new ArrayList<>();
+        scopes.add(Counters.ALL);
+        if (departmentId != null) {
+            scopes.add(Counters.department(departmentId));
+        }
+        if (status != null) {
+            scopes.add(Counters.status(status));
+        }
+        return scopes;
+    }
+
+    private void countStatusChange(final ChaincodeStub stub, final String entityType, final int previousStatus, final int status) {
+        if (previousStatus != status) {
+            Counters.add(stub, entityType, Counters.status(previousStatus), -1);
+            Counters.add(stub, entityType, Counters.status(status), 1);
+        }
+    }
+
+    // Status counters follow the record, so they move when the log is folded into it
+    private <T> String compactStatusLog(final ChaincodeStub stub, final String entityType, final String id, final Class<T> clazz,
+                                        final ToIntFunction<T> getStatus, final ObjIntConsumer<T> setStatus) {
+        T entity = getStoredEntity(stub, entityType, id, clazz);
+
+        Integer status = StatusLog.fold(stub, entityType, id);
+        if (status == null || status == getStatus.applyAsInt(entity)) {
+            return genson.serialize(entity);
+        }
+
+        String sortedJson = applyStatus(stub, entityType, id, entity, getStatus, setStatus, status);
+        stub.setEvent("CompactStatusLog", events.updated(entityType, id, sortedJson, "status", status));
+        return sortedJson;
+    }
+
+    private <T> int compactStatusLogs(final ChaincodeStub stub, final String entityType, final Class<T> clazz,
+                                      final ToIntFunction<T> getStatus, final ObjIntConsumer<T> setStatus, final int chunkSize) {
+        Map<String, Integer> latest = new LinkedHashMap<>();
+        int count = StatusLog.foldChunk(stub, entityType, chunkSize, latest);
+        for (Map.Entry<String, Integer> entry : latest.entrySet()) {
+            T entity = getEntity(stub, entry.getKey(), clazz);
+            // Entries appended for an id that never existed are just dropped
+            if (entity != null && entry.getValue() != getStatus.applyAsInt(entity)) {
+                applyStatus(stub, entityType, entry.getKey(), entity, getStatus, setStatus, entry.getValue());
+            }
+        }
+        return count;
+    }
+
+    private <T> String applyStatus(final ChaincodeStub stub, final String entityType, final String id, final T entity,
+                                   final ToIntFunction<T> getStatus, final ObjIntConsumer<T> setStatus, final int status) {
+        countStatusChange(stub, entityType, getStatus.applyAsInt(entity), status);
+        setStatus.accept(entity, status);
+        return putEntity(stub, id, entity);
+    }
+
+    // The record as stored, without the status log applied
+    private <T> T getStoredEntity(final ChaincodeStub stub, final String entityType, final String id, final Class<T> clazz) {
+        T entity = getEntity(stub, id, clazz);
+
+        if (entity == null) {
+            String errorMessage = String.format("%s %s does not exist", entityType, id);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+        }
+
+        return entity;
+    }
+
+    private <T> T[] parseBatch(final String json, final Class<T[]> clazz) {
+        T[] batch;
+        try {
+            batch = genson.deserialize(json, clazz);
+        } catch (JsonBindingException e) {
+            String errorMessage = String.format("Batch is not a valid JSON array of %s: %s", clazz.getComponentType().getSimpleName(), e.getMessage());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+
+        if (batch == null || batch.length == 0) {
+            String errorMessage = String.format("Batch of %s is empty", clazz.getComponentType().getSimpleName());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+        for (int i = 0; i < batch.length; i++) {
+            if (batch[i] == null) {
+                String errorMessage = String.format("%s %d of the batch is null", clazz.getComponentType().getSimpleName(), i);
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+            }
+        }
+        return batch;
+    }
+
+    // The fields that key an asset and its index entries
+    private void checkAssetFields(final String assetType, final int index, final String id, final String ownerId,
+                                  final String location, final String field) {
+        checkRequired(assetType, index, "id", id);
+        checkRequired(assetType, index, "ownerId", ownerId);
+        checkRequired(assetType, index, "location", location);
+        checkRequired(assetType, index, "field", field);
+    }
+
+    // Batch elements are checked before any ledger access, so a bad element fails the batch without reads
+    private void checkRequired(final String entityType, final int index, final String name, final String value) {
+        if (value == null || value.isEmpty()) {
+            String errorMessage = String.format("%s %d of the batch has no %s", entityType, index, name);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+    }
+
+    private void checkDistinctIds(final StatusUpdate[] updates) {
+        Set<String> ids = new HashSet<>();
+        for (StatusUpdate update : updates) {
+            if (!ids.add(update.getId())) {
+                String errorMessage = String.format("%s appears more than once in the batch", update.getId());
+                System.out.println(errorMessage);
+                throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+            }
+        }
+    }
+
+    // Query helpers
+    private String getStateByRangeAsJson(final Context ctx, final String entityType) {
+        return getStateByRangeAsJson(ctx, entityType, FieldProjection.ALL);
+    }
+
+    private String getStateByRangeAsJson(final Context ctx, final String entityType, final FieldProjection fields) {
+        ChaincodeStub stub = ctx.getStub();
+        JsonResponseWriter writer = new JsonResponseWriter();
+
+        writer.beginArray();
+        Class<?> clazz = EntityConverters.entityType(entityType);
+        QueryResultsIterator<KeyValue> results = getEntities(stub, entityType);
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                writeEntity(stub, clazz, result.getValue(), writer, fields);
+            }
+        }
+        writer.endArray();
+
+        return writer.toString();
+    }
+
+    // In ordered mode the pages of the ordered range are followed by pages of raw keys, whose bookmarks start with LEGACY_BOOKMARK
+    private String getStateByRangeWithPaginationAsJson(final Context ctx, final String entityType, final int pageSize, final String bookmark) {
+        return getStateByRangeWithPaginationAsJson(ctx, entityType, FieldProjection.ALL, pageSize, bookmark);
+    }
+
+    private String getStateByRangeWithPaginationAsJson(final Context ctx, final String entityType, final FieldProjection fields, final int pageSize, final String bookmark) {
+        ChaincodeStub stub = ctx.getStub();
+        checkPageSize(pageSize);
+        Class<?> clazz = EntityConverters.entityType(entityType);
+        JsonResponseWriter writer = new JsonResponseWriter();
+        writer.beginObject().writeName("records").beginArray();
+
+        String current = bookmark == null ? "" : bookmark;
+        int fetchedRecordsCount = 0;
+        if (!keys.isOrdered() || !current.startsWith(LEGACY_BOOKMARK)) {
+            QueryResultsIteratorWithMetadata<KeyValue> results = stub.getStateByRangeWithPagination(keys.startKey(entityType), keys.endKey(entityType), pageSize, current);
+            try (ClosingResults closing = ClosingResults.of(results)) {
+                for (KeyValue result : results) {
+                    writeEntity(stub, clazz, result.getValue(), writer, fields);
+                }
+            }
+            QueryResponseMetadata metadata = results.getMetadata();
+            fetchedRecordsCount = metadata.getFetchedRecordsCount();
+            boolean exhausted = metadata.getBookmark() == null || metadata.getBookmark().isEmpty();
+            if (!keys.isOrdered() || !exhausted) {
+                writer.endArray();
+                return writePageMetadata(writer, fetchedRecordsCount, metadata.getBookmark());
+            }
+            if (fetchedRecordsCount >= pageSize) {
+                writer.endArray();
+                return writePageMetadata(writer, fetchedRecordsCount, LEGACY_BOOKMARK);
+            }
+            current = LEGACY_BOOKMARK;
+        }
+
+        QueryResultsIteratorWithMetadata<KeyValue> results = stub.getStateByRangeWithPagination(EntityKeys.legacyStartKey(entityType), EntityKeys.legacyEndKey(entityType),
+                pageSize - fetchedRecordsCount, current.substring(LEGACY_BOOKMARK.length()));
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                writeEntity(stub, clazz, result.getValue(), writer, fields);
+            }
+        }
+        writer.endArray();
+
+        QueryResponseMetadata metadata = results.getMetadata();
+        String nextBookmark = metadata.getBookmark() == null || metadata.getBookmark().isEmpty() ? "" : LEGACY_BOOKMARK + metadata.getBookmark();
+        return writePageMetadata(writer, fetchedRecordsCount + metadata.getFetchedRecordsCount(), nextBookmark);
+    }
+
+    private String writePageMetadata(final JsonResponseWriter writer, final int fetchedRecordsCount, final String bookmark) {
+        writer.writeName("fetchedRecordsCount").writeNumber(fetchedRecordsCount);
+        writer.writeName("bookmark").writeString(bookmark);
+        writer.endObject();
+        return writer.toString();
+    }
+
+    // Position written into a bookmark, or -1 when it is not one
+    private static int parsePosition(final String position) {
+        try {
+            return Integer.parseInt(position);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Resolves each index entry of the page to the entity it references
+    private String getIndexedStateWithPaginationAsJson(final Context ctx, final CompositeKey prefix, final int pageSize, final String bookmark) {
+        return getIndexedStateWithPaginationAsJson(ctx, Object.class, prefix, pageSize, bookmark);
+    }
+
+    private String getIndexedStateWithPaginationAsJson(final Context ctx, final Class<?> clazz, final CompositeKey prefix, final int pageSize, final String bookmark) {
+        ChaincodeStub stub = ctx.getStub();
+        checkPageSize(pageSize);
+        JsonResponseWriter writer = new JsonResponseWriter();
+
+        QueryResultsIteratorWithMetadata<KeyValue> results = stub.getStateByPartialCompositeKeyWithPagination(prefix, pageSize, bookmark == null ? "" : bookmark);
+        writer.beginObject().writeName("records").beginArray();
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                byte[] value = getValue(stub, IndexKeys.entityId(stub, result.getKey()));
+                if (value != null && value.length > 0) {
+                    writeEntity(stub, clazz, value, writer, FieldProjection.ALL);
+                }
+            }
+        }
+        writer.endArray();
+
+        QueryResponseMetadata metadata = results.getMetadata();
+        return writePageMetadata(writer, metadata.getFetchedRecordsCount(), metadata.getBookmark());
+    }
+
+    private void checkAssetType(final String assetType) {
+        if (!"DataAsset".equals(assetType) && !"DBAsset".equals(assetType) && !"VideoAsset".equals(assetType)) {
+            String errorMessage = String.format("Asset type %s is not one of DataAsset, DBAsset, VideoAsset", assetType);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+    }
+
+    private boolean checkAccess(final ChaincodeStub stub, final String assetType, final String assetId, final String departmentId) {
+        Object asset;
+        String policy;
+        switch (assetType) {
+            case "DataAsset":
+                asset = getEntity(stub, assetId, DataAsset.class);
+                policy = asset == null ? null : ((DataAsset) asset).getPolicy();
+                break;
+            case "DBAsset":
+                asset = getEntity(stub, assetId, DBAsset.class);
+                policy = asset == null ? null : ((DBAsset) asset).getPolicy();
+                break;
+            default:
+                asset = getEntity(stub, assetId, VideoAsset.class);
+                policy = asset == null ? null : ((VideoAsset) asset).getPolicy();
+                break;
+        }
+        if (asset == null) {
+            String errorMessage = String.format("%s %s does not exist", assetType, assetId);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+        }
+
+        Department department = getEntity(stub, departmentId, Department.class);
+        if (department == null) {
+            String errorMessage = String.format("Department %s does not exist", departmentId);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.ASSET_NOT_FOUND.toString());
+        }
+
+        AccessPolicy compiled;
+        try {
+            compiled = policies.get(policy);
+        } catch (IllegalArgumentException e) {
+            String errorMessage = String.format("%s %s has an invalid policy: %s", assetType, assetId, e.getMessage());
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+        // A coded attribute set is tested against the policy compiled to bitsets with the codes this transaction sees
+        if (AttributeDictionary.isEncoded(department.getAttribute())) {
+            return compiled.compile(AttributeDictionary.codes(stub)).permits(AttributeDictionary.bits(department.getAttribute()));
+        }
+        BitSet bits = bitsetAttributes ? AttributeDictionary.departmentBits(stub, departmentId, department.getAttribute()) : null;
+        if (bits != null) {
+            return compiled.compile(AttributeDictionary.codes(stub)).permits(bits);
+        }
+        return compiled.permits(AccessPolicy.parseAttributes(department.getAttribute()));
+    }
+
+    private Class<?> checkEntityType(final String entityType) {
+        Class<?> clazz = EntityConverters.entityType(entityType);
+        if (clazz == null) {
+            String errorMessage = String.format("Entity type %s is not one of the contract's data types", entityType);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+        return clazz;
+    }
+
+    private FieldProjection checkFields(final String entityType, final String fields) {
+        Class<?> clazz = checkEntityType(entityType);
+        try {
+            return FieldProjection.parse(clazz, fields);
+        } catch (IllegalArgumentException e) {
+            String errorMessage = e.getMessage();
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+    }
+
+    // A listing projection, which in split mode cannot name payload properties
+    private FieldProjection checkListingFields(final String entityType, final String fields) {
+        FieldProjection projection = checkFields(entityType, fields);
+        if (splitPayloads && !projection.isAll() && AssetPayloads.selectsPayload(EntityConverters.entityType(entityType), projection)) {
+            String errorMessage = String.format("Fields %s name %s payload properties, which listings do not return with %s=split", fields, entityType, AssetPayloads.ENVIRONMENT_VARIABLE);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+        return projection;
+    }
+
+    private void checkChunkSize(final int chunkSize) {
+        if (chunkSize <= 0) {
+            String errorMessage = String.format("Chunk size %d must be positive", chunkSize);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+    }
+
+    private void checkPageSize(final int pageSize) {
+        if (pageSize <= 0) {
+            String errorMessage = String.format("Page size %d must be positive", pageSize);
+            System.out.println(errorMessage);
+            throw new ChaincodeException(errorMessage, AssetTransferErrors.INVALID_ARGUMENT.toString());
+        }
+    }
 }
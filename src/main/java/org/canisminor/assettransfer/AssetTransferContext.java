@@ -0,0 +1,50 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.contract.Context;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+/**
+ * Transaction context whose stub caches point reads and buffers writes for the
+ * lifetime of one invocation. When metrics are enabled, the traffic that gets past the
+ * cache is metered into the invocation's {@link TransactionMetrics}.
+ */
+public final class AssetTransferContext extends Context {
+    private final CachingChaincodeStub cachingStub;
+    private final TransactionMetrics metrics;
+
+    public AssetTransferContext(final ChaincodeStub stub) {
+        this(stub, TransactionMetricsRegistry.INSTANCE.isEnabled() ? TransactionMetrics.begin(stub.getFunction()) : null);
+    }
+
+    private AssetTransferContext(final ChaincodeStub stub, final TransactionMetrics metrics) {
+        this(new CachingChaincodeStub(metrics == null ? stub : new MeteringChaincodeStub(stub, metrics)), metrics);
+    }
+
+    private AssetTransferContext(final CachingChaincodeStub cachingStub, final TransactionMetrics metrics) {
+        super(cachingStub);
+        this.cachingStub = cachingStub;
+        this.metrics = metrics;
+    }
+
+    // Sends the buffered writes to the peer and publishes the invocation's metrics
+    void flush() {
+        boolean flushed = false;
+        try {
+            cachingStub.flush();
+            flushed = true;
+        } finally {
+            end(flushed);
+        }
+    }
+
+    // Publishes the metrics of an invocation that does not reach afterTransaction
+    void fail() {
+        end(false);
+    }
+
+    private void end(final boolean succeeded) {
+        if (metrics != null) {
+            metrics.end(succeeded);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package org.canisminor.assettransfer;
+
+import com.sun.net.httpserver.HttpServer;
+import org.hyperledger.fabric.metrics.MetricsProvider;
+import org.hyperledger.fabric.metrics.TaskMetricsCollector;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+
+/**
+ * Shim metrics provider that turns on per-transaction metering and serves
+ * {@link TransactionMetricsRegistry} for Prometheus to scrape.
+ * Enable it in the chaincode environment with
+ * CHAINCODE_METRICS_ENABLED=true and
+ * CHAINCODE_METRICS_PROVIDER=org.canisminor.assettransfer.AssetTransferMetricsProvider;
+ * the endpoint is http://&lt;chaincode&gt;:&lt;CHAINCODE_METRICS_PORT&gt;/metrics (default 9444).
+ */
+public final class AssetTransferMetricsProvider implements MetricsProvider {
+    static final String PORT_PROPERTY = "CHAINCODE_METRICS_PORT";
+    static final int DEFAULT_PORT = 9444;
+
+    private HttpServer server;
+
+    @Override
+    public void initialize(final Properties props) {
+        String port = props.getProperty(PORT_PROPERTY, System.getenv(PORT_PROPERTY));
+        try {
+            server = HttpServer.create(new InetSocketAddress(port == null || port.isEmpty() ? DEFAULT_PORT : Integer.parseInt(port)), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot start the metrics endpoint", e);
+        }
+        server.createContext("/metrics", exchange -> {
+            byte[] body = TransactionMetricsRegistry.INSTANCE.toPrometheusText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        TransactionMetricsRegistry.INSTANCE.enable();
+        System.out.println(String.format("Serving transaction metrics on %s/metrics", server.getAddress()));
+    }
+
+    @Override
+    public void setTaskMetricsCollector(final TaskMetricsCollector taskService) {
+        TransactionMetricsRegistry.INSTANCE.setTaskMetricsCollector(taskService);
+    }
+}
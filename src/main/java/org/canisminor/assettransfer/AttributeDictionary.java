@@ -0,0 +1,191 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * Dictionary encoding of attribute items. The "codes" migration job gives each AttributeItem
+ * content a small integer code; codes are handed out in order and never reassigned, even when the
+ * item is deleted, and no other transaction writes the dictionary, so creating items and
+ * departments never conflicts on it. In bitset mode a department whose items all have codes gets
+ * the bitset of its attribute set stored beside its record, which keeps the attribute string as
+ * written. The bitset carries the string it was computed from, so one left behind by an update in
+ * string mode is recognised as stale and ignored. Codes are read per transaction rather than
+ * cached in the process, because a transaction reads its own pending assignments and may still
+ * fail validation.
+ */
+final class AttributeDictionary {
+    // Chaincode environment variable selecting how department attribute sets are kept: "string" (default) or "bitset"
+    static final String ENVIRONMENT_VARIABLE = "DATAASSET_ATTRIBUTE_MODE";
+
+    // 属性键 -> 属性值 => 编码
+    static final String CODE = "attrcode~key~value";
+
+    // 编码 => 属性项，用于还原早期版本就地编码的机构记录
+    static final String ITEM = "attritem~code";
+
+    // 属性键 => 该键全部编码的位图
+    static final String KEY_CODES = "attrkeycodes~key";
+
+    // 下一个可分配的编码
+    static final String NEXT_CODE = "attrcode~next";
+
+    // 机构 => 属性位图及其对应的属性字符串
+    static final String DEPARTMENT_BITS = "attrbits~departmentId";
+
+    // 分隔位图与属性字符串；早期版本把它作为前缀将位图写进机构记录，attributes 迁移任务会还原
+    private static final String ENCODED_PREFIX = "\u0001";
+
+    private AttributeDictionary() {
+    }
+
+    static boolean bitsetForName(final String mode) {
+        if (mode == null || mode.isEmpty() || "string".equalsIgnoreCase(mode)) {
+            return false;
+        }
+        if ("bitset".equalsIgnoreCase(mode)) {
+            return true;
+        }
+        throw new IllegalArgumentException(String.format("Unknown attribute mode %s", mode));
+    }
+
+    // Code of item, or null when it has none yet
+    static Integer code(final ChaincodeStub stub, final String item) {
+        byte[] value = stub.getState(codeKey(stub, item));
+        if (value == null || value.length == 0) {
+            return null;
+        }
+        return decodeInt(value);
+    }
+
+    // Only the codes migration job assigns, as every assignment rewrites the shared next code
+    static int assign(final ChaincodeStub stub, final String item) {
+        Integer code = code(stub, item);
+        if (code != null) {
+            return code;
+        }
+        String nextKey = stub.createCompositeKey(NEXT_CODE).toString();
+        byte[] next = stub.getState(nextKey);
+        code = next == null || next.length == 0 ? 0 : decodeInt(next);
+        stub.putState(codeKey(stub, item), encodeInt(code));
+        stub.putState(itemKey(stub, code), item.getBytes(StandardCharsets.UTF_8));
+        String key = item.substring(0, item.indexOf(':'));
+        BitSet keyCodes = keyCodes(stub, key);
+        keyCodes.set(code);
+        stub.putState(stub.createCompositeKey(KEY_CODES, key).toString(), keyCodes.toByteArray());
+        stub.putState(nextKey, encodeInt(code + 1));
+        return code;
+    }
+
+    // Codes of every item of key
+    static BitSet keyCodes(final ChaincodeStub stub, final String key) {
+        byte[] value = stub.getState(stub.createCompositeKey(KEY_CODES, key).toString());
+        return value == null ? new BitSet() : BitSet.valueOf(value);
+    }
+
+    static AccessPolicy.Codes codes(final ChaincodeStub stub) {
+        return new AccessPolicy.Codes() {
+            @Override
+            public Integer code(final String item) {
+                return AttributeDictionary.code(stub, item);
+            }
+
+            @Override
+            public BitSet keyCodes(final String key) {
+                return AttributeDictionary.keyCodes(stub, key);
+            }
+        };
+    }
+
+    // The bitset of items, or null when one of them has no code
+    static BitSet encode(final ChaincodeStub stub, final Set<String> items) {
+        BitSet bits = new BitSet();
+        for (String item : items) {
+            Integer code = code(stub, item);
+            if (code == null) {
+                return null;
+            }
+            bits.set(code);
+        }
+        return bits;
+    }
+
+    // Stores the bitset of a department attribute string beside the department, or removes it when
+    // the string has an item without a code
+    static void putDepartmentBits(final ChaincodeStub stub, final String departmentId, final String attribute) {
+        String key = stub.createCompositeKey(DEPARTMENT_BITS, departmentId).toString();
+        Set<String> items = AccessPolicy.attributeItems(attribute);
+        BitSet bits = items.isEmpty() ? null : encode(stub, items);
+        if (bits == null) {
+            stub.delState(key);
+            return;
+        }
+        String value = Base64.getEncoder().withoutPadding().encodeToString(bits.toByteArray()) + ENCODED_PREFIX + attribute;
+        stub.putState(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // The bitset stored beside a department, or null when there is none or it was computed from another attribute string
+    static BitSet departmentBits(final ChaincodeStub stub, final String departmentId, final String attribute) {
+        byte[] value = stub.getState(stub.createCompositeKey(DEPARTMENT_BITS, departmentId).toString());
+        if (value == null || value.length == 0) {
+            return null;
+        }
+        String stored = new String(value, StandardCharsets.UTF_8);
+        int separator = stored.indexOf(ENCODED_PREFIX);
+        if (separator < 0 || !stored.substring(separator + ENCODED_PREFIX.length()).equals(attribute)) {
+            return null;
+        }
+        return BitSet.valueOf(Base64.getDecoder().decode(stored.substring(0, separator)));
+    }
+
+    // Whether a department record holds its attribute set encoded in place, as earlier versions stored it
+    static boolean isEncoded(final String attribute) {
+        return attribute != null && attribute.startsWith(ENCODED_PREFIX);
+    }
+
+    static BitSet bits(final String encoded) {
+        return BitSet.valueOf(Base64.getDecoder().decode(encoded.substring(ENCODED_PREFIX.length())));
+    }
+
+    // The attribute string of an attribute set encoded in place, its items in code order
+    static String decodeAttribute(final ChaincodeStub stub, final String encoded) {
+        BitSet bits = bits(encoded);
+        StringJoiner attribute = new StringJoiner(",");
+        for (int code = bits.nextSetBit(0); code >= 0; code = bits.nextSetBit(code + 1)) {
+            byte[] item = stub.getState(itemKey(stub, code));
+            if (item == null || item.length == 0) {
+                throw new IllegalStateException(String.format("Attribute code %d has no item", code));
+            }
+            attribute.add(new String(item, StandardCharsets.UTF_8));
+        }
+        return attribute.toString();
+    }
+
+    static boolean containsAll(final BitSet bits, final BitSet required) {
+        BitSet missing = (BitSet) required.clone();
+        missing.andNot(bits);
+        return missing.isEmpty();
+    }
+
+    private static String codeKey(final ChaincodeStub stub, final String item) {
+        int colon = item.indexOf(':');
+        return stub.createCompositeKey(CODE, item.substring(0, colon), item.substring(colon + 1)).toString();
+    }
+
+    private static String itemKey(final ChaincodeStub stub, final int code) {
+        return stub.createCompositeKey(ITEM, Integer.toString(code)).toString();
+    }
+
+    private static int decodeInt(final byte[] value) {
+        return Integer.parseInt(new String(value, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] encodeInt(final int value) {
+        return Integer.toString(value).getBytes(StandardCharsets.UTF_8);
+    }
+}
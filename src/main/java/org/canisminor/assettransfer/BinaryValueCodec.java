@@ -0,0 +1,364 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.Genson;
+import org.hyperledger.fabric.shim.ChaincodeException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Compact, versioned binary encoding of the @DataType classes.
+ *
+ * Layout: MAGIC, VERSION, type tag, then the properties in a fixed order per type. Strings are a
+ * varint of (UTF-8 length + 1) followed by the bytes, 0 standing for null; ints are zigzag varints.
+ * Property names are never stored. Values that do not start with MAGIC are read as JSON.
+ * Projections read the properties in stored order and step over unselected strings undecoded.
+ */
+final class BinaryValueCodec implements ValueCodec {
+    static final byte MAGIC = (byte) 0xDA;
+    static final byte VERSION = 1;
+
+    private static final int HEADER_LENGTH = 3;
+
+    private final Genson genson;
+    private final JsonValueCodec json;
+    private final Map<Class<?>, Format<?>> formatsByClass = new HashMap<>();
+    private final Format<?>[] formatsByTag = new Format<?>[16];
+
+    BinaryValueCodec(final Genson genson) {
+        this.genson = genson;
+        this.json = new JsonValueCodec(genson);
+
+        // Tags and property order are part of the stored format: append, never reorder
+        register(new Format<>(1, Department.class, properties("id", "name", "attribute"), (department, out) -> {
+            out.writeString(department.getId());
+            out.writeString(department.getName());
+            out.writeString(department.getAttribute());
+        }, in -> new Department(in.readString(), in.readString(), in.readString())));
+        register(new Format<>(2, DataAsset.class, properties("id", "name", "ownerId", "policy", "location", "field", "cid", "aesKey", "encType"), (dataAsset, out) -> {
+            out.writeString(dataAsset.getId());
+            out.writeString(dataAsset.getName());
+            out.writeString(dataAsset.getOwnerId());
+            out.writeString(dataAsset.getPolicy());
+            out.writeString(dataAsset.getLocation());
+            out.writeString(dataAsset.getField());
+            out.writeString(dataAsset.getCid());
+            out.writeString(dataAsset.getAesKey());
+            out.writeInt(dataAsset.getEncType());
+        }, in -> new DataAsset(in.readString(), in.readString(), in.readString(), in.readString(), in.readString(),
+                in.readString(), in.readString(), in.readString(), in.readInt())));
+        register(new Format<>(3, DBAsset.class, properties("id", "name", "ownerId", "policy", "location", "field", "jdbcUrl", "username", "password", "aesKey", "encType"), (dbAsset, out) -> {
+            out.writeString(dbAsset.getId());
+            out.writeString(dbAsset.getName());
+            out.writeString(dbAsset.getOwnerId());
+            out.writeString(dbAsset.getPolicy());
+            out.writeString(dbAsset.getLocation());
+            out.writeString(dbAsset.getField());
+            out.writeString(dbAsset.getJdbcUrl());
+            out.writeString(dbAsset.getUsername());
+            out.writeString(dbAsset.getPassword());
+            out.writeString(dbAsset.getAesKey());
+            out.writeInt(dbAsset.getEncType());
+        }, in -> new DBAsset(in.readString(), in.readString(), in.readString(), in.readString(), in.readString(),
+                in.readString(), in.readString(), in.readString(), in.readString(), in.readString(), in.readInt())));
+        register(new Format<>(4, VideoAsset.class, properties("id", "name", "ownerId", "policy", "location", "field", "rtspUrl", "aesKey", "encType"), (videoAsset, out) -> {
+            out.writeString(videoAsset.getId());
+            out.writeString(videoAsset.getName());
+            out.writeString(videoAsset.getOwnerId());
+            out.writeString(videoAsset.getPolicy());
+            out.writeString(videoAsset.getLocation());
+            out.writeString(videoAsset.getField());
+            out.writeString(videoAsset.getRtspUrl());
+            out.writeString(videoAsset.getAesKey());
+            out.writeInt(videoAsset.getEncType());
+        }, in -> new VideoAsset(in.readString(), in.readString(), in.readString(), in.readString(), in.readString(),
+                in.readString(), in.readString(), in.readString(), in.readInt())));
+        register(new Format<>(5, DataAssetOrder.class, properties("id", "dataAssetId", "applicantId", "status"), (order, out) -> {
+            out.writeString(order.getId());
+            out.writeString(order.getDataAssetId());
+            out.writeString(order.getApplicantId());
+            out.writeInt(order.getStatus());
+        }, in -> new DataAssetOrder(in.readString(), in.readString(), in.readString(), in.readInt())));
+        register(new Format<>(6, DBAssetOrder.class, properties("id", "dbAssetId", "applicantId", "sql"), (order, out) -> {
+            out.writeString(order.getId());
+            out.writeString(order.getDbAssetId());
+            out.writeString(order.getApplicantId());
+            out.writeString(order.getSql());
+        }, in -> new DBAssetOrder(in.readString(), in.readString(), in.readString(), in.readString())));
+        register(new Format<>(7, VideoAssetOrder.class, properties("id", "videoAssetId", "applicantId", "status"), (order, out) -> {
+            out.writeString(order.getId());
+            out.writeString(order.getVideoAssetId());
+            out.writeString(order.getApplicantId());
+            out.writeInt(order.getStatus());
+        }, in -> new VideoAssetOrder(in.readString(), in.readString(), in.readString(), in.readInt())));
+        register(new Format<>(8, AttributeApplication.class, properties("id", "departmentId", "attribute", "status"), (application, out) -> {
+            out.writeString(application.getId());
+            out.writeString(application.getDepartmentId());
+            out.writeString(application.getAttribute());
+            out.writeInt(application.getStatus());
+        }, in -> new AttributeApplication(in.readString(), in.readString(), in.readString(), in.readInt())));
+        register(new Format<>(9, AttributeItem.class, properties("id", "content"), (item, out) -> {
+            out.writeString(item.getId());
+            out.writeString(item.getContent());
+        }, in -> new AttributeItem(in.readString(), in.readString())));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public byte[] encode(final Object entity) {
+        Format<Object> format = (Format<Object>) formatsByClass.get(entity.getClass());
+        if (format == null) {
+            return json.encode(entity);
+        }
+
+        Output out = new Output();
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte((byte) format.tag);
+        format.writer.accept(entity, out);
+        return out.toByteArray();
+    }
+
+    @Override
+    public <T> T decode(final byte[] value, final Class<T> clazz) {
+        if (!isBinary(value)) {
+            return json.decode(value, clazz);
+        }
+
+        Format<?> format = format(value);
+        if (!clazz.isAssignableFrom(format.type)) {
+            throw new ChaincodeException(String.format("Ledger value holds a %s, not a %s", format.type.getSimpleName(), clazz.getSimpleName()));
+        }
+        return clazz.cast(format.reader.apply(new Input(value, HEADER_LENGTH)));
+    }
+
+    @Override
+    public String toJson(final Object entity, final byte[] value) {
+        return isBinary(value) ? genson.serialize(entity) : json.toJson(entity, value);
+    }
+
+    @Override
+    public void writeJson(final byte[] value, final JsonResponseWriter writer) {
+        if (!isBinary(value)) {
+            json.writeJson(value, writer);
+            return;
+        }
+
+        Object entity = format(value).reader.apply(new Input(value, HEADER_LENGTH));
+        writer.writeRawValue(genson.serialize(entity).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void writeJson(final byte[] value, final JsonResponseWriter writer, final FieldProjection fields) {
+        if (fields.isAll()) {
+            writeJson(value, writer);
+            return;
+        }
+        if (!isBinary(value)) {
+            json.writeJson(value, writer, fields);
+            return;
+        }
+
+        Format<?> format = format(value);
+        Input in = new Input(value, HEADER_LENGTH);
+        Object[] selected = new Object[format.properties.length];
+        for (int i = 0; i < format.properties.length; i++) {
+            boolean include = fields.includes(format.properties[i]);
+            if (format.integer[i]) {
+                int number = in.readInt();
+                selected[i] = include ? number : null;
+            } else if (include) {
+                selected[i] = in.readString();
+            } else {
+                in.skipString();
+            }
+        }
+
+        writer.beginObject();
+        for (int i : format.alphabetical) {
+            if (!fields.includes(format.properties[i])) {
+                continue;
+            }
+            writer.writeName(format.properties[i]);
+            if (format.integer[i]) {
+                writer.writeNumber((Integer) selected[i]);
+            } else {
+                writer.writeString((String) selected[i]);
+            }
+        }
+        writer.endObject();
+    }
+
+    static boolean isBinary(final byte[] value) {
+        return value.length >= HEADER_LENGTH && value[0] == MAGIC;
+    }
+
+    private Format<?> format(final byte[] value) {
+        // Versions start at 1 and are compared unsigned, so a byte such as 0x81 is not taken for an old version
+        int version = Byte.toUnsignedInt(value[1]);
+        if (version == 0 || version > VERSION) {
+            throw new ChaincodeException(String.format("Ledger value has binary format version %d, supported are 1 to %d", version, VERSION));
+        }
+
+        int tag = value[2];
+        Format<?> format = tag > 0 && tag < formatsByTag.length ? formatsByTag[tag] : null;
+        if (format == null) {
+            throw new ChaincodeException(String.format("Ledger value has unknown type tag %d", tag));
+        }
+        return format;
+    }
+
+    private void register(final Format<?> format) {
+        formatsByClass.put(format.type, format);
+        formatsByTag[format.tag] = format;
+    }
+
+    private static String[] properties(final String... names) {
+        return names;
+    }
+
+    private static final class Format<T> {
+        private final int tag;
+        private final Class<T> type;
+        // Property names in stored order, whether each is an int, and their indexes in JSON order
+        private final String[] properties;
+        private final boolean[] integer;
+        private final Integer[] alphabetical;
+        private final BiConsumer<T, Output> writer;
+        private final Function<Input, T> reader;
+
+        Format(final int tag, final Class<T> type, final String[] properties, final BiConsumer<T, Output> writer, final Function<Input, T> reader) {
+            this.tag = tag;
+            this.type = type;
+            this.properties = properties;
+            this.integer = new boolean[properties.length];
+            this.alphabetical = new Integer[properties.length];
+            for (int i = 0; i < properties.length; i++) {
+                try {
+                    integer[i] = type.getDeclaredField(properties[i]).getType() == int.class;
+                } catch (NoSuchFieldException e) {
+                    throw new IllegalStateException(String.format("%s has no property %s", type.getSimpleName(), properties[i]), e);
+                }
+                alphabetical[i] = i;
+            }
+            Arrays.sort(alphabetical, Comparator.comparing(i -> properties[i]));
+            this.writer = writer;
+            this.reader = reader;
+        }
+    }
+
+    static final class Output {
+        private byte[] buffer = new byte[128];
+        private int count;
+
+        void writeByte(final byte b) {
+            ensureCapacity(1);
+            buffer[count++] = b;
+        }
+
+        void writeInt(final int value) {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        void writeString(final String value) {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, count);
+        }
+
+        private void writeVarint(final int value) {
+            int remaining = value;
+            while ((remaining & ~0x7F) != 0) {
+                writeByte((byte) ((remaining & 0x7F) | 0x80));
+                remaining >>>= 7;
+            }
+            writeByte((byte) remaining);
+        }
+
+        private void ensureCapacity(final int extra) {
+            if (count + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + extra));
+            }
+        }
+    }
+
+    static final class Input {
+        private final byte[] buffer;
+        private int position;
+
+        Input(final byte[] buffer, final int position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+
+        int readInt() {
+            int raw = readVarint();
+            return (raw >>> 1) ^ -(raw & 1);
+        }
+
+        String readString() {
+            int length = readLength();
+            if (length < 0) {
+                return null;
+            }
+
+            String value = new String(buffer, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+
+        void skipString() {
+            int length = readLength();
+            if (length > 0) {
+                position += length;
+            }
+        }
+
+        // Length of the next string, -1 for null
+        private int readLength() {
+            int length = readVarint() - 1;
+            if (length < -1) {
+                throw new ChaincodeException("Malformed string length in binary ledger value");
+            }
+            if (length > buffer.length - position) {
+                throw truncated();
+            }
+            return length;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                if (position >= buffer.length) {
+                    throw truncated();
+                }
+                byte b = buffer[position++];
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new ChaincodeException("Malformed varint in binary ledger value");
+        }
+
+        private static ChaincodeException truncated() {
+            return new ChaincodeException("Truncated binary ledger value");
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-transaction read cache and write buffer in front of the peer stub.
+ * Point reads of a key go to the peer at most once per transaction, and a read after a
+ * put or delete in the same transaction sees the pending value instead of the committed one.
+ * Buffered writes reach the peer when {@link #flush()} is called from afterTransaction.
+ * Range and composite-key queries are passed through and, as on the peer, only see committed state.
+ */
+final class CachingChaincodeStub extends ForwardingChaincodeStub {
+    private static final byte[] ABSENT = new byte[0];
+
+    private final Map<String, byte[]> reads = new HashMap<>();
+    // null marks a pending delete
+    private final Map<String, byte[]> writes = new LinkedHashMap<>();
+
+    CachingChaincodeStub(final ChaincodeStub delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        if (writes.containsKey(key)) {
+            byte[] pending = writes.get(key);
+            return pending == null ? ABSENT : pending;
+        }
+
+        byte[] value = reads.get(key);
+        if (value == null) {
+            value = delegate().getState(key);
+            reads.put(key, value == null ? ABSENT : value);
+        }
+        return value;
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        writes.put(key, value);
+    }
+
+    @Override
+    public void delState(final String key) {
+        writes.put(key, null);
+    }
+
+    // The value this transaction has put at key, or null when it has not written it
+    byte[] pendingWrite(final String key) {
+        return writes.get(key);
+    }
+
+    void flush() {
+        for (Map.Entry<String, byte[]> write : writes.entrySet()) {
+            if (write.getValue() == null) {
+                delegate().delState(write.getKey());
+                reads.put(write.getKey(), ABSENT);
+            } else {
+                delegate().putState(write.getKey(), write.getValue());
+                reads.put(write.getKey(), write.getValue());
+            }
+        }
+        writes.clear();
+    }
+}
@@ -0,0 +1,31 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+
+/**
+ * Lets a shim query iterator, whose close() declares Exception, be closed by try-with-resources:
+ * {@code try (ClosingResults closing = ClosingResults.of(results)) { ... }}.
+ * Closing releases the iterator on the peer; an iterator left open lives until the transaction ends.
+ */
+final class ClosingResults implements AutoCloseable {
+    private final AutoCloseable results;
+
+    private ClosingResults(final AutoCloseable results) {
+        this.results = results;
+    }
+
+    static ClosingResults of(final AutoCloseable results) {
+        return new ClosingResults(results);
+    }
+
+    @Override
+    public void close() {
+        try {
+            results.close();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ChaincodeException("Could not close a ledger query", e);
+        }
+    }
+}
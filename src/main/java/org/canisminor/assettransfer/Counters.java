@@ -0,0 +1,78 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Entity counts split over a fixed number of shard keys per counter. A transaction adds to the
+ * shard picked by the hash of its txId, so two writers conflict on a counter only when they pick
+ * the same shard, and readers sum at most {@link #SHARDS} keys with one partial-key range query.
+ * Values are decimal strings; only the sum is meaningful, a shard may be negative. The counters
+ * migration job seeds them from the entities of ledgers written before counting.
+ */
+final class Counters {
+    // 实体类型 -> 统计范围 -> 分片
+    static final String COUNTER = "counter~type~scope~shard";
+
+    // 统计范围：全部
+    static final String ALL = "all";
+
+    // Concurrent creates of one type conflict with probability about 1/SHARDS
+    static final int SHARDS = 16;
+
+    private Counters() {
+    }
+
+    // 统计范围：所属/申请机构
+    static String department(final String departmentId) {
+        return "department=" + departmentId;
+    }
+
+    // 统计范围：状态
+    static String status(final int status) {
+        return "status=" + status;
+    }
+
+    // Read-modify-write of this transaction's shard; the transaction's stub reads its own pending writes,
+    // so several adds to one counter in a transaction accumulate
+    static void add(final ChaincodeStub stub, final String entityType, final String scope, final long delta) {
+        if (delta == 0) {
+            return;
+        }
+        String shard = String.format("%02d", Math.floorMod(stub.getTxId().hashCode(), SHARDS));
+        String key = stub.createCompositeKey(COUNTER, entityType, scope, shard).toString();
+        stub.putState(key, encode(decode(stub.getState(key)) + delta));
+    }
+
+    static long sum(final ChaincodeStub stub, final String entityType, final String scope) {
+        long total = 0;
+        QueryResultsIterator<KeyValue> results = stub.getStateByPartialCompositeKey(stub.createCompositeKey(COUNTER, entityType, scope));
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                total += decode(result.getValue());
+            }
+        }
+        return total;
+    }
+
+    // Deletes every counter of entityType, before the counters migration counts its entities again
+    static void clear(final ChaincodeStub stub, final String entityType) {
+        QueryResultsIterator<KeyValue> results = stub.getStateByPartialCompositeKey(stub.createCompositeKey(COUNTER, entityType));
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                stub.delState(result.getKey());
+            }
+        }
+    }
+
+    private static long decode(final byte[] value) {
+        return value == null || value.length == 0 ? 0 : Long.parseLong(new String(value, StandardCharsets.UTF_8));
+    }
+
+    private static byte[] encode(final long value) {
+        return Long.toString(value).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,543 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.Context;
+import com.owlike.genson.Converter;
+import com.owlike.genson.Genson;
+import com.owlike.genson.GensonBuilder;
+import com.owlike.genson.stream.ObjectReader;
+import com.owlike.genson.stream.ObjectWriter;
+import com.owlike.genson.stream.ValueType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hand-written Genson converters for the @DataType entities.
+ * Properties are written in the alphabetical order Genson uses for beans, so the output is
+ * byte-identical to the reflective converters, but no constructor or getter is looked up at run time.
+ */
+final class EntityConverters {
+    static final List<Class<?>> ENTITY_TYPES = Collections.unmodifiableList(Arrays.asList(
+            Department.class,
+            DataAsset.class,
+            DBAsset.class,
+            VideoAsset.class,
+            DataAssetOrder.class,
+            DBAssetOrder.class,
+            VideoAssetOrder.class,
+            AttributeApplication.class,
+            AttributeItem.class));
+
+    private static final Map<String, Class<?>> ENTITY_TYPES_BY_NAME = new HashMap<>();
+
+    static {
+        for (Class<?> type : ENTITY_TYPES) {
+            ENTITY_TYPES_BY_NAME.put(type.getSimpleName(), type);
+        }
+    }
+
+    private EntityConverters() {
+    }
+
+    static Genson newGenson() {
+        return new GensonBuilder()
+                .withConverters(
+                        new DepartmentConverter(),
+                        new DataAssetConverter(),
+                        new DBAssetConverter(),
+                        new VideoAssetConverter(),
+                        new DataAssetOrderConverter(),
+                        new DBAssetOrderConverter(),
+                        new VideoAssetOrderConverter(),
+                        new AttributeApplicationConverter(),
+                        new AttributeItemConverter())
+                .create();
+    }
+
+    // Entity class for a simple class name such as "DataAsset", or null
+    static Class<?> entityType(final String name) {
+        return ENTITY_TYPES_BY_NAME.get(name);
+    }
+
+    private static void writeString(final ObjectWriter writer, final String name, final String value) {
+        writer.writeName(name);
+        if (value == null) {
+            writer.writeNull();
+        } else {
+            writer.writeValue(value);
+        }
+    }
+
+    private static String readString(final ObjectReader reader) {
+        return reader.getValueType() == ValueType.NULL ? null : reader.valueAsString();
+    }
+
+    static final class DepartmentConverter implements Converter<Department> {
+        @Override
+        public void serialize(final Department department, final ObjectWriter writer, final Context ctx) {
+            writer.beginObject();
+            writeString(writer, "attribute", department.getAttribute());
+            writeString(writer, "id", department.getId());
+            writeString(writer, "name", department.getName());
+            writer.endObject();
+        }
+
+        @Override
+        public Department deserialize(final ObjectReader reader, final Context ctx) {
+            String attribute = null;
+            String id = null;
+            String name = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.next();
+                switch (reader.name()) {
+                    case "attribute":
+                        attribute = readString(reader);
+                        break;
+                    case "id":
+                        id = readString(reader);
+                        break;
+                    case "name":
+                        name = readString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return new Department(id, name, attribute);
+        }
+    }
+
+    static final class DataAssetConverter implements Converter<DataAsset> {
+        @Override
+        public void serialize(final DataAsset dataAsset, final ObjectWriter writer, final Context ctx) {
+            writer.beginObject();
+            writeString(writer, "aesKey", dataAsset.getAesKey());
+            writeString(writer, "cid", dataAsset.getCid());
+            writer.writeName("encType").writeValue(dataAsset.getEncType());
+            writeString(writer, "field", dataAsset.getField());
+            writeString(writer, "id", dataAsset.getId());
+            writeString(writer, "location", dataAsset.getLocation());
+            writeString(writer, "name", dataAsset.getName());
+            writeString(writer, "ownerId", dataAsset.getOwnerId());
+            writeString(writer, "policy", dataAsset.getPolicy());
+            writer.endObject();
+        }
+
+        @Override
+        public DataAsset deserialize(final ObjectReader reader, final Context ctx) {
+            String aesKey = null;
+            String cid = null;
+            int encType = 0;
+            String field = null;
+            String id = null;
+            String location = null;
+            String name = null;
+            String ownerId = null;
+            String policy = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.next();
+                switch (reader.name()) {
+                    case "aesKey":
+                        aesKey = readString(reader);
+                        break;
+                    case "cid":
+                        cid = readString(reader);
+                        break;
+                    case "encType":
+                        encType = reader.valueAsInt();
+                        break;
+                    case "field":
+                        field = readString(reader);
+                        break;
+                    case "id":
+                        id = readString(reader);
+                        break;
+                    case "location":
+                        location = readString(reader);
+                        break;
+                    case "name":
+                        name = readString(reader);
+                        break;
+                    case "ownerId":
+                        ownerId = readString(reader);
+                        break;
+                    case "policy":
+                        policy = readString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return new DataAsset(id, name, ownerId, policy, location, field, cid, aesKey, encType);
+        }
+    }
+
+    static final class DBAssetConverter implements Converter<DBAsset> {
+        @Override
+        public void serialize(final DBAsset dbAsset, final ObjectWriter writer, final Context ctx) {
+            writer.beginObject();
+            writeString(writer, "aesKey", dbAsset.getAesKey());
+            writer.writeName("encType").writeValue(dbAsset.getEncType());
+            writeString(writer, "field", dbAsset.getField());
+            writeString(writer, "id", dbAsset.getId());
+            writeString(writer, "jdbcUrl", dbAsset.getJdbcUrl());
+            writeString(writer, "location", dbAsset.getLocation());
+            writeString(writer, "name", dbAsset.getName());
+            writeString(writer, "ownerId", dbAsset.getOwnerId());
+            writeString(writer, "password", dbAsset.getPassword());
+            writeString(writer, "policy", dbAsset.getPolicy());
+            writeString(writer, "username", dbAsset.getUsername());
+            writer.endObject();
+        }
+
+        @Override
+        public DBAsset deserialize(final ObjectReader reader, final Context ctx) {
+            String aesKey = null;
+            int encType = 0;
+            String field = null;
+            String id = null;
+            String jdbcUrl = null;
+            String location = null;
+            String name = null;
+            String ownerId = null;
+            String password = null;
+            String policy = null;
+            String username = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.next();
+                switch (reader.name()) {
+                    case "aesKey":
+                        aesKey = readString(reader);
+                        break;
+                    case "encType":
+                        encType = reader.valueAsInt();
+                        break;
+                    case "field":
+                        field = readString(reader);
+                        break;
+                    case "id":
+                        id = readString(reader);
+                        break;
+                    case "jdbcUrl":
+                        jdbcUrl = readString(reader);
+                        break;
+                    case "location":
+                        location = readString(reader);
+                        break;
+                    case "name":
+                        name = readString(reader);
+                        break;
+                    case "ownerId":
+                        ownerId = readString(reader);
+                        break;
+                    case "password":
+                        password = readString(reader);
+                        break;
+                    case "policy":
+                        policy = readString(reader);
+                        break;
+                    case "username":
+                        username = readString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return new DBAsset(id, name, ownerId, policy, location, field, jdbcUrl, username, password, aesKey, encType);
+        }
+    }
+
+    static final class VideoAssetConverter implements Converter<VideoAsset> {
+        @Override
+        public void serialize(final VideoAsset videoAsset, final ObjectWriter writer, final Context ctx) {
+            writer.beginObject();
+            writeString(writer, "aesKey", videoAsset.getAesKey());
+            writer.writeName("encType").writeValue(videoAsset.getEncType());
+            writeString(writer, "field", videoAsset.getField());
+            writeString(writer, "id", videoAsset.getId());
+            writeString(writer, "location", videoAsset.getLocation());
+            writeString(writer, "name", videoAsset.getName());
+            writeString(writer, "ownerId", videoAsset.getOwnerId());
+            writeString(writer, "policy", videoAsset.getPolicy());
+            writeString(writer, "rtspUrl", videoAsset.getRtspUrl());
+            writer.endObject();
+        }
+
+        @Override
+        public VideoAsset deserialize(final ObjectReader reader, final Context ctx) {
+            String aesKey = null;
+            int encType = 0;
+            String field = null;
+            String id = null;
+            String location = null;
+            String name = null;
+            String ownerId = null;
+            String policy = null;
+            String rtspUrl = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.next();
+                switch (reader.name()) {
+                    case "aesKey":
+                        aesKey = readString(reader);
+                        break;
+                    case "encType":
+                        encType = reader.valueAsInt();
+                        break;
+                    case "field":
+                        field = readString(reader);
+                        break;
+                    case "id":
+                        id = readString(reader);
+                        break;
+                    case "location":
+                        location = readString(reader);
+                        break;
+                    case "name":
+                        name = readString(reader);
+                        break;
+                    case "ownerId":
+                        ownerId = readString(reader);
+                        break;
+                    case "policy":
+                        policy = readString(reader);
+                        break;
+                    case "rtspUrl":
+                        rtspUrl = readString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return new VideoAsset(id, name, ownerId, policy, location, field, rtspUrl, aesKey, encType);
+        }
+    }
+
+    static final class DataAssetOrderConverter implements Converter<DataAssetOrder> {
+        @Override
+        public void serialize(final DataAssetOrder dataAssetOrder, final ObjectWriter writer, final Context ctx) {
+            writer.beginObject();
+            writeString(writer, "applicantId", dataAssetOrder.getApplicantId());
+            writeString(writer, "dataAssetId", dataAssetOrder.getDataAssetId());
+            writeString(writer, "id", dataAssetOrder.getId());
+            writer.writeName("status").writeValue(dataAssetOrder.getStatus());
+            writer.endObject();
+        }
+
+        @Override
+        public DataAssetOrder deserialize(final ObjectReader reader, final Context ctx) {
+            String applicantId = null;
+            String dataAssetId = null;
+            String id = null;
+            int status = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.next();
+                switch (reader.name()) {
+                    case "applicantId":
+                        applicantId = readString(reader);
+                        break;
+                    case "dataAssetId":
+                        dataAssetId = readString(reader);
+                        break;
+                    case "id":
+                        id = readString(reader);
+                        break;
+                    case "status":
+                        status = reader.valueAsInt();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return new DataAssetOrder(id, dataAssetId, applicantId, status);
+        }
+    }
+
+    static final class DBAssetOrderConverter implements Converter<DBAssetOrder> {
+        @Override
+        public void serialize(final DBAssetOrder dbAssetOrder, final ObjectWriter writer, final Context ctx) {
+            writer.beginObject();
+            writeString(writer, "applicantId", dbAssetOrder.getApplicantId());
+            writeString(writer, "dbAssetId", dbAssetOrder.getDbAssetId());
+            writeString(writer, "id", dbAssetOrder.getId());
+            writeString(writer, "sql", dbAssetOrder.getSql());
+            writer.endObject();
+        }
+
+        @Override
+        public DBAssetOrder deserialize(final ObjectReader reader, final Context ctx) {
+            String applicantId = null;
+            String dbAssetId = null;
+            String id = null;
+            String sql = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.next();
+                switch (reader.name()) {
+                    case "applicantId":
+                        applicantId = readString(reader);
+                        break;
+                    case "dbAssetId":
+                        dbAssetId = readString(reader);
+                        break;
+                    case "id":
+                        id = readString(reader);
+                        break;
+                    case "sql":
+                        sql = readString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return new DBAssetOrder(id, dbAssetId, applicantId, sql);
+        }
+    }
+
+    static final class VideoAssetOrderConverter implements Converter<VideoAssetOrder> {
+        @Override
+        public void serialize(final VideoAssetOrder videoAssetOrder, final ObjectWriter writer, final Context ctx) {
+            writer.beginObject();
+            writeString(writer, "applicantId", videoAssetOrder.getApplicantId());
+            writeString(writer, "id", videoAssetOrder.getId());
+            writer.writeName("status").writeValue(videoAssetOrder.getStatus());
+            writeString(writer, "videoAssetId", videoAssetOrder.getVideoAssetId());
+            writer.endObject();
+        }
+
+        @Override
+        public VideoAssetOrder deserialize(final ObjectReader reader, final Context ctx) {
+            String applicantId = null;
+            String id = null;
+            int status = 0;
+            String videoAssetId = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.next();
+                switch (reader.name()) {
+                    case "applicantId":
+                        applicantId = readString(reader);
+                        break;
+                    case "id":
+                        id = readString(reader);
+                        break;
+                    case "status":
+                        status = reader.valueAsInt();
+                        break;
+                    case "videoAssetId":
+                        videoAssetId = readString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return new VideoAssetOrder(id, videoAssetId, applicantId, status);
+        }
+    }
+
+    static final class AttributeApplicationConverter implements Converter<AttributeApplication> {
+        @Override
+        public void serialize(final AttributeApplication attributeApplication, final ObjectWriter writer, final Context ctx) {
+            writer.beginObject();
+            writeString(writer, "attribute", attributeApplication.getAttribute());
+            writeString(writer, "departmentId", attributeApplication.getDepartmentId());
+            writeString(writer, "id", attributeApplication.getId());
+            writer.writeName("status").writeValue(attributeApplication.getStatus());
+            writer.endObject();
+        }
+
+        @Override
+        public AttributeApplication deserialize(final ObjectReader reader, final Context ctx) {
+            String attribute = null;
+            String departmentId = null;
+            String id = null;
+            int status = 0;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.next();
+                switch (reader.name()) {
+                    case "attribute":
+                        attribute = readString(reader);
+                        break;
+                    case "departmentId":
+                        departmentId = readString(reader);
+                        break;
+                    case "id":
+                        id = readString(reader);
+                        break;
+                    case "status":
+                        status = reader.valueAsInt();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return new AttributeApplication(id, departmentId, attribute, status);
+        }
+    }
+
+    static final class AttributeItemConverter implements Converter<AttributeItem> {
+        @Override
+        public void serialize(final AttributeItem attributeItem, final ObjectWriter writer, final Context ctx) {
+            writer.beginObject();
+            writeString(writer, "content", attributeItem.getContent());
+            writeString(writer, "id", attributeItem.getId());
+            writer.endObject();
+        }
+
+        @Override
+        public AttributeItem deserialize(final ObjectReader reader, final Context ctx) {
+            String content = null;
+            String id = null;
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                reader.next();
+                switch (reader.name()) {
+                    case "content":
+                        content = readString(reader);
+                        break;
+                    case "id":
+                        id = readString(reader);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            return new AttributeItem(id, content);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.Genson;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Builds chaincode event payloads. In the default "full" mode the payload is the entity's
+ * canonical JSON, as it always was. In "delta" mode it is a small fixed-schema record:
+ * {"changes":{...},"entityType":"DataAssetOrder","id":"...","operation":"UPDATE","version":"..."}
+ * where changes holds only the fields an update set (empty for CREATE and DELETE) and version is
+ * a hash of the entity's canonical JSON after the write (null for DELETE). Listeners that need
+ * the whole record read it with the matching Read transaction and can check it against version.
+ * Batch transactions emit a JSON array of such records.
+ */
+final class EntityEvents {
+    // Chaincode environment variable selecting the event payload: "full" (default) or "delta"
+    static final String ENVIRONMENT_VARIABLE = "DATAASSET_EVENT_MODE";
+
+    // 版本哈希取 SHA-256 的前 16 字节
+    private static final int VERSION_BYTES = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final Genson genson;
+    private final boolean delta;
+
+    private EntityEvents(final Genson genson, final boolean delta) {
+        this.genson = genson;
+        this.delta = delta;
+    }
+
+    static EntityEvents forName(final String name, final Genson genson) {
+        if (name == null || name.isEmpty() || "full".equalsIgnoreCase(name)) {
+            return new EntityEvents(genson, false);
+        }
+        if ("delta".equalsIgnoreCase(name)) {
+            return new EntityEvents(genson, true);
+        }
+        throw new IllegalArgumentException(String.format("Unknown event mode %s", name));
+    }
+
+    byte[] created(final String entityType, final String id, final String json) {
+        if (!delta) {
+            return json.getBytes(StandardCharsets.UTF_8);
+        }
+        return writeDelta(new JsonResponseWriter(128), entityType, id, "CREATE", json).toByteArray();
+    }
+
+    // changes are field name and value pairs, e.g. "status", 2
+    byte[] updated(final String entityType, final String id, final String json, final Object... changes) {
+        if (!delta) {
+            return json.getBytes(StandardCharsets.UTF_8);
+        }
+        return writeDelta(new JsonResponseWriter(128), entityType, id, "UPDATE", json, changes).toByteArray();
+    }
+
+    byte[] deleted(final String entityType, final String id, final Object entity) {
+        if (!delta) {
+            return genson.serialize(entity).getBytes(StandardCharsets.UTF_8);
+        }
+        return writeDelta(new JsonResponseWriter(128), entityType, id, "DELETE", null).toByteArray();
+    }
+
+    Batch newBatch() {
+        return new Batch();
+    }
+
+    /**
+     * Collects the delta records of a batch transaction. In full mode nothing is collected
+     * and the batch response itself becomes the payload.
+     */
+    final class Batch {
+        private final JsonResponseWriter writer = delta ? new JsonResponseWriter().beginArray() : null;
+
+        void created(final String entityType, final String id, final String json) {
+            if (delta) {
+                writeDelta(writer, entityType, id, "CREATE", json);
+            }
+        }
+
+        void updated(final String entityType, final String id, final String json, final Object... changes) {
+            if (delta) {
+                writeDelta(writer, entityType, id, "UPDATE", json, changes);
+            }
+        }
+
+        byte[] payload(final String response) {
+            return delta ? writer.endArray().toByteArray() : response.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static JsonResponseWriter writeDelta(final JsonResponseWriter writer, final String entityType, final String id,
+                                                 final String operation, final String json, final Object... changes) {
+        writer.beginObject();
+        writer.writeName("changes").beginObject();
+        for (int i = 0; i < changes.length; i += 2) {
+            writer.writeName((String) changes[i]);
+            Object value = changes[i + 1];
+            if (value instanceof Number) {
+                writer.writeNumber(((Number) value).longValue());
+            } else {
+                writer.writeString(value == null ? null : value.toString());
+            }
+        }
+        writer.endObject();
+        writer.writeName("entityType").writeString(entityType);
+        writer.writeName("id").writeString(id);
+        writer.writeName("operation").writeString(operation);
+        writer.writeName("version").writeString(json == null ? null : version(json));
+        return writer.endObject();
+    }
+
+    private static String version(final String json) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] digest = sha256.digest(json.getBytes(StandardCharsets.UTF_8));
+        char[] hex = new char[VERSION_BYTES * 2];
+        for (int i = 0; i < VERSION_BYTES; i++) {
+            hex[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+            hex[2 * i + 1] = HEX[digest[i] & 0xF];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,97 @@
+package org.canisminor.assettransfer;
+
+/**
+ * Ledger keys of entities. In the default "raw" layout an entity is stored under its id, e.g.
+ * DataAsset12, so listings are lexicographic (DataAsset10 before DataAsset2) and need a
+ * "...9999" end key. In the "ordered" layout it is stored under its type, '#' and the numeric
+ * suffix zero-padded to 20 digits, e.g. DataAsset#00000000000000000012: keys of one type sort
+ * numerically and the range [type + "#", type + "$") holds exactly that type.
+ * Ids that are not a known type followed by a canonical number (no leading zeros) keep the raw
+ * layout. Entities written before the ordered layout was enabled stay at their raw key until
+ * they are rewritten, so reads fall back to it and listings visit it after the ordered range.
+ */
+final class EntityKeys {
+    // Chaincode environment variable selecting the key layout: "raw" (default) or "ordered"
+    static final String ENVIRONMENT_VARIABLE = "DATAASSET_KEY_MODE";
+
+    // 数字后缀的定长宽度，覆盖 id 模式 \d{1,20}
+    static final int WIDTH = 20;
+
+    private static final String PADDING = "00000000000000000000";
+    private static final String RAW_END_SUFFIX = "9999999999999999999999999";
+
+    private final boolean ordered;
+
+    private EntityKeys(final boolean ordered) {
+        this.ordered = ordered;
+    }
+
+    static EntityKeys forName(final String name) {
+        if (name == null || name.isEmpty() || "raw".equalsIgnoreCase(name)) {
+            return new EntityKeys(false);
+        }
+        if ("ordered".equalsIgnoreCase(name)) {
+            return new EntityKeys(true);
+        }
+        throw new IllegalArgumentException(String.format("Unknown key mode %s", name));
+    }
+
+    boolean isOrdered() {
+        return ordered;
+    }
+
+    // Key an entity is written under
+    String key(final String id) {
+        if (!ordered) {
+            return id;
+        }
+        String key = orderedKey(id);
+        return key == null ? id : key;
+    }
+
+    // Range of the current layout
+    String startKey(final String entityType) {
+        return ordered ? entityType + "#" : rawStartKey(entityType);
+    }
+
+    String endKey(final String entityType) {
+        return ordered ? entityType + "$" : rawEndKey(entityType);
+    }
+
+    static String rawStartKey(final String entityType) {
+        return entityType;
+    }
+
+    static String rawEndKey(final String entityType) {
+        return entityType + RAW_END_SUFFIX;
+    }
+
+    // Raw keys left behind in ordered mode; starting at the first digit skips the ordered range
+    static String legacyStartKey(final String entityType) {
+        return entityType + '0';
+    }
+
+    static String legacyEndKey(final String entityType) {
+        return rawEndKey(entityType);
+    }
+
+    // The ordered key of id, or null when id is not a known entity type followed by a canonical number
+    static String orderedKey(final String id) {
+        if (id == null) {
+            return null;
+        }
+        int suffix = id.length();
+        while (suffix > 0 && id.charAt(suffix - 1) >= '0' && id.charAt(suffix - 1) <= '9') {
+            suffix--;
+        }
+        int digits = id.length() - suffix;
+        if (digits == 0 || digits > WIDTH || (digits > 1 && id.charAt(suffix) == '0')) {
+            return null;
+        }
+        String entityType = id.substring(0, suffix);
+        if (EntityConverters.entityType(entityType) == null) {
+            return null;
+        }
+        return entityType + '#' + PADDING.substring(digits) + id.substring(suffix);
+    }
+}
@@ -0,0 +1,40 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.Genson;
+import org.hyperledger.fabric.contract.annotation.Serializer;
+import org.hyperledger.fabric.contract.execution.JSONTransactionSerializer;
+import org.hyperledger.fabric.contract.metadata.TypeSchema;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Transaction serializer that marshals the @DataType entities with the precompiled
+ * {@link EntityConverters}, producing the same canonical JSON that is stored on the ledger.
+ * Every other type is left to the default JSON serializer.
+ */
+@Serializer(target = Serializer.TARGET.TRANSACTION)
+public class EntityTransactionSerializer extends JSONTransactionSerializer {
+    private static final String SCHEMA_REF_PREFIX = "#/components/schemas/";
+
+    private final Genson genson = EntityConverters.newGenson();
+
+    @Override
+    public byte[] toBuffer(final Object value, final TypeSchema ts) {
+        if (value != null && EntityConverters.entityType(value.getClass().getSimpleName()) == value.getClass()) {
+            return genson.serialize(value).getBytes(StandardCharsets.UTF_8);
+        }
+        return super.toBuffer(value, ts);
+    }
+
+    @Override
+    public Object fromBuffer(final byte[] buffer, final TypeSchema ts) {
+        Object ref = ts == null ? null : ts.get("$ref");
+        if (ref instanceof String && ((String) ref).startsWith(SCHEMA_REF_PREFIX)) {
+            Class<?> type = EntityConverters.entityType(((String) ref).substring(SCHEMA_REF_PREFIX.length()));
+            if (type != null) {
+                return genson.deserialize(new String(buffer, StandardCharsets.UTF_8), type);
+            }
+        }
+        return super.fromBuffer(buffer, ts);
+    }
+}
@@ -0,0 +1,69 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The properties of an entity a read or listing returns, given as a comma-separated list such as
+ * "id,name,ownerId,location,field". A blank list selects every property. Projected objects keep
+ * the alphabetical property order of the full JSON, and codecs skip the other properties without
+ * decoding them.
+ */
+final class FieldProjection {
+    static final FieldProjection ALL = new FieldProjection(null);
+
+    private static final Map<Class<?>, Set<String>> PROPERTIES = new HashMap<>();
+
+    static {
+        for (Class<?> type : EntityConverters.ENTITY_TYPES) {
+            Set<String> properties = new LinkedHashSet<>();
+            for (Field field : type.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Property.class)) {
+                    properties.add(field.getName());
+                }
+            }
+            PROPERTIES.put(type, Collections.unmodifiableSet(properties));
+        }
+    }
+
+    // null when every property is selected
+    private final Set<String> names;
+
+    private FieldProjection(final Set<String> names) {
+        this.names = names;
+    }
+
+    static FieldProjection parse(final Class<?> type, final String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return ALL;
+        }
+
+        Set<String> properties = PROPERTIES.get(type);
+        Set<String> names = new LinkedHashSet<>();
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (!properties.contains(trimmed)) {
+                throw new IllegalArgumentException(String.format("%s has no property %s", type.getSimpleName(), trimmed));
+            }
+            names.add(trimmed);
+        }
+        return names.isEmpty() || names.size() == properties.size() ? ALL : new FieldProjection(names);
+    }
+
+    boolean isAll() {
+        return names == null;
+    }
+
+    boolean includes(final String name) {
+        return names == null || names.contains(name);
+    }
+}
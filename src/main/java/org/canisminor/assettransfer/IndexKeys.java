@@ -0,0 +1,54 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+
+import java.util.List;
+
+/**
+ * Composite-key secondary indexes. Each entry is an index key whose value is a single
+ * null byte; the indexed entity id is always the last attribute of the key.
+ */
+final class IndexKeys {
+    // 申请机构 -> 订单
+    static final String APPLICANT_TYPE_ORDER = "applicant~type~orderId";
+
+    // 所属机构 -> 资产
+    static final String OWNER_TYPE_ASSET = "owner~type~assetId";
+
+    // 地区 -> 资产
+    static final String LOCATION_TYPE_ASSET = "location~type~assetId";
+
+    // 应用领域 -> 资产
+    static final String FIELD_TYPE_ASSET = "field~type~assetId";
+
+    // 属性项 -> 机构
+    static final String ATTRIBUTE_DEPARTMENT = "attr~k:v~departmentId";
+
+    private static final byte[] ENTRY_VALUE = {0x00};
+
+    private IndexKeys() {
+    }
+
+    static void put(final ChaincodeStub stub, final String index, final String... attributes) {
+        stub.putState(stub.createCompositeKey(index, attributes).toString(), ENTRY_VALUE);
+    }
+
+    static void delete(final ChaincodeStub stub, final String index, final String... attributes) {
+        stub.delState(stub.createCompositeKey(index, attributes).toString());
+    }
+
+    static boolean contains(final ChaincodeStub stub, final String index, final String... attributes) {
+        byte[] value = stub.getState(stub.createCompositeKey(index, attributes).toString());
+        return value != null && value.length > 0;
+    }
+
+    static String entityId(final ChaincodeStub stub, final String indexKey) {
+        List<String> attributes = stub.splitCompositeKey(indexKey).getAttributes();
+        return attributes.get(attributes.size() - 1);
+    }
+
+    static CompositeKey prefix(final ChaincodeStub stub, final String index, final String... attributes) {
+        return stub.createCompositeKey(index, attributes);
+    }
+}
@@ -0,0 +1,183 @@
+package org.canisminor.assettransfer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Builds a JSON response directly into a growing UTF-8 buffer.
+ * Ledger values are already canonical Genson JSON, so they are copied in as raw elements
+ * instead of being deserialized into POJOs and serialized again.
+ */
+final class JsonResponseWriter {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private byte[] buffer;
+    private int count;
+    private boolean needsComma;
+    private boolean afterName;
+
+    JsonResponseWriter() {
+        this(1024);
+    }
+
+    JsonResponseWriter(final int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    JsonResponseWriter beginArray() {
+        beforeValue();
+        append((byte) '[');
+        needsComma = false;
+        return this;
+    }
+
+    JsonResponseWriter endArray() {
+        append((byte) ']');
+        needsComma = true;
+        return this;
+    }
+
+    JsonResponseWriter beginObject() {
+        beforeValue();
+        append((byte) '{');
+        needsComma = false;
+        return this;
+    }
+
+    JsonResponseWriter endObject() {
+        append((byte) '}');
+        needsComma = true;
+        return this;
+    }
+
+    JsonResponseWriter writeName(final String name) {
+        if (needsComma) {
+            append((byte) ',');
+        }
+        appendQuoted(name);
+        append((byte) ':');
+        afterName = true;
+        return this;
+    }
+
+    // value must already be a complete JSON document, e.g. a ledger value written by Genson
+    JsonResponseWriter writeRawValue(final byte[] value) {
+        return writeRawValue(value, 0, value.length);
+    }
+
+    JsonResponseWriter writeRawValue(final byte[] value, final int offset, final int length) {
+        beforeValue();
+        ensureCapacity(length);
+        System.arraycopy(value, offset, buffer, count, length);
+        count += length;
+        needsComma = true;
+        return this;
+    }
+
+    JsonResponseWriter writeString(final String value) {
+        beforeValue();
+        if (value == null) {
+            appendAscii("null");
+        } else {
+            appendQuoted(value);
+        }
+        needsComma = true;
+        return this;
+    }
+
+    JsonResponseWriter writeNumber(final long value) {
+        beforeValue();
+        appendAscii(Long.toString(value));
+        needsComma = true;
+        return this;
+    }
+
+    int size() {
+        return count;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, count);
+    }
+
+    @Override
+    public String toString() {
+        return new String(buffer, 0, count, StandardCharsets.UTF_8);
+    }
+
+    private void beforeValue() {
+        if (needsComma && !afterName) {
+            append((byte) ',');
+        }
+        afterName = false;
+    }
+
+    private void appendQuoted(final String value) {
+        append((byte) '"');
+        int start = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            appendUtf8(value, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"':
+                    appendAscii("\\\"");
+                    break;
+                case '\\':
+                    appendAscii("\\\\");
+                    break;
+                case '\b':
+                    appendAscii("\\b");
+                    break;
+                case '\f':
+                    appendAscii("\\f");
+                    break;
+                case '\n':
+                    appendAscii("\\n");
+                    break;
+                case '\r':
+                    appendAscii("\\r");
+                    break;
+                case '\t':
+                    appendAscii("\\t");
+                    break;
+                default:
+                    appendAscii("\\u00");
+                    append((byte) HEX[c >> 4]);
+                    append((byte) HEX[c & 0xF]);
+            }
+        }
+        appendUtf8(value, start, value.length());
+        append((byte) '"');
+    }
+
+    private void appendUtf8(final String value, final int start, final int end) {
+        if (start < end) {
+            byte[] bytes = value.substring(start, end).getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buffer, count, bytes.length);
+            count += bytes.length;
+        }
+    }
+
+    private void appendAscii(final String value) {
+        ensureCapacity(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            buffer[count++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void append(final byte b) {
+        ensureCapacity(1);
+        buffer[count++] = b;
+    }
+
+    private void ensureCapacity(final int extra) {
+        if (count + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, count + extra));
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.Genson;
+import org.hyperledger.fabric.shim.ChaincodeException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stores entities as the alphabetically sorted JSON produced by Genson.
+ * Projections copy the selected members byte for byte; the others are only scanned for their end.
+ */
+final class JsonValueCodec implements ValueCodec {
+    private final Genson genson;
+
+    JsonValueCodec(final Genson genson) {
+        this.genson = genson;
+    }
+
+    @Override
+    public byte[] encode(final Object entity) {
+        return genson.serialize(entity).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public <T> T decode(final byte[] value, final Class<T> clazz) {
+        return genson.deserialize(new String(value, StandardCharsets.UTF_8), clazz);
+    }
+
+    @Override
+    public String toJson(final Object entity, final byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void writeJson(final byte[] value, final JsonResponseWriter writer) {
+        writer.writeRawValue(value);
+    }
+
+    @Override
+    public void writeJson(final byte[] value, final JsonResponseWriter writer, final FieldProjection fields) {
+        if (fields.isAll()) {
+            writeJson(value, writer);
+            return;
+        }
+
+        int position = skipWhitespace(value, 0);
+        expect(value, position++, '{');
+        writer.beginObject();
+        position = skipWhitespace(value, position);
+        if (position < value.length && value[position] == '}') {
+            writer.endObject();
+            return;
+        }
+        while (true) {
+            int nameStart = position;
+            position = skipString(value, position);
+            // Property names of the entities are plain ASCII, never escaped
+            String name = new String(value, nameStart + 1, position - nameStart - 2, StandardCharsets.UTF_8);
+            position = skipWhitespace(value, position);
+            expect(value, position++, ':');
+            position = skipWhitespace(value, position);
+            int valueStart = position;
+            position = skipValue(value, position);
+            if (fields.includes(name)) {
+                writer.writeName(name).writeRawValue(value, valueStart, position - valueStart);
+            }
+            position = skipWhitespace(value, position);
+            if (position < value.length && value[position] == ',') {
+                position = skipWhitespace(value, position + 1);
+                continue;
+            }
+            expect(value, position, '}');
+            break;
+        }
+        writer.endObject();
+    }
+
+    private static int skipValue(final byte[] value, final int start) {
+        if (start >= value.length) {
+            throw malformed();
+        }
+        byte first = value[start];
+        if (first == '"') {
+            return skipString(value, start);
+        }
+        if (first != '{' && first != '[') {
+            int position = start;
+            while (position < value.length && value[position] != ',' && value[position] != '}' && value[position] != ']' && value[position] > ' ') {
+                position++;
+            }
+            return position;
+        }
+
+        int depth = 0;
+        int position = start;
+        while (position < value.length) {
+            byte b = value[position];
+            if (b == '"') {
+                position = skipString(value, position);
+                continue;
+            }
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if ((b == '}' || b == ']') && --depth == 0) {
+                return position + 1;
+            }
+            position++;
+        }
+        throw malformed();
+    }
+
+    // Position after the closing quote of the string starting at start
+    private static int skipString(final byte[] value, final int start) {
+        expect(value, start, '"');
+        int position = start + 1;
+        while (position < value.length) {
+            byte b = value[position];
+            if (b == '"') {
+                return position + 1;
+            }
+            position += b == '\\' ? 2 : 1;
+        }
+        throw malformed();
+    }
+
+    private static int skipWhitespace(final byte[] value, final int start) {
+        int position = start;
+        while (position < value.length && (value[position] == ' ' || value[position] == '\t' || value[position] == '\n' || value[position] == '\r')) {
+            position++;
+        }
+        return position;
+    }
+
+    private static void expect(final byte[] value, final int position, final char expected) {
+        if (position >= value.length || value[position] != expected) {
+            throw malformed();
+        }
+    }
+
+    private static ChaincodeException malformed() {
+        return new ChaincodeException("Malformed JSON ledger value");
+    }
+}
@@ -0,0 +1,140 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.protos.peer.QueryResponseMetadata;
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.CompositeKey;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIteratorWithMetadata;
+
+import java.util.Iterator;
+
+/**
+ * Counts the state traffic between the contract and the peer into a {@link TransactionMetrics}.
+ * Sits below {@link CachingChaincodeStub}, so it sees only the reads that miss the cache and
+ * the writes that are flushed.
+ */
+final class MeteringChaincodeStub extends ForwardingChaincodeStub {
+    private final TransactionMetrics metrics;
+
+    MeteringChaincodeStub(final ChaincodeStub delegate, final TransactionMetrics metrics) {
+        super(delegate);
+        this.metrics = metrics;
+    }
+
+    @Override
+    public byte[] getState(final String key) {
+        byte[] value = delegate().getState(key);
+        metrics.recordRead(value);
+        return value;
+    }
+
+    @Override
+    public void putState(final String key, final byte[] value) {
+        delegate().putState(key, value);
+        metrics.recordWrite(key, value);
+    }
+
+    @Override
+    public void delState(final String key) {
+        delegate().delState(key);
+        metrics.recordWrite(key, null);
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByRange(final String startKey, final String endKey) {
+        return new CountingResults(delegate().getStateByRange(startKey, endKey));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByRangeWithPagination(final String startKey, final String endKey, final int pageSize, final String bookmark) {
+        return new CountingPage(delegate().getStateByRangeWithPagination(startKey, endKey, pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String compositeKey) {
+        return new CountingResults(delegate().getStateByPartialCompositeKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final String objectType, final String... attributes) {
+        return new CountingResults(delegate().getStateByPartialCompositeKey(objectType, attributes));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getStateByPartialCompositeKey(final CompositeKey compositeKey) {
+        return new CountingResults(delegate().getStateByPartialCompositeKey(compositeKey));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getStateByPartialCompositeKeyWithPagination(final CompositeKey compositeKey, final int pageSize, final String bookmark) {
+        return new CountingPage(delegate().getStateByPartialCompositeKeyWithPagination(compositeKey, pageSize, bookmark));
+    }
+
+    @Override
+    public QueryResultsIterator<KeyValue> getQueryResult(final String query) {
+        return new CountingResults(delegate().getQueryResult(query));
+    }
+
+    @Override
+    public QueryResultsIteratorWithMetadata<KeyValue> getQueryResultWithPagination(final String query, final int pageSize, final String bookmark) {
+        return new CountingPage(delegate().getQueryResultWithPagination(query, pageSize, bookmark));
+    }
+
+    private final class CountingResults implements QueryResultsIterator<KeyValue> {
+        private final QueryResultsIterator<KeyValue> results;
+
+        CountingResults(final QueryResultsIterator<KeyValue> results) {
+            this.results = results;
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return counting(results.iterator());
+        }
+
+        @Override
+        public void close() throws Exception {
+            results.close();
+        }
+    }
+
+    private final class CountingPage implements QueryResultsIteratorWithMetadata<KeyValue> {
+        private final QueryResultsIteratorWithMetadata<KeyValue> results;
+
+        CountingPage(final QueryResultsIteratorWithMetadata<KeyValue> results) {
+            this.results = results;
+        }
+
+        @Override
+        public QueryResponseMetadata getMetadata() {
+            return results.getMetadata();
+        }
+
+        @Override
+        public Iterator<KeyValue> iterator() {
+            return counting(results.iterator());
+        }
+
+        @Override
+        public void close() throws Exception {
+            results.close();
+        }
+    }
+
+    private Iterator<KeyValue> counting(final Iterator<KeyValue> rows) {
+        return new Iterator<KeyValue>() {
+            @Override
+            public boolean hasNext() {
+                return rows.hasNext();
+            }
+
+            @Override
+            public KeyValue next() {
+                KeyValue row = rows.next();
+                metrics.recordRangeRow(row.getKey(), row.getValue());
+                return row;
+            }
+        };
+    }
+}
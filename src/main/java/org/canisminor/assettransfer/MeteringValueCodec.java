@@ -0,0 +1,85 @@
+package org.canisminor.assettransfer;
+
+/**
+ * Adds the time spent in the wrapped codec to the running transaction's {@link TransactionMetrics}.
+ * Outside a metered transaction it only costs a thread-local lookup per call.
+ */
+final class MeteringValueCodec implements ValueCodec {
+    private final ValueCodec delegate;
+
+    MeteringValueCodec(final ValueCodec delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public byte[] encode(final Object entity) {
+        TransactionMetrics metrics = TransactionMetrics.current();
+        if (metrics == null) {
+            return delegate.encode(entity);
+        }
+        long start = System.nanoTime();
+        try {
+            return delegate.encode(entity);
+        } finally {
+            metrics.recordSerialization(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public <T> T decode(final byte[] value, final Class<T> clazz) {
+        TransactionMetrics metrics = TransactionMetrics.current();
+        if (metrics == null) {
+            return delegate.decode(value, clazz);
+        }
+        long start = System.nanoTime();
+        try {
+            return delegate.decode(value, clazz);
+        } finally {
+            metrics.recordSerialization(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public String toJson(final Object entity, final byte[] value) {
+        TransactionMetrics metrics = TransactionMetrics.current();
+        if (metrics == null) {
+            return delegate.toJson(entity, value);
+        }
+        long start = System.nanoTime();
+        try {
+            return delegate.toJson(entity, value);
+        } finally {
+            metrics.recordSerialization(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void writeJson(final byte[] value, final JsonResponseWriter writer) {
+        TransactionMetrics metrics = TransactionMetrics.current();
+        if (metrics == null) {
+            delegate.writeJson(value, writer);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            delegate.writeJson(value, writer);
+        } finally {
+            metrics.recordSerialization(System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void writeJson(final byte[] value, final JsonResponseWriter writer, final FieldProjection fields) {
+        TransactionMetrics metrics = TransactionMetrics.current();
+        if (metrics == null) {
+            delegate.writeJson(value, writer, fields);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            delegate.writeJson(value, writer, fields);
+        } finally {
+            metrics.recordSerialization(System.nanoTime() - start);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.annotation.JsonProperty;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Objects;
+
+@DataType()
+public class MigrationProgress {
+    @Property()
+    private String migration; // 迁移任务名
+
+    @Property()
+    private String cursor; // 最后处理的键，尚未开始时为空
+
+    @Property(schema = {"minimum", "0"})
+    private long processed; // 已处理条目数
+
+    @Property()
+    private boolean done; // 是否完成
+
+    // Getter
+    public String getMigration() {
+        return migration;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    // Constructor
+    public MigrationProgress(@JsonProperty("migration") final String migration,
+                             @JsonProperty("cursor") final String cursor,
+                             @JsonProperty("processed") final long processed,
+                             @JsonProperty("done") final boolean done) {
+        this.migration = migration;
+        this.cursor = cursor;
+        this.processed = processed;
+        this.done = done;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        MigrationProgress that = (MigrationProgress) o;
+        return getProcessed() == that.getProcessed() && isDone() == that.isDone() && Objects.equals(getMigration(), that.getMigration()) && Objects.equals(getCursor(), that.getCursor());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getMigration(), getCursor(), getProcessed(), isDone());
+    }
+
+    @Override
+    public String toString() {
+        return "MigrationProgress{" +
+                "migration='" + migration + '\'' +
+                ", cursor='" + cursor + '\'' +
+                ", processed=" + processed +
+                ", done=" + done +
+                '}';
+    }
+}
@@ -0,0 +1,100 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ChaincodeStub;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of status changes. Each change is its own composite key, ordered by the
+ * transaction timestamp and made unique by the txId, so writing one reads nothing and
+ * concurrent changes to the same record never conflict; the callers only read the record to
+ * check it exists, which conflicts with nothing but a fold of that record. The latest entry
+ * overrides the status stored in the record until the log is folded back into it, so reading it
+ * scans every entry since the last fold.
+ * The timestamp is the one the client put in its proposal, not the commit order: peers accept
+ * client clocks within their skew window, so two changes of one record submitted close together
+ * from clients whose clocks disagree can take effect in the opposite order to their commits.
+ * Records whose status is driven from several clients that need commit order should stay in
+ * rewrite mode, where the last committed write wins.
+ */
+final class StatusLog {
+    // Chaincode environment variable selecting how status changes are stored: "rewrite" (default) or "append"
+    static final String ENVIRONMENT_VARIABLE = "DATAASSET_STATUS_MODE";
+
+    // 实体类型 -> 实体 -> 交易时间 -> 交易 ID
+    static final String STATUS_LOG = "status~type~id~timestamp~txId";
+
+    private StatusLog() {
+    }
+
+    static boolean appendForName(final String mode) {
+        if (mode == null || mode.isEmpty() || "rewrite".equalsIgnoreCase(mode)) {
+            return false;
+        }
+        if ("append".equalsIgnoreCase(mode)) {
+            return true;
+        }
+        throw new IllegalArgumentException(String.format("Unknown status mode %s", mode));
+    }
+
+    static void append(final ChaincodeStub stub, final String entityType, final String id, final int status) {
+        Instant timestamp = stub.getTxTimestamp();
+        // Zero-padded epoch nanoseconds sort in time order
+        String nanos = String.format("%019d", timestamp.getEpochSecond() * 1_000_000_000L + timestamp.getNano());
+        String key = stub.createCompositeKey(STATUS_LOG, entityType, id, nanos, stub.getTxId()).toString();
+        stub.putState(key, Integer.toString(status).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Status of the latest entry, or null when the log is empty
+    static Integer latest(final ChaincodeStub stub, final String entityType, final String id) {
+        Integer status = null;
+        QueryResultsIterator<KeyValue> results = stub.getStateByPartialCompositeKey(stub.createCompositeKey(STATUS_LOG, entityType, id));
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                status = decode(result.getValue());
+            }
+        }
+        return status;
+    }
+
+    // Deletes every entry and returns the status of the latest one, or null when the log was empty
+    static Integer fold(final ChaincodeStub stub, final String entityType, final String id) {
+        Integer status = null;
+        QueryResultsIterator<KeyValue> results = stub.getStateByPartialCompositeKey(stub.createCompositeKey(STATUS_LOG, entityType, id));
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                status = decode(result.getValue());
+                stub.delState(result.getKey());
+            }
+        }
+        return status;
+    }
+
+    // Deletes the first chunkSize entries of entityType, puts the status of the latest entry of each id
+    // into latest and returns the number deleted. Entries are ordered by id and then time, so an id cut
+    // by the chunk end continues, with later entries, in the next chunk.
+    static int foldChunk(final ChaincodeStub stub, final String entityType, final int chunkSize, final Map<String, Integer> latest) {
+        int count = 0;
+        QueryResultsIterator<KeyValue> results = stub.getStateByPartialCompositeKey(stub.createCompositeKey(STATUS_LOG, entityType));
+        try (ClosingResults closing = ClosingResults.of(results)) {
+            for (KeyValue result : results) {
+                List<String> attributes = stub.splitCompositeKey(result.getKey()).getAttributes();
+                latest.put(attributes.get(1), decode(result.getValue()));
+                stub.delState(result.getKey());
+                if (++count == chunkSize) {
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static int decode(final byte[] value) {
+        return Integer.parseInt(new String(value, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,53 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.annotation.JsonProperty;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Objects;
+
+@DataType()
+public class StatusUpdate {
+    @Property()
+    private String id; // 订单或属性申请id
+
+    @Property(schema = {"minimum", "0", "maximum", "20"})
+    private int status; // 目标状态
+
+    // Getter
+    public String getId() {
+        return id;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    // Constructor
+    public StatusUpdate(@JsonProperty("id") final String id,
+                        @JsonProperty("status") final int status) {
+        this.id = id;
+        this.status = status;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StatusUpdate that = (StatusUpdate) o;
+        return getStatus() == that.getStatus() && Objects.equals(getId(), that.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getId(), getStatus());
+    }
+
+    @Override
+    public String toString() {
+        return "StatusUpdate{" +
+                "id='" + id + '\'' +
+                ", status=" + status +
+                '}';
+    }
+}
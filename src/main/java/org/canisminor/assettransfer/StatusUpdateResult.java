@@ -0,0 +1,80 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.annotation.JsonProperty;
+import org.hyperledger.fabric.contract.annotation.DataType;
+import org.hyperledger.fabric.contract.annotation.Property;
+
+import java.util.Objects;
+
+@DataType()
+public class StatusUpdateResult {
+    public enum Outcome {
+        UPDATED,
+        UNCHANGED,
+        // Appended to the status log without reading the current status
+        APPENDED
+    }
+
+    @Property()
+    private String id; // 订单或属性申请id
+
+    @Property(schema = {"minimum", "0", "maximum", "20"})
+    private int storedStatus; // 更新前记录中保存的状态，追加模式下不含尚未折叠的状态日志
+
+    @Property(schema = {"minimum", "0", "maximum", "20"})
+    private int status; // 当前状态
+
+    @Property()
+    private Outcome outcome; // 处理结果
+
+    // Getter
+    public String getId() {
+        return id;
+    }
+
+    public int getStoredStatus() {
+        return storedStatus;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public Outcome getOutcome() {
+        return outcome;
+    }
+
+    // Constructor
+    public StatusUpdateResult(@JsonProperty("id") final String id,
+                              @JsonProperty("storedStatus") final int storedStatus,
+                              @JsonProperty("status") final int status,
+                              @JsonProperty("outcome") final Outcome outcome) {
+        this.id = id;
+        this.storedStatus = storedStatus;
+        this.status = status;
+        this.outcome = outcome;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        StatusUpdateResult that = (StatusUpdateResult) o;
+        return getStoredStatus() == that.getStoredStatus() && getStatus() == that.getStatus() && Objects.equals(getId(), that.getId()) && getOutcome() == that.getOutcome();
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getId(), getStoredStatus(), getStatus(), getOutcome());
+    }
+
+    @Override
+    public String toString() {
+        return "StatusUpdateResult{" +
+                "id='" + id + '\'' +
+                ", storedStatus=" + storedStatus +
+                ", status=" + status +
+                ", outcome=" + outcome +
+                '}';
+    }
+}
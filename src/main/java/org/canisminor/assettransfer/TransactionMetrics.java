@@ -0,0 +1,121 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.contract.annotation.Transaction;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Cost of one transaction invocation: wall time, state reads and writes as seen by the peer,
+ * range-scan rows iterated and time spent in the value codec. Published to
+ * {@link TransactionMetricsRegistry} when the transaction finishes.
+ * The invocation runs on a single shim thread, so the metrics of the running transaction are
+ * also reachable from {@link #current()} for code that has no Context, such as the codec.
+ * The shim has no hook for a transaction that throws, so such an invocation is still current
+ * when the next one begins on the thread, and is published as failed at that point.
+ */
+final class TransactionMetrics {
+    private static final ThreadLocal<TransactionMetrics> CURRENT = new ThreadLocal<>();
+
+    // Transaction names become a metric label, so only the contract's own transactions are kept
+    static final String UNKNOWN = "unknown";
+    private static final Set<String> TRANSACTIONS = Arrays.stream(AssetTransfer.class.getMethods())
+            .filter(method -> method.isAnnotationPresent(Transaction.class))
+            .map(Method::getName)
+            .collect(Collectors.toSet());
+
+    private final String transaction;
+    private final long startNanos;
+    private boolean ended;
+    private long stateReads;
+    private long bytesRead;
+    private long stateWrites;
+    private long bytesWritten;
+    private long rangeRows;
+    private long serializationNanos;
+
+    private TransactionMetrics(final String transaction) {
+        this.transaction = transaction;
+        this.startNanos = System.nanoTime();
+    }
+
+    // The function may carry the contract namespace, e.g. "DataAsset:CreateDataAsset"
+    static TransactionMetrics begin(final String function) {
+        TransactionMetrics abandoned = CURRENT.get();
+        if (abandoned != null) {
+            abandoned.end(false);
+        }
+        String transaction = function == null ? UNKNOWN : function.substring(function.indexOf(':') + 1);
+        TransactionMetrics metrics = new TransactionMetrics(TRANSACTIONS.contains(transaction) ? transaction : UNKNOWN);
+        CURRENT.set(metrics);
+        return metrics;
+    }
+
+    static TransactionMetrics current() {
+        return CURRENT.get();
+    }
+
+    // Publishes once; a failed invocation counts its state traffic but not its duration,
+    // which for an abandoned one would run up to the next transaction on the thread
+    void end(final boolean succeeded) {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+        if (ended) {
+            return;
+        }
+        ended = true;
+        TransactionMetricsRegistry.INSTANCE.record(this, succeeded, System.nanoTime() - startNanos);
+    }
+
+    void recordRead(final byte[] value) {
+        stateReads++;
+        bytesRead += value == null ? 0 : value.length;
+    }
+
+    void recordWrite(final String key, final byte[] value) {
+        stateWrites++;
+        int size = key.length() + (value == null ? 0 : value.length);
+        bytesWritten += size;
+        TransactionMetricsRegistry.INSTANCE.recordWriteSize(transaction, size);
+    }
+
+    void recordRangeRow(final String key, final byte[] value) {
+        rangeRows++;
+        bytesRead += key.length() + (value == null ? 0 : value.length);
+    }
+
+    void recordSerialization(final long nanos) {
+        serializationNanos += nanos;
+    }
+
+    String getTransaction() {
+        return transaction;
+    }
+
+    long getStateReads() {
+        return stateReads;
+    }
+
+    long getBytesRead() {
+        return bytesRead;
+    }
+
+    long getStateWrites() {
+        return stateWrites;
+    }
+
+    long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    long getRangeRows() {
+        return rangeRows;
+    }
+
+    long getSerializationNanos() {
+        return serializationNanos;
+    }
+}
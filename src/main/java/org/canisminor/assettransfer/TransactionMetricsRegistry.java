@@ -0,0 +1,174 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.metrics.TaskMetricsCollector;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Process-wide aggregate of {@link TransactionMetrics} per transaction name, rendered in the
+ * Prometheus text format. Metering stays off, and costs nothing per transaction, until
+ * {@link AssetTransferMetricsProvider} is loaded by the shim and enables it.
+ */
+final class TransactionMetricsRegistry {
+    static final TransactionMetricsRegistry INSTANCE = new TransactionMetricsRegistry();
+
+    private static final double[] DURATION_BUCKETS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5};
+    private static final double[] WRITE_SIZE_BUCKETS = {128, 512, 1024, 4096, 16384, 65536, 262144, 1048576};
+
+    private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+    private volatile TaskMetricsCollector taskMetrics;
+
+    private TransactionMetricsRegistry() {
+    }
+
+    boolean isEnabled() {
+        return enabled;
+    }
+
+    void enable() {
+        enabled = true;
+    }
+
+    void setTaskMetricsCollector(final TaskMetricsCollector taskMetrics) {
+        this.taskMetrics = taskMetrics;
+    }
+
+    void record(final TransactionMetrics metrics, final boolean succeeded, final long durationNanos) {
+        Series s = series(metrics.getTransaction());
+        if (succeeded) {
+            s.count.increment();
+            s.duration.observe(durationNanos / 1e9);
+        } else {
+            s.failed.increment();
+        }
+        s.stateReads.add(metrics.getStateReads());
+        s.bytesRead.add(metrics.getBytesRead());
+        s.stateWrites.add(metrics.getStateWrites());
+        s.bytesWritten.add(metrics.getBytesWritten());
+        s.rangeRows.add(metrics.getRangeRows());
+        s.serializationNanos.add(metrics.getSerializationNanos());
+    }
+
+    void recordWriteSize(final String transaction, final int bytes) {
+        series(transaction).writeSize.observe(bytes);
+    }
+
+    String toPrometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+        Map<String, Series> sorted = new TreeMap<>(series);
+
+        header(out, "assettransfer_transactions_total", "counter", "Completed transactions.");
+        sorted.forEach((name, s) -> sample(out, "assettransfer_transactions_total", name, s.count.sum()));
+        header(out, "assettransfer_transactions_failed_total", "counter", "Transactions that threw, or were not found, instead of completing.");
+        sorted.forEach((name, s) -> sample(out, "assettransfer_transactions_failed_total", name, s.failed.sum()));
+        header(out, "assettransfer_transaction_duration_seconds", "histogram", "Wall time from context creation to afterTransaction.");
+        sorted.forEach((name, s) -> s.duration.write(out, "assettransfer_transaction_duration_seconds", name));
+        header(out, "assettransfer_state_reads_total", "counter", "getState calls that reached the peer.");
+        sorted.forEach((name, s) -> sample(out, "assettransfer_state_reads_total", name, s.stateReads.sum()));
+        header(out, "assettransfer_state_read_bytes_total", "counter", "Bytes returned by getState and range scans.");
+        sorted.forEach((name, s) -> sample(out, "assettransfer_state_read_bytes_total", name, s.bytesRead.sum()));
+        header(out, "assettransfer_state_writes_total", "counter", "putState and delState calls sent to the peer.");
+        sorted.forEach((name, s) -> sample(out, "assettransfer_state_writes_total", name, s.stateWrites.sum()));
+        header(out, "assettransfer_state_written_bytes_total", "counter", "Key and value bytes written.");
+        sorted.forEach((name, s) -> sample(out, "assettransfer_state_written_bytes_total", name, s.bytesWritten.sum()));
+        header(out, "assettransfer_state_write_size_bytes", "histogram", "Size of each key and value written.");
+        sorted.forEach((name, s) -> s.writeSize.write(out, "assettransfer_state_write_size_bytes", name));
+        header(out, "assettransfer_range_rows_total", "counter", "Rows iterated from range, composite-key and rich queries.");
+        sorted.forEach((name, s) -> sample(out, "assettransfer_range_rows_total", name, s.rangeRows.sum()));
+        header(out, "assettransfer_serialization_seconds_total", "counter", "Time spent encoding and decoding ledger values.");
+        sorted.forEach((name, s) -> sample(out, "assettransfer_serialization_seconds_total", name, s.serializationNanos.sum() / 1e9));
+
+        TaskMetricsCollector tasks = taskMetrics;
+        if (tasks != null) {
+            gauge(out, "assettransfer_shim_pool_active_threads", "Threads of the shim executor running a transaction.", tasks.getActiveCount());
+            gauge(out, "assettransfer_shim_pool_threads", "Current size of the shim executor.", tasks.getPoolSize());
+            gauge(out, "assettransfer_shim_pool_queued_tasks", "Transactions waiting for a shim thread.", tasks.getCurrentQueueCount());
+        }
+        return out.toString();
+    }
+
+    private Series series(final String transaction) {
+        return series.computeIfAbsent(transaction, name -> new Series());
+    }
+
+    private static void header(final StringBuilder out, final String metric, final String type, final String help) {
+        out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(metric).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(final StringBuilder out, final String metric, final String transaction, final double value) {
+        out.append(metric).append("{transaction=\"").append(escape(transaction)).append("\"} ").append(format(value)).append('\n');
+    }
+
+    // Label values are bounded by TransactionMetrics, escaping keeps the exposition well-formed regardless
+    private static String escape(final String label) {
+        return label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static void gauge(final StringBuilder out, final String metric, final String help, final int value) {
+        header(out, metric, "gauge", help);
+        out.append(metric).append(' ').append(value).append('\n');
+    }
+
+    private static String format(final double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value) ? Long.toString((long) value) : String.format(Locale.ROOT, "%.9g", value);
+    }
+
+    private static final class Series {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final Histogram duration = new Histogram(DURATION_BUCKETS);
+        private final LongAdder stateReads = new LongAdder();
+        private final LongAdder bytesRead = new LongAdder();
+        private final LongAdder stateWrites = new LongAdder();
+        private final LongAdder bytesWritten = new LongAdder();
+        private final Histogram writeSize = new Histogram(WRITE_SIZE_BUCKETS);
+        private final LongAdder rangeRows = new LongAdder();
+        private final LongAdder serializationNanos = new LongAdder();
+    }
+
+    private static final class Histogram {
+        private final double[] bounds;
+        // buckets[i] counts observations <= bounds[i]; the last one is +Inf
+        private final LongAdder[] buckets;
+        private final LongAdder count = new LongAdder();
+        private final DoubleAdder sum = new DoubleAdder();
+
+        Histogram(final double[] bounds) {
+            this.bounds = bounds;
+            this.buckets = new LongAdder[bounds.length + 1];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void observe(final double value) {
+            int i = 0;
+            while (i < bounds.length && value > bounds[i]) {
+                i++;
+            }
+            buckets[i].increment();
+            count.increment();
+            sum.add(value);
+        }
+
+        void write(final StringBuilder out, final String metric, final String transaction) {
+            long cumulative = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulative += buckets[i].sum();
+                String le = i < bounds.length ? format(bounds[i]) : "+Inf";
+                out.append(metric).append("_bucket{transaction=\"").append(escape(transaction)).append("\",le=\"").append(le).append("\"} ")
+                        .append(cumulative).append('\n');
+            }
+            sample(out, metric + "_sum", transaction, sum.sum());
+            sample(out, metric + "_count", transaction, count.sum());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.Genson;
+
+/**
+ * Encoding of entities as ledger values. Every codec reads JSON values, so switching
+ * codecs never requires rewriting existing state.
+ */
+interface ValueCodec {
+    // Chaincode environment variable selecting the codec: "json" (default) or "binary"
+    String ENVIRONMENT_VARIABLE = "DATAASSET_VALUE_CODEC";
+
+    byte[] encode(Object entity);
+
+    <T> T decode(byte[] value, Class<T> clazz);
+
+    // Canonical JSON of an entity that has just been encoded to value
+    String toJson(Object entity, byte[] value);
+
+    // Appends value to writer as one JSON element
+    void writeJson(byte[] value, JsonResponseWriter writer);
+
+    // Appends the selected properties of value to writer as one JSON object
+    void writeJson(byte[] value, JsonResponseWriter writer, FieldProjection fields);
+
+    static ValueCodec forName(final String name, final Genson genson) {
+        if (name == null || name.isEmpty() || "json".equalsIgnoreCase(name)) {
+            return new JsonValueCodec(genson);
+        }
+        if ("binary".equalsIgnoreCase(name)) {
+            return new BinaryValueCodec(genson);
+        }
+        throw new IllegalArgumentException(String.format("Unknown value codec %s", name));
+    }
+}
@@ -0,0 +1,119 @@
+package org.canisminor.assettransfer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class AccessPolicyTest {
+    @Test
+    void blankPoliciesPermitEveryDepartment() {
+        assertTrue(AccessPolicy.compile((String) null).permits(AccessPolicy.parseAttributes("")));
+        assertTrue(AccessPolicy.compile("  ").permits(AccessPolicy.parseAttributes("level:low")));
+    }
+
+    @Test
+    void evaluatesOperatorsWithPrecedence() {
+        AccessPolicy policy = AccessPolicy.compile("level:high OR region:east AND NOT role:guest");
+
+        assertTrue(policy.permits(AccessPolicy.parseAttributes("level:high role:guest")));
+        assertTrue(policy.permits(AccessPolicy.parseAttributes("region:east")));
+        assertFalse(policy.permits(AccessPolicy.parseAttributes("region:east,role:guest")));
+        assertFalse(policy.permits(AccessPolicy.parseAttributes("level:low")));
+    }
+
+    @Test
+    void acceptsSymbolsAndParentheses() {
+        AccessPolicy policy = AccessPolicy.compile("(level:high || level:mid) && !region:*");
+
+        assertTrue(policy.permits(AccessPolicy.parseAttributes("level:mid")));
+        assertFalse(policy.permits(AccessPolicy.parseAttributes("level:mid;region:west")));
+        assertFalse(policy.permits(AccessPolicy.parseAttributes("region:west")));
+    }
+
+    @Test
+    void rejectsUnbalancedParentheses() {
+        IllegalArgumentException missing = assertThrows(IllegalArgumentException.class, () -> AccessPolicy.compile("(level:high AND region:east"));
+        IllegalArgumentException unexpected = assertThrows(IllegalArgumentException.class, () -> AccessPolicy.compile("level:high)"));
+
+        assertEquals("Policy \"(level:high AND region:east\": missing ')'", missing.getMessage());
+        assertEquals("Policy \"level:high)\": unexpected ')'", unexpected.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> AccessPolicy.compile("()"));
+    }
+
+    @Test
+    void rejectsUnknownOperators() {
+        IllegalArgumentException xor = assertThrows(IllegalArgumentException.class, () -> AccessPolicy.compile("level:high XOR region:east"));
+        IllegalArgumentException single = assertThrows(IllegalArgumentException.class, () -> AccessPolicy.compile("level:high & region:east"));
+
+        assertEquals("Policy \"level:high XOR region:east\": unexpected 'XOR'", xor.getMessage());
+        assertEquals("Policy \"level:high & region:east\": unexpected '&'", single.getMessage());
+    }
+
+    @Test
+    void rejectsMalformedPredicates() {
+        assertThrows(IllegalArgumentException.class, () -> AccessPolicy.compile("level"));
+        assertThrows(IllegalArgumentException.class, () -> AccessPolicy.compile(":high"));
+        assertThrows(IllegalArgumentException.class, () -> AccessPolicy.compile("level:"));
+        assertThrows(IllegalArgumentException.class, () -> AccessPolicy.compile("level:high AND"));
+        assertThrows(IllegalArgumentException.class, () -> AccessPolicy.compile("NOT"));
+    }
+
+    @Test
+    void skipsMalformedAttributeItems() {
+        assertEquals(Arrays.asList("level:high", "region:east"), Arrays.asList(AccessPolicy.attributeItems(" level:high,,bad :x region:east level:high ").toArray()));
+    }
+
+    @Test
+    void bitPoliciesAgreeWithEvaluation() {
+        String[] items = {"level:high", "level:low", "region:east", "region:west", "role:guest"};
+        // role:guest has no code
+        Map<String, Integer> codes = new HashMap<>();
+        for (int i = 0; i < 4; i++) {
+            codes.put(items[i], i);
+        }
+        AccessPolicy.Codes dictionary = new AccessPolicy.Codes() {
+            @Override
+            public Integer code(final String item) {
+                return codes.get(item);
+            }
+
+            @Override
+            public BitSet keyCodes(final String key) {
+                BitSet keyCodes = new BitSet();
+                codes.forEach((item, code) -> {
+                    if (item.startsWith(key + ":")) {
+                        keyCodes.set(code);
+                    }
+                });
+                return keyCodes;
+            }
+        };
+
+        String[] policies = {"", "level:high AND region:east", "level:high AND NOT region:west", "level:* AND NOT region:*",
+            "(level:high OR region:east) AND NOT level:low", "role:guest", "NOT role:guest", "level:high AND role:guest", "region:* OR role:guest"};
+        for (String source : policies) {
+            AccessPolicy policy = AccessPolicy.compile(source);
+            AccessPolicy.BitPolicy bitPolicy = policy.compile(dictionary);
+            for (int set = 0; set < 16; set++) {
+                StringJoiner attribute = new StringJoiner(",");
+                BitSet bits = new BitSet();
+                for (int i = 0; i < 4; i++) {
+                    if ((set & (1 << i)) != 0) {
+                        attribute.add(items[i]);
+                        bits.set(i);
+                    }
+                }
+                assertEquals(policy.permits(AccessPolicy.parseAttributes(attribute.toString())), bitPolicy.permits(bits), source + " on " + attribute);
+            }
+        }
+    }
+}
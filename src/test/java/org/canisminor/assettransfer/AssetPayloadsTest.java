@@ -0,0 +1,87 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class AssetPayloadsTest {
+    private static final String SPLIT = "split";
+
+    @Test
+    void storesThePayloadApartAndReadsPutItBack() {
+        ContractLedger split = populate(new ContractLedger(AssetPayloads.ENVIRONMENT_VARIABLE, SPLIT));
+
+        assertFalse(state(split, "DataAsset1").contains("cid1"));
+        assertTrue(state(split, payloadKey(split, "DataAsset1")).contains("cid1"));
+
+        DataAsset dataAsset = split.evaluate(ctx -> split.contract.ReadDataAsset(ctx, "DataAsset1"));
+        assertEquals(Arrays.asList("cid1", "aesKey1"), Arrays.asList(dataAsset.getCid(), dataAsset.getAesKey()));
+        String fields = split.evaluate(ctx -> split.contract.ReadEntityFields(ctx, "DataAsset", "DataAsset1", "id,cid"));
+        assertEquals("cid1", new JSONObject(fields).getString("cid"));
+    }
+
+    @Test
+    void listingsReturnTheMetadataRecords() {
+        ContractLedger split = populate(new ContractLedger(AssetPayloads.ENVIRONMENT_VARIABLE, SPLIT));
+
+        String listing = split.evaluate(ctx -> split.contract.GetAllDataAsset(ctx));
+        JSONObject listed = new JSONArray(listing).getJSONObject(0);
+        assertEquals("Data asset 1", listed.getString("name"));
+        assertTrue(listed.isNull("cid"));
+        assertTrue(listed.isNull("aesKey"));
+
+        String projected = split.evaluate(ctx -> split.contract.GetAllEntityFields(ctx, "DataAsset", "id,name"));
+        assertEquals(Arrays.asList("DataAsset1", "DataAsset2"), ContractLedger.ids(projected));
+    }
+
+    @Test
+    void listingsRejectPayloadFields() {
+        ContractLedger split = populate(new ContractLedger(AssetPayloads.ENVIRONMENT_VARIABLE, SPLIT));
+
+        assertThrows(ChaincodeException.class, () -> split.evaluate(ctx -> split.contract.GetAllEntityFields(ctx, "DataAsset", "id,cid")));
+        assertThrows(ChaincodeException.class,
+                () -> split.evaluate(ctx -> split.contract.GetAllEntityFieldsWithPagination(ctx, "DataAsset", "id,aesKey", 10, "")));
+    }
+
+    @Test
+    void payloadsMigrationSplitsRecordsWrittenInline() {
+        ContractLedger inline = populate(new ContractLedger());
+        assertTrue(state(inline, "DataAsset1").contains("cid1"));
+        assertThrows(ChaincodeException.class, () -> inline.submit(ctx -> inline.contract.MigrateChunk(ctx, "payloads:DataAsset", 10)));
+
+        ContractLedger split = inline.upgrade(AssetPayloads.ENVIRONMENT_VARIABLE, SPLIT);
+        // Records written inline are read as they are
+        assertEquals("cid1", split.evaluate(ctx -> split.contract.ReadDataAsset(ctx, "DataAsset1")).getCid());
+
+        assertTrue(split.submit(ctx -> split.contract.MigrateChunk(ctx, "payloads:DataAsset", 10)).isDone());
+
+        for (int n = 1; n <= 2; n++) {
+            String id = "DataAsset" + n;
+            assertFalse(state(split, id).contains("aesKey" + n), id);
+            assertEquals("cid" + n, split.evaluate(ctx -> split.contract.ReadDataAsset(ctx, id)).getCid());
+        }
+    }
+
+    private static ContractLedger populate(final ContractLedger ledger) {
+        ledger.department(1, "role:hospital");
+        ledger.dataAsset(1, "Department1", "Beijing", "medical");
+        ledger.dataAsset(2, "Department1", "Shanghai", "finance");
+        return ledger;
+    }
+
+    private static String payloadKey(final ContractLedger ledger, final String id) {
+        return AssetPayloads.key(ledger.ledger.newTransaction(), id);
+    }
+
+    private static String state(final ContractLedger ledger, final String key) {
+        return ledger.ledger.newTransaction().getStringState(key);
+    }
+}
@@ -0,0 +1,80 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class AttributeIndexTest {
+    private final ContractLedger ledger = new ContractLedger();
+
+    @BeforeEach
+    void populate() {
+        ledger.department(1, "role:hospital region:east");
+        ledger.department(2, "role:hospital region:west");
+        ledger.department(3, "role:school region:east");
+    }
+
+    @Test
+    void findsDepartmentsByOneItem() {
+        assertEquals(Arrays.asList("Department1", "Department2"), byAttribute("role:hospital"));
+        assertEquals(Arrays.asList("Department1", "Department3"), byAttribute("region:east"));
+        assertEquals(Collections.emptyList(), byAttribute("role:bank"));
+    }
+
+    @Test
+    void intersectsThePostingsOfSeveralItems() {
+        assertEquals(Collections.singletonList("Department1"), byAttributes("role:hospital region:east"));
+        assertEquals(Collections.emptyList(), byAttributes("role:school region:west"));
+    }
+
+    @Test
+    void movesPostingsWhenTheAttributeChanges() {
+        ledger.submit(ctx -> ledger.contract.UpdateDepartmentAttribute(ctx, "Department1", "role:school region:east"));
+
+        assertEquals(Collections.singletonList("Department2"), byAttribute("role:hospital"));
+        assertEquals(Arrays.asList("Department1", "Department3"), byAttribute("role:school"));
+        assertEquals(Arrays.asList("Department1", "Department3"), byAttributes("role:school region:east"));
+        assertEquals("role:school region:east", ledger.evaluate(ctx -> ledger.contract.ReadDepartment(ctx, "Department1")).getAttribute());
+    }
+
+    @Test
+    void dropsEveryPostingWhenTheAttributeIsCleared() {
+        ledger.submit(ctx -> ledger.contract.UpdateDepartmentAttribute(ctx, "Department2", null));
+
+        assertEquals(Collections.singletonList("Department1"), byAttribute("role:hospital"));
+        assertEquals(Collections.emptyList(), byAttribute("region:west"));
+    }
+
+    @Test
+    void rebuildsLostPostings() {
+        InMemoryChaincodeStub forget = ledger.ledger.newTransaction();
+        try (QueryResultsIterator<KeyValue> postings = forget.getStateByPartialCompositeKey(forget.createCompositeKey(IndexKeys.ATTRIBUTE_DEPARTMENT))) {
+            postings.forEach(posting -> forget.delState(posting.getKey()));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        ledger.ledger.commit(forget);
+        assertTrue(byAttribute("role:hospital").isEmpty());
+
+        assertEquals(3, (long) ledger.submit(ctx -> ledger.contract.RebuildAttributeIndex(ctx)));
+
+        assertEquals(Arrays.asList("Department1", "Department2"), byAttribute("role:hospital"));
+        assertEquals(Collections.singletonList("Department3"), byAttributes("role:school region:east"));
+    }
+
+    private List<String> byAttribute(final String item) {
+        return ContractLedger.ids(ledger.evaluate(ctx -> ledger.contract.GetDepartmentsByAttribute(ctx, item, 100, "")));
+    }
+
+    private List<String> byAttributes(final String items) {
+        return ContractLedger.ids(ledger.evaluate(ctx -> ledger.contract.GetDepartmentsByAttributes(ctx, items, 100, "")));
+    }
+}
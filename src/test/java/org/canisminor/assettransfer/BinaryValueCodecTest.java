@@ -0,0 +1,134 @@
+package org.canisminor.assettransfer;
+
+import com.owlike.genson.Genson;
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class BinaryValueCodecTest {
+    private final Genson genson = EntityConverters.newGenson();
+    private final BinaryValueCodec codec = new BinaryValueCodec(genson);
+
+    private final DataAsset dataAsset = new DataAsset("DataAsset1", "数据集", "Department1", "level:high AND NOT region:west",
+            "east", "finance", "Qm\"cid\\", null, -7);
+
+    @Test
+    void roundTripsEveryProperty() {
+        byte[] value = codec.encode(dataAsset);
+
+        assertTrue(BinaryValueCodec.isBinary(value));
+        assertEquals(dataAsset, codec.decode(value, DataAsset.class));
+    }
+
+    @Test
+    void roundTripsLargeIntsAndLongStrings() {
+        char[] name = new char[300];
+        Arrays.fill(name, 'n');
+        DBAssetOrder order = new DBAssetOrder("DBAssetOrder1", "DBAsset1", "Department1", new String(name));
+        DataAssetOrder status = new DataAssetOrder("DataAssetOrder1", "DataAsset1", "Department1", Integer.MIN_VALUE);
+
+        assertEquals(order, codec.decode(codec.encode(order), DBAssetOrder.class));
+        assertEquals(status, codec.decode(codec.encode(status), DataAssetOrder.class));
+    }
+
+    @Test
+    void readsJsonValues() {
+        byte[] value = genson.serialize(dataAsset).getBytes(StandardCharsets.UTF_8);
+
+        assertFalse(BinaryValueCodec.isBinary(value));
+        assertEquals(dataAsset, codec.decode(value, DataAsset.class));
+    }
+
+    @Test
+    void rejectsAnotherType() {
+        byte[] value = codec.encode(dataAsset);
+
+        assertThrows(ChaincodeException.class, () -> codec.decode(value, DBAsset.class));
+    }
+
+    @Test
+    void rejectsTruncatedValues() {
+        byte[] value = codec.encode(dataAsset);
+
+        for (int length = 4; length < value.length; length++) {
+            byte[] truncated = Arrays.copyOf(value, length);
+            assertThrows(ChaincodeException.class, () -> codec.decode(truncated, DataAsset.class));
+        }
+    }
+
+    @Test
+    void rejectsTruncatedVarints() {
+        // Tag 1 is Department; a varint whose continuation bit is set on the last byte
+        byte[] value = {BinaryValueCodec.MAGIC, BinaryValueCodec.VERSION, 1, (byte) 0x85};
+
+        ChaincodeException e = assertThrows(ChaincodeException.class, () -> codec.decode(value, Department.class));
+        assertEquals("Truncated binary ledger value", e.getMessage());
+    }
+
+    @Test
+    void rejectsOverlongVarints() {
+        byte[] value = {BinaryValueCodec.MAGIC, BinaryValueCodec.VERSION, 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0};
+
+        ChaincodeException e = assertThrows(ChaincodeException.class, () -> codec.decode(value, Department.class));
+        assertEquals("Malformed varint in binary ledger value", e.getMessage());
+    }
+
+    @Test
+    void rejectsNewerVersionsAndUnknownTags() {
+        byte[] newer = {BinaryValueCodec.MAGIC, BinaryValueCodec.VERSION + 1, 1, 0, 0, 0};
+        byte[] unknown = {BinaryValueCodec.MAGIC, BinaryValueCodec.VERSION, 99, 0, 0, 0};
+
+        assertThrows(ChaincodeException.class, () -> codec.decode(newer, Department.class));
+        assertThrows(ChaincodeException.class, () -> codec.decode(unknown, Department.class));
+    }
+
+    @Test
+    void comparesVersionsUnsigned() {
+        byte[] value = codec.encode(new Department("Department1", "name", "level:high"));
+        value[1] = (byte) 0x81;
+        byte[] zero = value.clone();
+        zero[1] = 0;
+
+        ChaincodeException e = assertThrows(ChaincodeException.class, () -> codec.decode(value, Department.class));
+        assertEquals("Ledger value has binary format version 129, supported are 1 to 1", e.getMessage());
+        assertThrows(ChaincodeException.class, () -> codec.decode(zero, Department.class));
+    }
+
+    @Test
+    void writesTheSameJsonAsGenson() {
+        JsonResponseWriter writer = new JsonResponseWriter();
+        codec.writeJson(codec.encode(dataAsset), writer);
+
+        assertEquals(genson.serialize(dataAsset), writer.toString());
+    }
+
+    @Test
+    void writesProjectionsInAlphabeticalOrder() {
+        JsonResponseWriter writer = new JsonResponseWriter();
+        codec.writeJson(codec.encode(dataAsset), writer, FieldProjection.parse(DataAsset.class, "name,encType,cid,aesKey"));
+
+        assertEquals("{\"aesKey\":null,\"cid\":\"Qm\\\"cid\\\\\",\"encType\":-7,\"name\":\"数据集\"}", writer.toString());
+    }
+
+    @Test
+    void projectsJsonValuesToo() {
+        byte[] value = ("{\"aesKey\":null,\"cid\":\"Qm\\\"cid\\\\\",\"encType\":-7,\"field\":\"finance\",\"id\":\"DataAsset1\","
+                + "\"location\":\"east\",\"name\":\"数据集\",\"ownerId\":\"Department1\",\"policy\":\"level:high AND NOT region:west\"}").getBytes(StandardCharsets.UTF_8);
+        FieldProjection fields = FieldProjection.parse(DataAsset.class, "id,location");
+
+        JsonResponseWriter fromJson = new JsonResponseWriter();
+        codec.writeJson(value, fromJson, fields);
+        JsonResponseWriter fromBinary = new JsonResponseWriter();
+        codec.writeJson(codec.encode(dataAsset), fromBinary, fields);
+
+        assertEquals("{\"id\":\"DataAsset1\",\"location\":\"east\"}", fromBinary.toString());
+        assertEquals(fromBinary.toString(), fromJson.toString());
+    }
+}
@@ -0,0 +1,77 @@
+package org.canisminor.assettransfer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+final class CachingChaincodeStubTest {
+    private final InMemoryLedger ledger = new InMemoryLedger();
+
+    @BeforeEach
+    void populate() {
+        InMemoryChaincodeStub stub = ledger.newTransaction();
+        stub.putStringState("a", "1");
+        stub.putStringState("b", "1");
+        assertEquals(InMemoryLedger.ValidationCode.VALID, ledger.commit(stub));
+    }
+
+    @Test
+    void readsAfterAPutOrADeleteSeeThePendingValue() {
+        InMemoryChaincodeStub peer = ledger.newTransaction();
+        CachingChaincodeStub stub = new CachingChaincodeStub(peer);
+
+        stub.putStringState("a", "2");
+        stub.delState("b");
+
+        assertEquals("2", stub.getStringState("a"));
+        assertEquals("", stub.getStringState("b"));
+        // Nothing reaches the peer before the flush
+        assertEquals(0, peer.getWrites().size());
+    }
+
+    @Test
+    void flushSendsPutsAndDeletesToThePeer() {
+        InMemoryChaincodeStub peer = ledger.newTransaction();
+        CachingChaincodeStub stub = new CachingChaincodeStub(peer);
+
+        stub.putStringState("a", "2");
+        stub.delState("b");
+        // A blind delete of a key that was never written is an ordinary write
+        stub.delState("c");
+        stub.flush();
+
+        assertEquals(InMemoryLedger.ValidationCode.VALID, ledger.commit(peer));
+        InMemoryChaincodeStub after = ledger.newTransaction();
+        assertEquals("2", after.getStringState("a"));
+        assertEquals("", after.getStringState("b"));
+        assertEquals("", after.getStringState("c"));
+    }
+
+    @Test
+    void aPutAfterADeleteWins() {
+        InMemoryChaincodeStub peer = ledger.newTransaction();
+        CachingChaincodeStub stub = new CachingChaincodeStub(peer);
+
+        stub.delState("a");
+        stub.putStringState("a", "3");
+        assertEquals("3", stub.getStringState("a"));
+        stub.flush();
+
+        assertEquals(InMemoryLedger.ValidationCode.VALID, ledger.commit(peer));
+        assertEquals("3", ledger.newTransaction().getStringState("a"));
+    }
+
+    @Test
+    void readsAKeyFromThePeerOnce() {
+        CachingChaincodeStub stub = new CachingChaincodeStub(ledger.newTransaction());
+        assertEquals("1", stub.getStringState("a"));
+
+        InMemoryChaincodeStub other = ledger.newTransaction();
+        other.putStringState("a", "4");
+        assertEquals(InMemoryLedger.ValidationCode.VALID, ledger.commit(other));
+
+        // The transaction keeps the value it read, as its read set does
+        assertEquals("1", stub.getStringState("a"));
+    }
+}
@@ -0,0 +1,117 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.contract.Context;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * An AssetTransfer contract, in the modes given as environment variable and value pairs, over an
+ * in-memory ledger. Each call is one proposal with the lifecycle the shim gives it: a fresh stub and
+ * Context, beforeTransaction, the transaction and afterTransaction. Each proposal is timestamped a
+ * millisecond after the one before.
+ */
+final class ContractLedger {
+    final InMemoryLedger ledger;
+    final AssetTransfer contract;
+
+    ContractLedger(final String... environment) {
+        this(new InMemoryLedger(new TickingClock()), environment);
+    }
+
+    private ContractLedger(final InMemoryLedger ledger, final String... environment) {
+        this.ledger = ledger;
+        Map<String, String> variables = new HashMap<>();
+        for (int i = 0; i < environment.length; i += 2) {
+            variables.put(environment[i], environment[i + 1]);
+        }
+        contract = new AssetTransfer(variables::get);
+    }
+
+    // The same ledger under a contract in other modes, as after the chaincode is upgraded with a new environment
+    ContractLedger upgrade(final String... environment) {
+        return new ContractLedger(ledger, environment);
+    }
+
+    // Runs a transaction and commits it on its own
+    <T> T submit(final Function<Context, T> transaction) {
+        InMemoryChaincodeStub stub = ledger.newTransaction();
+        T result = run(stub, transaction);
+        InMemoryLedger.ValidationCode code = ledger.commit(stub);
+        if (code != InMemoryLedger.ValidationCode.VALID) {
+            throw new IllegalStateException(String.format("Transaction %s was invalidated: %s", stub.getTxId(), code));
+        }
+        return result;
+    }
+
+    // Runs a transaction without committing it, to commit it later in a block with others
+    InMemoryChaincodeStub endorse(final Function<Context, ?> transaction) {
+        InMemoryChaincodeStub stub = ledger.newTransaction();
+        run(stub, transaction);
+        return stub;
+    }
+
+    <T> T evaluate(final Function<Context, T> transaction) {
+        return run(ledger.newTransaction(), transaction);
+    }
+
+    Department department(final int n, final String attribute) {
+        return submit(ctx -> contract.CreateDepartment(ctx, "Department" + n, "Department " + n, attribute));
+    }
+
+    DataAsset dataAsset(final int n, final String ownerId, final String location, final String field) {
+        return submit(ctx -> contract.CreateDataAsset(ctx, "DataAsset" + n, "Data asset " + n, ownerId, "",
+                location, field, "cid" + n, "aesKey" + n, 1));
+    }
+
+    DataAssetOrder dataAssetOrder(final int n, final String dataAssetId, final String applicantId, final int status) {
+        return submit(ctx -> contract.CreateDataAssetOrder(ctx, "DataAssetOrder" + n, dataAssetId, applicantId, status));
+    }
+
+    // The ids of the records of a page or listing, in order
+    static List<String> ids(final String json) {
+        JSONArray records = json.startsWith("[") ? new JSONArray(json) : new JSONObject(json).getJSONArray("records");
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < records.length(); i++) {
+            ids.add(records.getJSONObject(i).getString("id"));
+        }
+        return ids;
+    }
+
+    private <T> T run(final InMemoryChaincodeStub stub, final Function<Context, T> transaction) {
+        Context ctx = contract.createContext(stub);
+        contract.beforeTransaction(ctx);
+        T result = transaction.apply(ctx);
+        contract.afterTransaction(ctx, result);
+        return result;
+    }
+
+    private static final class TickingClock extends Clock {
+        private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            now = now.plusMillis(1);
+            return now;
+        }
+    }
+}
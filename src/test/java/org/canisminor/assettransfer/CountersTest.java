@@ -0,0 +1,114 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class CountersTest {
+    private final ContractLedger ledger = new ContractLedger();
+
+    @Test
+    void countsByTypeDepartmentAndStatus() {
+        ledger.department(1, "role:hospital");
+        ledger.department(2, "role:hospital");
+        for (int i = 0; i < 5; i++) {
+            ledger.dataAsset(i, i < 3 ? "Department1" : "Department2", "Beijing", "medical");
+        }
+        ledger.dataAssetOrder(1, "DataAsset0", "Department2", 0);
+        ledger.dataAssetOrder(2, "DataAsset1", "Department2", 1);
+        ledger.submit(ctx -> ledger.contract.UpdateDataAssetOrderStatus(ctx, "DataAssetOrder1", 1));
+
+        assertEquals(2, (long) ledger.evaluate(ctx -> ledger.contract.CountEntities(ctx, "Department")));
+        assertEquals(5, (long) ledger.evaluate(ctx -> ledger.contract.CountEntities(ctx, "DataAsset")));
+        assertEquals(3, (long) ledger.evaluate(ctx -> ledger.contract.CountEntitiesByDepartment(ctx, "DataAsset", "Department1")));
+        assertEquals(2, (long) ledger.evaluate(ctx -> ledger.contract.CountEntitiesByDepartment(ctx, "DataAssetOrder", "Department2")));
+        assertEquals(0, (long) ledger.evaluate(ctx -> ledger.contract.CountEntitiesByStatus(ctx, "DataAssetOrder", 0)));
+        assertEquals(2, (long) ledger.evaluate(ctx -> ledger.contract.CountEntitiesByStatus(ctx, "DataAssetOrder", 1)));
+    }
+
+    @Test
+    void countsDeletes() {
+        ledger.submit(ctx -> ledger.contract.CreateAttributeItem(ctx, "AttributeItem1", "role:hospital"));
+        ledger.submit(ctx -> ledger.contract.CreateAttributeItem(ctx, "AttributeItem2", "region:east"));
+        ledger.submit(ctx -> ledger.contract.DeleteAttributeItem(ctx, "AttributeItem1"));
+
+        assertEquals(1, (long) ledger.evaluate(ctx -> ledger.contract.CountEntities(ctx, "AttributeItem")));
+    }
+
+    @Test
+    void keepsEachCounterToAFixedNumberOfKeys() {
+        for (int i = 0; i < 3 * Counters.SHARDS; i++) {
+            ledger.department(i, "role:hospital");
+        }
+
+        List<KeyValue> shards = counterKeys("Department", Counters.ALL);
+        assertTrue(shards.size() <= Counters.SHARDS, shards.size() + " keys");
+        assertEquals(3 * Counters.SHARDS, (long) ledger.evaluate(ctx -> ledger.contract.CountEntities(ctx, "Department")));
+    }
+
+    @Test
+    void concurrentCreatesConflictOnlyOnASharedShard() {
+        List<InMemoryChaincodeStub> block = new ArrayList<>();
+        for (int i = 0; i < Counters.SHARDS; i++) {
+            int n = i;
+            block.add(ledger.endorse(ctx -> ledger.contract.CreateDepartment(ctx, "Department" + n, "Department " + n, "role:hospital")));
+        }
+
+        long valid = ledger.ledger.commitBlock(block).stream().filter(code -> code == InMemoryLedger.ValidationCode.VALID).count();
+
+        assertTrue(valid > 1, valid + " valid");
+        assertEquals(valid, (long) ledger.evaluate(ctx -> ledger.contract.CountEntities(ctx, "Department")));
+    }
+
+    @Test
+    void countersMigrationSeedsALedgerWrittenBeforeCounting() {
+        ledger.department(1, "role:hospital");
+        ledger.department(2, "role:hospital");
+        for (int i = 0; i < 7; i++) {
+            ledger.dataAsset(i, i % 2 == 0 ? "Department1" : "Department2", "Beijing", "medical");
+        }
+        InMemoryChaincodeStub forget = ledger.ledger.newTransaction();
+        for (KeyValue counter : counterKeys("DataAsset")) {
+            forget.delState(counter.getKey());
+        }
+        ledger.ledger.commit(forget);
+        assertEquals(0, (long) ledger.evaluate(ctx -> ledger.contract.CountEntities(ctx, "DataAsset")));
+
+        migrate("counters:DataAsset");
+        assertEquals(7, (long) ledger.evaluate(ctx -> ledger.contract.CountEntities(ctx, "DataAsset")));
+        assertEquals(4, (long) ledger.evaluate(ctx -> ledger.contract.CountEntitiesByDepartment(ctx, "DataAsset", "Department1")));
+        assertEquals(3, (long) ledger.evaluate(ctx -> ledger.contract.CountEntitiesByDepartment(ctx, "DataAsset", "Department2")));
+
+        // Running it again recounts rather than adding to the counts
+        ledger.submit(ctx -> {
+            ledger.contract.ResetMigration(ctx, "counters:DataAsset");
+            return null;
+        });
+        migrate("counters:DataAsset");
+        assertEquals(7, (long) ledger.evaluate(ctx -> ledger.contract.CountEntities(ctx, "DataAsset")));
+    }
+
+    private void migrate(final String migration) {
+        MigrationProgress progress;
+        do {
+            progress = ledger.submit(ctx -> ledger.contract.MigrateChunk(ctx, migration, 3));
+        } while (!progress.isDone());
+    }
+
+    private List<KeyValue> counterKeys(final String... attributes) {
+        InMemoryChaincodeStub stub = ledger.ledger.newTransaction();
+        List<KeyValue> keys = new ArrayList<>();
+        try (QueryResultsIterator<KeyValue> results = stub.getStateByPartialCompositeKey(Counters.COUNTER, attributes)) {
+            results.forEach(keys::add);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,87 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class EntityKeysTest {
+    private static final String ORDERED_DATA_ASSET_10 = "DataAsset#00000000000000000010";
+
+    @Test
+    void listsNumericallyInTheOrderedLayout() {
+        ContractLedger ordered = new ContractLedger(EntityKeys.ENVIRONMENT_VARIABLE, "ordered");
+        populate(ordered);
+
+        assertEquals(Arrays.asList("DataAsset1", "DataAsset2", "DataAsset10"), ContractLedger.ids(ordered.evaluate(ctx -> ordered.contract.GetAllDataAsset(ctx))));
+        assertFalse(state(ordered, ORDERED_DATA_ASSET_10).isEmpty());
+        assertTrue(state(ordered, "DataAsset10").isEmpty());
+    }
+
+    @Test
+    void listsLexicographicallyInTheRawLayout() {
+        ContractLedger raw = new ContractLedger();
+        populate(raw);
+
+        assertEquals(Arrays.asList("DataAsset1", "DataAsset10", "DataAsset2"), ContractLedger.ids(raw.evaluate(ctx -> raw.contract.GetAllDataAsset(ctx))));
+        assertFalse(state(raw, "DataAsset10").isEmpty());
+    }
+
+    @Test
+    void readsAndRewritesEntitiesLeftAtTheirRawKey() {
+        ContractLedger raw = new ContractLedger();
+        populate(raw);
+        raw.dataAssetOrder(1, "DataAsset1", "Department1", 0);
+        ContractLedger ordered = raw.upgrade(EntityKeys.ENVIRONMENT_VARIABLE, "ordered");
+
+        assertEquals("DataAsset10", ordered.evaluate(ctx -> ordered.contract.ReadDataAsset(ctx, "DataAsset10")).getId());
+        assertEquals(Arrays.asList("DataAsset1", "DataAsset10", "DataAsset2"), ContractLedger.ids(ordered.evaluate(ctx -> ordered.contract.GetAllDataAsset(ctx))));
+
+        // A rewrite moves the entity to its ordered key
+        ordered.submit(ctx -> ordered.contract.UpdateDataAssetOrderStatus(ctx, "DataAssetOrder1", 1));
+        assertTrue(state(ordered, "DataAssetOrder1").isEmpty());
+        assertFalse(state(ordered, "DataAssetOrder#00000000000000000001").isEmpty());
+        assertEquals(1, ordered.evaluate(ctx -> ordered.contract.ReadDataAssetOrder(ctx, "DataAssetOrder1")).getStatus());
+    }
+
+    @Test
+    void keysMigrationMovesRawKeysInChunks() {
+        ContractLedger raw = new ContractLedger();
+        populate(raw);
+        ContractLedger ordered = raw.upgrade(EntityKeys.ENVIRONMENT_VARIABLE, "ordered");
+
+        MigrationProgress first = ordered.submit(ctx -> ordered.contract.MigrateChunk(ctx, "keys:DataAsset", 2));
+        assertEquals(2, first.getProcessed());
+        assertFalse(first.isDone());
+        MigrationProgress second = ordered.submit(ctx -> ordered.contract.MigrateChunk(ctx, "keys:DataAsset", 2));
+        assertEquals(3, second.getProcessed());
+        assertTrue(second.isDone());
+
+        assertEquals(Arrays.asList("DataAsset1", "DataAsset2", "DataAsset10"), ContractLedger.ids(ordered.evaluate(ctx -> ordered.contract.GetAllDataAsset(ctx))));
+        assertTrue(state(ordered, "DataAsset10").isEmpty());
+        assertFalse(state(ordered, ORDERED_DATA_ASSET_10).isEmpty());
+    }
+
+    @Test
+    void keysMigrationNeedsTheOrderedLayout() {
+        ContractLedger raw = new ContractLedger();
+
+        assertThrows(ChaincodeException.class, () -> raw.submit(ctx -> raw.contract.MigrateChunk(ctx, "keys:DataAsset", 2)));
+    }
+
+    private static void populate(final ContractLedger ledger) {
+        ledger.department(1, "role:hospital");
+        for (int n : new int[]{2, 10, 1}) {
+            ledger.dataAsset(n, "Department1", "Beijing", "medical");
+        }
+    }
+
+    private static String state(final ContractLedger ledger, final String key) {
+        return ledger.ledger.newTransaction().getStringState(key);
+    }
+}
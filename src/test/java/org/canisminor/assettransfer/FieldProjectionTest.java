@@ -0,0 +1,43 @@
+package org.canisminor.assettransfer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class FieldProjectionTest {
+    @Test
+    void blankListsSelectEveryProperty() {
+        assertSame(FieldProjection.ALL, FieldProjection.parse(DataAsset.class, null));
+        assertSame(FieldProjection.ALL, FieldProjection.parse(DataAsset.class, " "));
+        assertSame(FieldProjection.ALL, FieldProjection.parse(DataAsset.class, " , ,"));
+    }
+
+    @Test
+    void listsNamingEveryPropertySelectAll() {
+        assertSame(FieldProjection.ALL, FieldProjection.parse(Department.class, "attribute,name,id"));
+    }
+
+    @Test
+    void selectsTheNamedProperties() {
+        FieldProjection fields = FieldProjection.parse(DataAsset.class, " id, name ,location,,id");
+
+        assertFalse(fields.isAll());
+        assertTrue(fields.includes("id"));
+        assertTrue(fields.includes("name"));
+        assertTrue(fields.includes("location"));
+        assertFalse(fields.includes("cid"));
+        assertFalse(fields.includes("encType"));
+    }
+
+    @Test
+    void rejectsPropertiesOfOtherTypes() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> FieldProjection.parse(Department.class, "id,ownerId"));
+
+        assertEquals("Department has no property ownerId", e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> FieldProjection.parse(DataAsset.class, "Id"));
+    }
+}
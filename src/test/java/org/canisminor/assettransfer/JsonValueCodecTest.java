@@ -0,0 +1,56 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+final class JsonValueCodecTest {
+    private final JsonValueCodec codec = new JsonValueCodec(EntityConverters.newGenson());
+
+    private final FieldProjection idAndName = FieldProjection.parse(DataAsset.class, "id,name");
+
+    @Test
+    void copiesSelectedMembersByteForByte() {
+        String value = "{\"aesKey\":null,\"cid\":\"a\\\"b},\",\"encType\":-1,\"field\":\"x\",\"id\":\"DataAsset1\",\"name\":\"名\\u0041\"}";
+
+        assertEquals("{\"id\":\"DataAsset1\",\"name\":\"名\\u0041\"}", project(value, idAndName));
+    }
+
+    @Test
+    void skipsNestedValuesAndWhitespace() {
+        String value = " {\n \"extra\" : {\"a\":[1,{\"b\":\"]}\"}],\"c\":null} ,\"id\" :\t\"DataAsset1\" , \"more\":[[]], \"name\":\"n\" }\n";
+
+        assertEquals("{\"id\":\"DataAsset1\",\"name\":\"n\"}", project(value, idAndName));
+    }
+
+    @Test
+    void projectsEmptyObjects() {
+        assertEquals("{}", project("{ }", idAndName));
+        assertEquals("{}", project("{\"location\":\"east\"}", idAndName));
+    }
+
+    @Test
+    void writesFullValuesAsStored() {
+        String value = "{\"id\":\"DataAsset1\",\"name\":\"n\"}";
+
+        assertEquals(value, project(value, FieldProjection.ALL));
+    }
+
+    @Test
+    void rejectsMalformedValues() {
+        String[] malformed = {"", "[]", "{\"id\"}", "{\"id\":\"DataAsset1\"", "{\"id\":\"unterminated}", "{\"id\":{\"a\":1}", "{\"id\":1 \"name\":2}", "{id:1}"};
+        for (String value : malformed) {
+            assertThrows(ChaincodeException.class, () -> project(value, idAndName));
+        }
+    }
+
+    private String project(final String value, final FieldProjection fields) {
+        JsonResponseWriter writer = new JsonResponseWriter();
+        codec.writeJson(value.getBytes(StandardCharsets.UTF_8), writer, fields);
+        return writer.toString();
+    }
+}
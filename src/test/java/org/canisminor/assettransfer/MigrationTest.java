@@ -0,0 +1,98 @@
+package org.canisminor.assettransfer;
+
+import org.hyperledger.fabric.shim.ChaincodeException;
+import org.hyperledger.fabric.shim.ledger.KeyValue;
+import org.hyperledger.fabric.shim.ledger.QueryResultsIterator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+final class MigrationTest {
+    private final ContractLedger ledger = new ContractLedger();
+
+    @Test
+    void runsInChunksAfterTheStoredCursor() {
+        for (int i = 1; i <= 5; i++) {
+            ledger.department(i, "role:hospital");
+        }
+
+        MigrationProgress progress = chunk("attributes", 2);
+        assertEquals(Arrays.asList(2L, "Department2", false), Arrays.asList(progress.getProcessed(), progress.getCursor(), progress.isDone()));
+        progress = chunk("attributes", 2);
+        assertEquals(Arrays.asList(4L, "Department4", false), Arrays.asList(progress.getProcessed(), progress.getCursor(), progress.isDone()));
+        progress = chunk("attributes", 2);
+        assertEquals(Arrays.asList(5L, "Department5", true), Arrays.asList(progress.getProcessed(), progress.getCursor(), progress.isDone()));
+
+        // A finished migration stays finished until it is reset
+        assertEquals(progress, chunk("attributes", 2));
+        assertEquals(progress, ledger.evaluate(ctx -> ledger.contract.GetMigrationProgress(ctx, "attributes")));
+
+        ledger.submit(ctx -> {
+            ledger.contract.ResetMigration(ctx, "attributes");
+            return null;
+        });
+        assertEquals(2, chunk("attributes", 2).getProcessed());
+    }
+
+    @Test
+    void indexesJobBackfillsLostIndexEntries() {
+        ledger.department(1, "role:hospital");
+        ledger.department(2, "role:school");
+        ledger.dataAsset(1, "Department1", "Beijing", "medical");
+        ledger.dataAsset(2, "Department1", "Shanghai", "finance");
+        ledger.dataAssetOrder(1, "DataAsset1", "Department2", 0);
+        forget(IndexKeys.OWNER_TYPE_ASSET, IndexKeys.LOCATION_TYPE_ASSET, IndexKeys.FIELD_TYPE_ASSET, IndexKeys.APPLICANT_TYPE_ORDER, IndexKeys.ATTRIBUTE_DEPARTMENT);
+        assertTrue(byOwner("Department1").isEmpty());
+
+        for (String migration : new String[]{"indexes:DataAsset", "indexes:DataAssetOrder", "indexes:Department"}) {
+            MigrationProgress progress;
+            do {
+                progress = chunk(migration, 1);
+            } while (!progress.isDone());
+        }
+
+        assertEquals(Arrays.asList("DataAsset1", "DataAsset2"), byOwner("Department1"));
+        assertEquals(Collections.singletonList("DataAsset2"),
+                ContractLedger.ids(ledger.evaluate(ctx -> ledger.contract.SearchAssets(ctx, "Shanghai", "finance", "", 10, ""))));
+        assertEquals(Collections.singletonList("DataAssetOrder1"),
+                ContractLedger.ids(ledger.evaluate(ctx -> ledger.contract.GetOrdersByApplicant(ctx, "Department2", 10, ""))));
+        assertEquals(Collections.singletonList("Department2"),
+                ContractLedger.ids(ledger.evaluate(ctx -> ledger.contract.GetDepartmentsByAttribute(ctx, "role:school", 10, ""))));
+    }
+
+    @Test
+    void rejectsUnknownMigrationsAndTypesWithoutIndexes() {
+        assertThrows(ChaincodeException.class, () -> chunk("indexes:AttributeItem", 2));
+        assertThrows(ChaincodeException.class, () -> chunk("indexes", 2));
+        assertThrows(ChaincodeException.class, () -> chunk("reindex:DataAsset", 2));
+        assertFalse(ledger.evaluate(ctx -> ledger.contract.GetMigrationProgress(ctx, "indexes:AttributeItem")).isDone());
+    }
+
+    private MigrationProgress chunk(final String migration, final int chunkSize) {
+        return ledger.submit(ctx -> ledger.contract.MigrateChunk(ctx, migration, chunkSize));
+    }
+
+    private List<String> byOwner(final String ownerId) {
+        return ContractLedger.ids(ledger.evaluate(ctx -> ledger.contract.GetAssetsByOwner(ctx, ownerId, "", 10, "")));
+    }
+
+    // Deletes every entry of the indexes behind the contract's back
+    private void forget(final String... indexes) {
+        InMemoryChaincodeStub stub = ledger.ledger.newTransaction();
+        for (String index : indexes) {
+            try (QueryResultsIterator<KeyValue> entries = stub.getStateByPartialCompositeKey(stub.createCompositeKey(index))) {
+                entries.forEach(entry -> stub.delState(entry.getKey()));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        assertEquals(InMemoryLedger.ValidationCode.VALID, ledger.ledger.commit(stub));
+    }
+}
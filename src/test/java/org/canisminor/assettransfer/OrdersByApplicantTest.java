@@ -0,0 +1,62 @@
+package org.canisminor.assettransfer;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+final class OrdersByApplicantTest {
+    private final ContractLedger ledger = new ContractLedger();
+
+    @BeforeEach
+    void populate() {
+        ledger.department(1, "role:hospital");
+        ledger.department(2, "role:hospital");
+        ledger.dataAsset(1, "Department1", "Beijing", "medical");
+        ledger.dataAssetOrder(1, "DataAsset1", "Department2", 0);
+        ledger.dataAssetOrder(2, "DataAsset1", "Department1", 0);
+        ledger.dataAssetOrder(3, "DataAsset1", "Department2", 0);
+        ledger.submit(ctx -> ledger.contract.CreateDBAsset(ctx, "DBAsset1", "DB asset", "Department1", "", "Beijing", "medical",
+                "jdbcUrl", "username", "password", "aesKey", 1));
+        ledger.submit(ctx -> ledger.contract.CreateDBAssetOrder(ctx, "DBAssetOrder1", "DBAsset1", "Department2", "SELECT 1"));
+    }
+
+    @Test
+    void listsTheOrdersOfEveryTypeOfOneApplicant() {
+        String page = ledger.evaluate(ctx -> ledger.contract.GetOrdersByApplicant(ctx, "Department2", 10, ""));
+
+        assertEquals(Arrays.asList("DBAssetOrder1", "DataAssetOrder1", "DataAssetOrder3"), ContractLedger.ids(page));
+        assertEquals(Collections.singletonList("DataAssetOrder2"),
+                ContractLedger.ids(ledger.evaluate(ctx -> ledger.contract.GetOrdersByApplicant(ctx, "Department1", 10, ""))));
+    }
+
+    @Test
+    void pagesThroughTheIndex() {
+        List<String> ids = new ArrayList<>();
+        String bookmark = "";
+        do {
+            String current = bookmark;
+            String page = ledger.evaluate(ctx -> ledger.contract.GetOrdersByApplicant(ctx, "Department2", 2, current));
+            ids.addAll(ContractLedger.ids(page));
+            bookmark = new JSONObject(page).getString("bookmark");
+        } while (!bookmark.isEmpty());
+
+        assertEquals(Arrays.asList("DBAssetOrder1", "DataAssetOrder1", "DataAssetOrder3"), ids);
+    }
+
+    @Test
+    void keepsAnOrderListedWhenItsStatusChanges() {
+        ledger.submit(ctx -> ledger.contract.UpdateDataAssetOrderStatus(ctx, "DataAssetOrder1", 2));
+
+        String page = ledger.evaluate(ctx -> ledger.contract.GetOrdersByApplicant(ctx, "Department2", 10, ""));
+
+        assertEquals(Arrays.asList("DBAssetOrder1", "DataAssetOrder1", "DataAssetOrder3"), ContractLedger.ids(page));
+        assertEquals(2, new JSONObject(page).getJSONArray("records").getJSONObject(1).getInt("status"));
+    }
+}
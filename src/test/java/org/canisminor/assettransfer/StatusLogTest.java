@@ -0,0 +1,106 @@
+package org.canisminor.assettransfer;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+final class StatusLogTest {
+    private final ContractLedger ledger = new ContractLedger(StatusLog.ENVIRONMENT_VARIABLE, "append");
+
+    private void populate(final int orders) {
+        ledger.department(1, "role:hospital");
+        ledger.dataAsset(1, "Department1", "Beijing", "medical");
+        for (int i = 0; i < orders; i++) {
+            ledger.dataAssetOrder(i, "DataAsset1", "Department1", 0);
+        }
+    }
+
+    @Test
+    void concurrentChangesOfOneRecordDoNotConflict() {
+        populate(1);
+
+        InMemoryChaincodeStub first = ledger.endorse(ctx -> ledger.contract.UpdateDataAssetOrderStatus(ctx, "DataAssetOrder0", 1));
+        InMemoryChaincodeStub second = ledger.endorse(ctx -> ledger.contract.UpdateDataAssetOrderStatus(ctx, "DataAssetOrder0", 2));
+
+        assertEquals(Arrays.asList(InMemoryLedger.ValidationCode.VALID, InMemoryLedger.ValidationCode.VALID),
+                ledger.ledger.commitBlock(Arrays.asList(second, first)));
+        // The latest proposal wins, whatever the commit order
+        assertEquals(2, ledger.evaluate(ctx -> ledger.contract.ReadDataAssetOrder(ctx, "DataAssetOrder0")).getStatus());
+    }
+
+    @Test
+    void listingsAndCountersFollowTheFoldedRecord() {
+        populate(1);
+        ledger.submit(ctx -> ledger.contract.UpdateDataAssetOrderStatus(ctx, "DataAssetOrder0", 3));
+
+        assertEquals(0, status(ledger.evaluate(ctx -> ledger.contract.GetAllDataAssetOrder(ctx)), 0));
+        assertEquals(1, (long) ledger.evaluate(ctx -> ledger.contract.CountEntitiesByStatus(ctx, "DataAssetOrder", 0)));
+
+        ledger.submit(ctx -> ledger.contract.CompactStatusLog(ctx, "DataAssetOrder", "DataAssetOrder0"));
+
+        assertEquals(3, status(ledger.evaluate(ctx -> ledger.contract.GetAllDataAssetOrder(ctx)), 0));
+        assertEquals(0, (long) ledger.evaluate(ctx -> ledger.contract.CountEntitiesByStatus(ctx, "DataAssetOrder", 0)));
+        assertEquals(1, (long) ledger.evaluate(ctx -> ledger.contract.CountEntitiesByStatus(ctx, "DataAssetOrder", 3)));
+    }
+
+    @Test
+    void compactsInChunksAcrossIds() {
+        populate(3);
+        for (int i = 0; i < 3; i++) {
+            String id = "DataAssetOrder" + i;
+            ledger.submit(ctx -> ledger.contract.UpdateDataAssetOrderStatus(ctx, id, 1));
+            ledger.submit(ctx -> ledger.contract.UpdateDataAssetOrderStatus(ctx, id, 2));
+        }
+        ledger.submit(ctx -> ledger.contract.UpdateDataAssetOrderStatus(ctx, "DataAssetOrder1", 4));
+
+        // Seven entries: the chunk of four ends in the middle of DataAssetOrder1, which the next chunk finishes
+        assertEquals(4, (int) ledger.submit(ctx -> ledger.contract.CompactStatusLogs(ctx, "DataAssetOrder", 4)));
+        assertEquals(3, (int) ledger.submit(ctx -> ledger.contract.CompactStatusLogs(ctx, "DataAssetOrder", 4)));
+        assertEquals(0, (int) ledger.submit(ctx -> ledger.contract.CompactStatusLogs(ctx, "DataAssetOrder", 4)));
+
+        String listing = ledger.evaluate(ctx -> ledger.contract.GetAllDataAssetOrder(ctx));
+        assertEquals(Arrays.asList(2, 4, 2), Arrays.asList(status(listing, 0), status(listing, 1), status(listing, 2)));
+        assertEquals(2, (long) ledger.evaluate(ctx -> ledger.contract.CountEntitiesByStatus(ctx, "DataAssetOrder", 2)));
+        assertEquals(1, (long) ledger.evaluate(ctx -> ledger.contract.CountEntitiesByStatus(ctx, "DataAssetOrder", 4)));
+    }
+
+    @Test
+    void batchesReportTheStoredStatus() {
+        populate(2);
+        ledger.submit(ctx -> ledger.contract.UpdateDataAssetOrderStatus(ctx, "DataAssetOrder0", 5));
+
+        String response = ledger.submit(ctx -> ledger.contract.UpdateDataAssetOrderStatusBatch(ctx,
+                "[{\"id\":\"DataAssetOrder0\",\"status\":6},{\"id\":\"DataAssetOrder1\",\"status\":0}]"));
+        JSONArray results = new JSONArray(response);
+
+        List<String> outcomes = Arrays.asList(results.getJSONObject(0).getString("outcome"), results.getJSONObject(1).getString("outcome"));
+        assertEquals(Arrays.asList("APPENDED", "APPENDED"), outcomes);
+        // The change to 5 is still in the log, so the record holds 0
+        assertEquals(0, results.getJSONObject(0).getInt("storedStatus"));
+        assertEquals(6, ledger.evaluate(ctx -> ledger.contract.ReadDataAssetOrder(ctx, "DataAssetOrder0")).getStatus());
+    }
+
+    @Test
+    void rewriteModeBatchesReportThePreviousStatus() {
+        ContractLedger rewrite = new ContractLedger();
+        rewrite.department(1, "role:hospital");
+        rewrite.dataAsset(1, "Department1", "Beijing", "medical");
+        rewrite.dataAssetOrder(0, "DataAsset1", "Department1", 5);
+
+        String response = rewrite.submit(ctx -> rewrite.contract.UpdateDataAssetOrderStatusBatch(ctx,
+                "[{\"id\":\"DataAssetOrder0\",\"status\":6}]"));
+        JSONObject result = new JSONArray(response).getJSONObject(0);
+
+        assertEquals("UPDATED", result.getString("outcome"));
+        assertEquals(5, result.getInt("storedStatus"));
+    }
+
+    private static int status(final String listing, final int index) {
+        return new JSONArray(listing).getJSONObject(index).getInt("status");
+    }
+}
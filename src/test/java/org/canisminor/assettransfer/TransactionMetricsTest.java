@@ -0,0 +1,46 @@
+package org.canisminor.assettransfer;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+final class TransactionMetricsTest {
+    @Test
+    void labelsOnlyDeclaredTransactions() {
+        assertEquals("CreateDepartment", TransactionMetrics.begin("AssetTransfer:CreateDepartment").getTransaction());
+        assertEquals(TransactionMetrics.UNKNOWN, TransactionMetrics.begin("Nope\"} 1\nfake_metric").getTransaction());
+        assertEquals(TransactionMetrics.UNKNOWN, TransactionMetrics.begin(null).getTransaction());
+        TransactionMetrics.current().end(true);
+
+        assertFalse(TransactionMetricsRegistry.INSTANCE.toPrometheusText().contains("fake_metric"));
+    }
+
+    @Test
+    void publishesAnAbandonedTransactionAsFailed() {
+        long failed = sample("assettransfer_transactions_failed_total", "DeleteAttributeItem");
+        long completed = sample("assettransfer_transactions_total", "DeleteAttributeItem");
+
+        TransactionMetrics abandoned = TransactionMetrics.begin("DeleteAttributeItem");
+        TransactionMetrics next = TransactionMetrics.begin("DepartmentExists");
+        assertSame(next, TransactionMetrics.current());
+        abandoned.end(true);
+        next.end(true);
+
+        assertNull(TransactionMetrics.current());
+        assertEquals(failed + 1, sample("assettransfer_transactions_failed_total", "DeleteAttributeItem"));
+        assertEquals(completed, sample("assettransfer_transactions_total", "DeleteAttributeItem"));
+    }
+
+    private static long sample(final String metric, final String transaction) {
+        String prefix = metric + "{transaction=\"" + transaction + "\"} ";
+        for (String line : TransactionMetricsRegistry.INSTANCE.toPrometheusText().split("\n")) {
+            if (line.startsWith(prefix)) {
+                return Long.parseLong(line.substring(prefix.length()));
+            }
+        }
+        return 0;
+    }
+}